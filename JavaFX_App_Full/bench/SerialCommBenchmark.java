@@ -0,0 +1,167 @@
+package bench;
+
+// JMH annotations && blackhole
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+// method handles used to reach the app classes
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+// for reflective lookup of private members
+import java.lang.reflect.Method;
+// for benchmark time units
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks of the serial command path (run with `make bench`, results land in build/jmh-results.json)
+// JMH refuses benchmarks in the default package and the app classes live there, so they are reached
+// through static final method handles (constant folded by JIT, so the indirection is practically free)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerialCommBenchmark {
+
+    // ACK byte as sent by MCU
+    private static final byte[] ACK = { (byte)0xFF };
+
+    // handles to the app classes (all adapted to Object so they can be called with invokeExact)
+    private static final MethodHandle NEW_LOOPBACK;
+    private static final MethodHandle LOOPBACK_INJECT;
+    private static final MethodHandle NEW_SIMULATED;
+    private static final MethodHandle NEW_MANAGER;
+    private static final MethodHandle OPEN_PORT;
+    private static final MethodHandle CLOSE;
+    private static final MethodHandle MANUAL_RETRY;
+    private static final MethodHandle TRANSMIT_LATEST;
+    private static final MethodHandle ENCODE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> transportClass = Class.forName("SerialTransport");
+            Class<?> loopbackClass = Class.forName("LoopbackTransport");
+            Class<?> simulatedClass = Class.forName("SimulatedMcuTransport");
+            Class<?> managerClass = Class.forName("SerialCommManager");
+            Class<?> commandClass = Class.forName("MotorCommand");
+
+            NEW_LOOPBACK = lookup.unreflectConstructor(loopbackClass.getConstructor())
+                .asType(MethodType.methodType(Object.class));
+            LOOPBACK_INJECT = lookup.unreflect(loopbackClass.getMethod("inject", byte[].class, int.class))
+                .asType(MethodType.methodType(void.class, Object.class, byte[].class, int.class));
+            NEW_SIMULATED = lookup.unreflectConstructor(simulatedClass.getConstructor(String.class, long.class, long.class, double.class, long.class))
+                .asType(MethodType.methodType(Object.class, String.class, long.class, long.class, double.class, long.class));
+            NEW_MANAGER = lookup.unreflectConstructor(managerClass.getConstructor(transportClass, byte.class))
+                .asType(MethodType.methodType(Object.class, Object.class, byte.class));
+            OPEN_PORT = lookup.unreflect(managerClass.getMethod("openPort"))
+                .asType(MethodType.methodType(boolean.class, Object.class));
+            CLOSE = lookup.unreflect(managerClass.getMethod("close"))
+                .asType(MethodType.methodType(void.class, Object.class));
+            MANUAL_RETRY = lookup.unreflect(managerClass.getMethod("manualRetry"))
+                .asType(MethodType.methodType(boolean.class, Object.class));
+            Method transmitLatest = managerClass.getDeclaredMethod("transmitLatest");
+            transmitLatest.setAccessible(true);
+            TRANSMIT_LATEST = lookup.unreflect(transmitLatest)
+                .asType(MethodType.methodType(void.class, Object.class));
+            ENCODE = lookup.unreflect(commandClass.getMethod("percent", int.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // encoder inputs kept in fields so JIT cannot constant fold them
+    private int speedPercentage = 73;
+    private boolean clockwise = false;
+
+    // manager wired to a loopback transport, driven by a single thread
+    @State(Scope.Thread)
+    public static class LoopbackState {
+        Object transport;
+        Object manager;
+
+        @Setup(Level.Trial)
+        public void setup() throws Throwable {
+            transport = (Object) NEW_LOOPBACK.invokeExact();
+            manager = (Object) NEW_MANAGER.invokeExact(transport, (byte)0x00);
+            boolean opened = (boolean) OPEN_PORT.invokeExact(manager);
+            if (!opened) {
+                throw new IllegalStateException("Could not open benchmark transport");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Throwable {
+            CLOSE.invokeExact(manager);
+        }
+    }
+
+    // manager shared by the sender && listener threads of the contention group
+    @State(Scope.Group)
+    public static class ContendedState extends LoopbackState {}
+
+    // manager wired to a zero latency simulated MCU (the MCU thread hands ACKs back like the jSerialComm listener does)
+    @State(Scope.Thread)
+    public static class SimulatedState {
+        Object manager;
+
+        @Setup(Level.Trial)
+        public void setup() throws Throwable {
+            Object transport = (Object) NEW_SIMULATED.invokeExact("bench", 0L, 0L, 0.0, 1L);
+            manager = (Object) NEW_MANAGER.invokeExact(transport, (byte)0x09);
+            boolean opened = (boolean) OPEN_PORT.invokeExact(manager);
+            if (!opened) {
+                throw new IllegalStateException("Could not open benchmark transport");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Throwable {
+            CLOSE.invokeExact(manager);
+        }
+    }
+
+    // cost of putting one frame on the wire (transmitLatest: window bookkeeping + write, benchmark thread stands in for the executor)
+    // and publishing its ACK to the lock free ACK ring (Rx path up to handleAckReceived)
+    @Benchmark
+    public void sendAndAck(LoopbackState state) throws Throwable {
+        TRANSMIT_LATEST.invokeExact(state.manager);
+        LOOPBACK_INJECT.invokeExact(state.transport, ACK, 1);
+    }
+
+    // per-command latency: retry frame sent by the executor thread, its ACK published by the MCU thread through the ACK ring
+    @Benchmark
+    public boolean roundTripSimulated(SimulatedState state) throws Throwable {
+        return (boolean) MANUAL_RETRY.invokeExact(state.manager);
+    }
+
+    // sender side of the contention group: keeps sending frames while the listener publishes ACKs to the same ring
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(1)
+    public void contentionSender(ContendedState state) throws Throwable {
+        TRANSMIT_LATEST.invokeExact(state.manager);
+    }
+
+    // listener side of the contention group: keeps delivering ACKs (never waits for the sender, the ring is lock free)
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(1)
+    public void contentionListener(ContendedState state) throws Throwable {
+        LOOPBACK_INJECT.invokeExact(state.transport, ACK, 1);
+    }
+
+    // command encoding done by App.bridgeValue
+    @Benchmark
+    public byte bridgeValueEncode() throws Throwable {
+        return (byte) ENCODE.invokeExact(speedPercentage, clockwise);
+    }
+
+    // console line printed by App.bridgeValue for every change (formatted, not printed)
+    @Benchmark
+    public void bridgeValueLogLine(Blackhole blackhole) throws Throwable {
+        byte result = (byte) ENCODE.invokeExact(speedPercentage, clockwise);
+        blackhole.consume(String.format("Mode: %s, Slider: %d, Speed: %d, Dir: %s, Binary: %08d%n",
+            "NORMAL", speedPercentage, speedPercentage * 600 / 100, clockwise ? "CW" : "CCW", Integer.parseInt(Integer.toBinaryString(result & 0xFF))));
+    }
+}
@@ -0,0 +1,9 @@
+# ramp, hold && reverse cycle (see MotionProfile for the format)
+# <time ms> <signed speed %> [ramp]
+0       0
+2000    80   ramp   # 0 -> 80 % clockwise in 2 s
+6000    80          # hold
+9000   -80   ramp   # reverse through 0
+13000  -80          # hold
+15000    0   ramp   # back to stop
+repeat 5
@@ -2,6 +2,7 @@ import eu.hansolo.medusa.Gauge;
 import eu.hansolo.medusa.GaugeBuilder;
 import eu.hansolo.medusa.TickLabelOrientation;
 import eu.hansolo.medusa.skins.ModernSkin;
+import javafx.animation.AnimationTimer;
 import javafx.animation.TranslateTransition;
 import javafx.geometry.Insets;
 import javafx.scene.control.ButtonType;
@@ -9,7 +10,6 @@ import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
-import com.fazecast.jSerialComm.SerialPort;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -19,8 +19,15 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.Slider;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.collections.ObservableList;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.scene.control.Button;
@@ -31,6 +38,14 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.util.Duration;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class App extends Application {
     // Color theme
@@ -43,10 +58,37 @@ public class App extends Application {
     // Common fields
     private Stage primaryStage;
     private Scene modeSelectionScene;
+    // Control scenes are built on first use (see getNormalMotorControlScene/getAirConditionerScene), null until then
     private Scene normalMotorControlScene;
     private Scene airConditionerScene;
+    // Port dialog currently open (null --> none), the first frame of the app may be drawn in it
+    private Stage portSelectionDialog;
     
+    // All opened motors share one MultiMotorManager, serialCommManager is the one currently selected
+    private MultiMotorManager motorManager;
+    // Binary journal of all link activity (null if it could not be created)
+    private CommJournal commJournal;
+    // Ports of the last run, reopened without asking on the next start
+    private PortCache portCache;
     private SerialCommManager serialCommManager;
+    // Read by link threads to drop ACKs of the motors that are not on screen
+    private volatile String selectedMotorName;
+    private ComboBox<String> motorSelector;
+    private Label motorHealthLabel;
+    // Single path from link threads to the screen: they leave the latest state in guiUpdates, renderPulse takes it once per frame
+    private final GuiUpdates guiUpdates = new GuiUpdates();
+    // Connection Lost dialog currently open (null --> none), a burst of failures must not stack dialogs
+    private Alert connectionAlert;
+    private AnimationTimer renderPulse;
+    // Live link statistics of the selected motor (one label per scene, refreshed with the health label)
+    private final List<Label> statsLabels = new ArrayList<>();
+    private long lastStatsRetries = 0;
+    // Last command acked by the selected motor, shown under the requested one (one label per control scene)
+    private final List<Label> confirmedLabels = new ArrayList<>();
+    // Telemetry of the selected motor (speed chart + measured values label per control scene), redrawn at a throttled rate
+    private final List<LineChart<Number, Number>> telemetryCharts = new ArrayList<>();
+    private final List<Label> telemetryLabels = new ArrayList<>();
+    private final TelemetrySeries.Snapshot telemetrySnapshot = new TelemetrySeries.Snapshot();
     
     // Normal mode fields
     private int motorSpeed = 0;
@@ -59,6 +101,10 @@ public class App extends Application {
     private Slider slider;
     private RadioButton clockwiseBtn;
     private RadioButton counterClockwiseBtn;
+    // Motion profile run on the selected motor instead of the slider (null --> none has been run)
+    private ProfileRunner profileRunner;
+    private Button profileButton;
+    private Label profileLabel;
     Button normalModeBtn;
     Button acModeBtn;
     // AC mode fields 
@@ -74,101 +120,323 @@ public class App extends Application {
     private int currentState = 0; // 0 : off 1 :On
 
     
-        // Speed mappings (0-5 maps to these values)
-    private final int[] SPEED_MAPPING = {0, 3, 6, 9, 12, 15};
-    private final int RPM_SCALE_FACTOR = 40; // Scale factor to convert to RPM (15 * 40 = 600 RPM)
+    // Motor speed at 100 % (sliders give the speed in %, 0-100)
+    private final int MAX_RPM = 600;
+
+    // Telemetry: redrawn 10 times per second, last 10 s charted, older than 1 s --> MCU is not sending any
+    private final int TELEMETRY_FRAME_MILLIS = 100;
+    private final int TELEMETRY_WINDOW_SECONDS = 10;
+    private final int TELEMETRY_STALE_MILLIS = 1000;
+
+    // Motor health && link statistics are polled twice per second
+    private final int HEALTH_REFRESH_MILLIS = 500;
+
+    // Journal segments: 4 MiB each (~260k records), 16 kept on disk
+    private final int JOURNAL_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private final int JOURNAL_MAX_SEGMENTS = 16;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
-        
-        // Show a dialog for selecting the COM port as soon as the app opens
-        Stage portSelectionDialog = createPortSelectionDialog(primaryStage);
-        if(portSelectionDialog == null) return;
-        portSelectionDialog.showAndWait();
 
-        if (serialCommManager == null) {
-            Platform.exit();
+        // Class data archive training run (make package): every scene is built once so its classes end up in the archive,
+        // then the app exits after its first frame without touching any port
+        if (Boolean.getBoolean("motorcontrol.cds.training")) {
+            motorManager = new MultiMotorManager(false);
+            createModeSelectionScene();
+            createNormalMotorControlScene();
+            createAirConditionerScene();
+            primaryStage.setScene(modeSelectionScene);
+            primaryStage.show();
+            watchFirstFrame(true);
             return;
         }
-        
+
+        watchFirstFrame(false);
+        createMotorManager();
+
+        // Warm start: the ports of the last run are probed and reopened without asking, unless -Dmotorcontrol.warmstart=false
+        // (the cache lives in ~/.motorcontrol/ports.properties, -Dmotorcontrol.ports.cache=<file> moves it)
+        portCache = new PortCache(new File(System.getProperty("motorcontrol.ports.cache",
+            System.getProperty("user.home") + File.separator + ".motorcontrol" + File.separator + "ports.properties")));
+        List<PortCache.Entry> cachedPorts = "false".equals(System.getProperty("motorcontrol.warmstart"))
+            ? new ArrayList<>() : portCache.load();
+        if (cachedPorts.isEmpty()) {
+            showPortSelectionDialog(null);
+        } else {
+            warmStart(cachedPorts);
+        }
+    }
+
+    private void showMainWindow() {
+        // Only the first scene is built here, the control scenes (AC mode brings the Medusa gauge) wait until they are opened
         createModeSelectionScene();
-        createNormalMotorControlScene();
-        createAirConditionerScene();
         
+        startRenderPulse();
+
         primaryStage.setScene(modeSelectionScene);
         primaryStage.setTitle("Advanced Motor Control System");
         primaryStage.setMinWidth(700);
         primaryStage.setMinHeight(700);
         
         primaryStage.setOnCloseRequest(event -> {
-            if (serialCommManager != null) {
-                serialCommManager.close();
-            }
-            Platform.exit();
+            renderPulse.stop();
+            stopProfile();
+            shutdown();
         });
         primaryStage.show();
     }
-    
-    private Stage createPortSelectionDialog(Stage primaryStage) {
+
+    private void createMotorManager() {
+        // -Dmotorcontrol.io=blocking gives every motor its own (virtual on JDK 21+) threads with blocking I/O instead of the shared pool
+        boolean blockingIo = "blocking".equals(System.getProperty("motorcontrol.io"));
+        // Connection state changes arrive debounced on the event hub thread: the GUI picks them up in the render pulse
+        // (see startRenderPulse), link threads never post to the FX thread
+        motorManager = new MultiMotorManager(blockingIo);
+        motorManager.getConnectionEvents().subscribe(guiUpdates::postConnectionEvent);
+        motorManager.getConnectionEvents().subscribe(event -> System.out.println("Connection: " + event));
+        // Failed motors reconnect on their own unless -Dmotorcontrol.reconnect=false (then the Retry dialog is used)
+        if (!"false".equals(System.getProperty("motorcontrol.reconnect"))) {
+            motorManager.enableAutoReconnect();
+        }
+        // -Dmotorcontrol.backend=tty opens ports as plain tty devices (Linux only) instead of through jSerialComm
+        if ("tty".equals(System.getProperty("motorcontrol.backend"))) {
+            if (TtyChannelTransport.isSupported()) {
+                motorManager.setTtyChannelBackend(true);
+            } else {
+                System.err.println("tty backend needs Linux with stty, using jSerialComm");
+            }
+        }
+        // -Dmotorcontrol.txbatch=<us> gathers frames of a motor for up to that long before writing them together (stop never waits)
+        String txBatch = System.getProperty("motorcontrol.txbatch");
+        if (txBatch != null) {
+            try {
+                motorManager.setTxBatchWindow(Long.parseLong(txBatch));
+            } catch (NumberFormatException e) {
+                System.err.println("motorcontrol.txbatch must be a number of microseconds, ignoring " + txBatch);
+            }
+        }
+        // Ports move to the framed protocol at the fastest common baud rate unless -Dmotorcontrol.negotiate=false (old firmware)
+        if ("false".equals(System.getProperty("motorcontrol.negotiate"))) {
+            motorManager.setLinkNegotiation(false);
+        }
+        commJournal = openJournal();
+        if (commJournal != null) {
+            motorManager.setJournal(commJournal);
+        }
+    }
+
+    // Reopens the cached ports off the FX thread with the link parameters they settled on last time (no probe, no baud rate search),
+    // the main window shows up as soon as they answer. A port that does not answer like that is probed and opened as usual;
+    // if one of them stays silent (unplugged, other MCU...) the opened ones are closed again, the cache is forgotten
+    // and the operator picks ports as usual
+    private void warmStart(List<PortCache.Entry> cachedPorts) {
+        Thread warmStartThread = new Thread(() -> {
+            List<String> unconfirmedPorts = new ArrayList<>();
+            for (PortCache.Entry entry : cachedPorts) {
+                if (!motorManager.reopenPort(entry.portName, entry.protocolVersion, entry.baudRate)) {
+                    unconfirmedPorts.add(entry.portName);
+                }
+            }
+            List<String> silentPorts = new ArrayList<>();
+            if (!unconfirmedPorts.isEmpty()) {
+                List<PortDiscovery.Result> results = motorManager.newPortDiscovery().probe(unconfirmedPorts).join();
+                for (PortDiscovery.Result result : results) {
+                    if (!result.isResponding() || !motorManager.addPort(result.portName, result.protocolVersion == 0)) {
+                        silentPorts.add(result.portName);
+                    }
+                }
+            }
+            if (silentPorts.isEmpty()) {
+                System.out.println("Warm start: reconnected to " + cachedPorts + (unconfirmedPorts.isEmpty() ? "" : ", probed " + unconfirmedPorts));
+                Platform.runLater(() -> {
+                    connectDevices();
+                    showMainWindow();
+                });
+            } else {
+                for (PortCache.Entry entry : cachedPorts) {
+                    motorManager.removeDevice(entry.portName);
+                }
+                portCache.clear();
+                Platform.runLater(() -> showPortSelectionDialog("No answer from last used port(s) " + String.join(", ", silentPorts)));
+            }
+        }, "warm-start");
+        // Warm start must never keep the JVM alive on its own
+        warmStartThread.setDaemon(true);
+        warmStartThread.start();
+    }
+
+    // Prints the time from JVM start to the first frame of the first window (port dialog or main window), the figure
+    // the lazy scenes && the class data archive are meant to bring down
+    private void watchFirstFrame(boolean exitAfterFirstFrame) {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                // Pulses also run while a warm start is still connecting && no window is up yet
+                if (!primaryStage.isShowing() && (portSelectionDialog == null || !portSelectionDialog.isShowing())) return;
+                stop();
+                long startupMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                System.out.println("Startup: first frame after " + startupMillis + " ms");
+                if (exitAfterFirstFrame) {
+                    shutdown();
+                }
+            }
+        }.start();
+    }
+
+    // Ports are enumerated && probed in the background (see PortDiscovery), the dialog shows up right away and fills in
+    // once discovery is done, with the ports an MCU answered on listed first and preselected
+    private void showPortSelectionDialog(String notice) {
         Stage dialog = new Stage();
+        portSelectionDialog = dialog;
+        dialog.setOnHidden(e -> portSelectionDialog = null);
         dialog.initModality(Modality.APPLICATION_MODAL);
         dialog.initOwner(primaryStage);
 
-        // ComboBox for selecting COM port
-        ComboBox<String> portSelector = new ComboBox<>();
-        portSelector.setPromptText("Select COM port");
+        // ListView for selecting one or more COM ports (one motor per port)
+        ListView<String> portSelector = new ListView<>();
+        portSelector.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        portSelector.setPrefHeight(120);
         Button proceedButton = new Button("Proceed");
         proceedButton.setDisable(true);
 
-        // Label with the instruction text
-        Label instructionLabel = new Label("Select a Serial Port and Click Proceed");
+        // Label with the instruction text, tells what discovery found once it is done
+        Label instructionLabel = new Label("Searching for serial ports...");
+        instructionLabel.setWrapText(true);
+        Label noticeLabel = new Label((notice != null) ? notice : "");
+        noticeLabel.setWrapText(true);
 
-        // Get all available serial ports using jSerialComm
-        SerialPort[] availablePorts = SerialPort.getCommPorts();
-        for (SerialPort port : availablePorts) {
-            portSelector.getItems().add(port.getSystemPortName());
-        }
-
-        // If no ports are available, show an error and exit
-        if (availablePorts.length == 0) {
-            showError("No serial ports found!");
-            Platform.exit();
-            return null;
-        }
+        // Firmware found by discovery: ports with legacy only firmware are opened without a HELLO
+        Map<String, PortDiscovery.Result> discovered = new LinkedHashMap<>();
 
         // Enable proceed button only when a port is selected
         portSelector.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            proceedButton.setDisable(newVal == null);
+            proceedButton.setDisable(portSelector.getSelectionModel().getSelectedItems().isEmpty());
         });
 
-        // Default to the first available port
-        portSelector.getSelectionModel().select(0);
+        motorManager.newPortDiscovery().discover().whenComplete((results, error) -> Platform.runLater(() -> {
+            // If no ports are available, show an error and exit
+            if (results == null || results.isEmpty()) {
+                dialog.close();
+                showError("No serial ports found!");
+                Platform.exit();
+                return;
+            }
+            List<String> respondingPorts = new ArrayList<>();
+            for (PortDiscovery.Result result : results) {
+                discovered.put(result.portName, result);
+                portSelector.getItems().add(result.portName);
+                if (result.isResponding()) {
+                    respondingPorts.add(result.portName);
+                }
+                System.out.println("Discovery: " + result);
+            }
+            if (respondingPorts.isEmpty()) {
+                // Default to the first available port
+                instructionLabel.setText("No MCU answered. Select Serial Port(s) and Click Proceed");
+                portSelector.getSelectionModel().select(0);
+            } else {
+                instructionLabel.setText("MCU found on " + String.join(", ", respondingPorts) + ". Select Serial Port(s) and Click Proceed");
+                for (String portName : respondingPorts) {
+                    portSelector.getSelectionModel().select(portName);
+                }
+            }
+        }));
 
         // Proceed button action handler
         proceedButton.setOnAction(e -> {
-            String portName = portSelector.getSelectionModel().getSelectedItem();
-            if (portName == null) return;
+            List<String> portNames = new ArrayList<>(portSelector.getSelectionModel().getSelectedItems());
+            if (portNames.isEmpty()) return;
 
-            serialCommManager = new SerialCommManager(portName, (byte) 0x00);
-            if (!serialCommManager.openPort()) {
-                showError("Failed to open port!");
-            } else {
-                dialog.close();
-            }
+            // Ports are opened && negotiated off the FX thread (a HELLO waits up to 300 ms, a failed baud rate switch a few seconds),
+            // the dialog stays responsive but cannot start a second connection meanwhile
+            proceedButton.setDisable(true);
+            portSelector.setDisable(true);
+            String instruction = instructionLabel.getText();
+            instructionLabel.setText("Connecting to " + String.join(", ", portNames) + "...");
+            Thread connectThread = new Thread(() -> {
+                List<String> failedPorts = new ArrayList<>();
+                for (String portName : portNames) {
+                    PortDiscovery.Result result = discovered.get(portName);
+                    if (!motorManager.addPort(portName, result != null && result.protocolVersion == 0)) {
+                        failedPorts.add(portName);
+                    }
+                }
+                Platform.runLater(() -> {
+                    if (!dialog.isShowing()) {
+                        return; // dialog was closed meanwhile, the app is shutting down
+                    }
+                    if (!failedPorts.isEmpty()) {
+                        showError("Failed to open port(s): " + String.join(", ", failedPorts));
+                    }
+                    if (motorManager.getDeviceCount() > 0) {
+                        connectDevices();
+                        dialog.close();
+                        showMainWindow();
+                    } else {
+                        instructionLabel.setText(instruction);
+                        portSelector.setDisable(false);
+                        proceedButton.setDisable(portSelector.getSelectionModel().getSelectedItems().isEmpty());
+                    }
+                });
+            }, "port-connect");
+            // Connecting must never keep the JVM alive on its own
+            connectThread.setDaemon(true);
+            connectThread.start();
         });
+        // Closing the dialog without a port ends the app
+        dialog.setOnCloseRequest(e -> shutdown());
 
         // Initialize dialog UI
-        VBox dialogVBox = new VBox(10, instructionLabel, portSelector, proceedButton);
+        VBox dialogVBox = new VBox(10, noticeLabel, instructionLabel, portSelector, proceedButton);
         dialogVBox.setAlignment(Pos.CENTER);
         dialogVBox.setStyle("-fx-padding: 20px;");
-        Scene dialogScene = new Scene(dialogVBox, 300, 150);
+        Scene dialogScene = new Scene(dialogVBox, 300, 250);
         dialog.setScene(dialogScene);
         dialog.setTitle("Select COM Port");
+        dialog.show();
+    }
 
-        return dialog;
+    // Hooks up the opened motors, selects the first one and remembers the ports (and what their links settled on) for the next warm start
+    private void connectDevices() {
+        List<PortCache.Entry> entries = new ArrayList<>();
+        // Every motor reports its acked commands, only the one on screen is shown (at most once per frame)
+        for (String deviceName : motorManager.getDeviceNames()) {
+            SerialCommManager manager = motorManager.getManager(deviceName);
+            manager.setCommandListener((command, latencyNanos) -> {
+                if (deviceName.equals(selectedMotorName)) {
+                    guiUpdates.postConfirmation(latencyNanos);
+                }
+            });
+            entries.add(new PortCache.Entry(deviceName, manager.getProtocolVersion(), manager.getBaudRate()));
+        }
+        selectedMotorName = motorManager.getDeviceNames().get(0);
+        serialCommManager = motorManager.getManager(selectedMotorName);
+        if (!portCache.save(entries)) {
+            System.err.println("Port cache could not be written, next start asks for the port(s) again");
+        }
     }
     
+    private CommJournal openJournal() {
+        // Journal directory can be moved with -Dmotorcontrol.journal.dir=<dir>
+        File journalDir = new File(System.getProperty("motorcontrol.journal.dir",
+            System.getProperty("user.home") + File.separator + ".motorcontrol" + File.separator + "journal"));
+        try {
+            return new CommJournal(journalDir, JOURNAL_SEGMENT_BYTES, JOURNAL_MAX_SEGMENTS);
+        } catch (IOException e) {
+            System.err.println("Journal disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void shutdown() {
+        motorManager.closeAll();
+        if (commJournal != null) {
+            commJournal.close();
+        }
+        Platform.exit();
+    }
+
     private void showError(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -182,6 +450,8 @@ public class App extends Application {
         primaryStage.setScene(modeSelectionScene);
         motorInitialized = false;
         Alert alert = new Alert(Alert.AlertType.ERROR);
+        connectionAlert = alert;
+        alert.setOnHidden(e -> connectionAlert = null);
         alert.setTitle("Connection Lost");
         alert.setHeaderText("Failed to connect to the motor controller!");
         alert.setContentText("Check if the device is properly connected.");
@@ -206,30 +476,24 @@ public class App extends Application {
         retryButton.setOnAction(e -> {
             retryButton.setDisable(true);
             alert.setContentText("Retrying...");
-            new Thread(() -> {
-                boolean success = serialCommManager.manualRetry();
-                Platform.runLater(() -> {
-                    if (success) {
-                        alert.close();
-                        // Reinitialize motor and restart transmission
-                        initializeMotor();
-                    } else {
-                        alert.setContentText("Retry failed. Please try again.");
-                        retryButton.setDisable(false);
-                    }
-                });
-            }).start();
+            // No thread waits for the ACK: the manager completes the retry from its own threads
+            serialCommManager.manualRetryAsync().thenAccept(success -> Platform.runLater(() -> {
+                if (success) {
+                    alert.close();
+                    // Reinitialize motor and restart transmission
+                    initializeMotor();
+                } else {
+                    alert.setContentText("Retry failed. Please try again.");
+                    retryButton.setDisable(false);
+                }
+            }));
         });
 
-        exitButton.setOnAction(e -> {
-            serialCommManager.close();
-            Platform.exit();
-        });
+        exitButton.setOnAction(e -> shutdown());
 
         alert.showAndWait().ifPresent(response -> {
             if (response == exitButtonType) {
-                serialCommManager.close();
-                Platform.exit();
+                shutdown();
             }
         });
     }
@@ -262,18 +526,32 @@ public class App extends Application {
         toggleContainer.setAlignment(Pos.CENTER);
         toggleContainer.setPrefSize(120, 50);
         toggleContainer.setOnMouseClicked(e -> toggleState());
+
+        // Motor selector (one entry per opened port) && aggregated health of all motors
+        motorSelector = new ComboBox<>();
+        motorSelector.getItems().addAll(motorManager.getDeviceNames());
+        motorSelector.getSelectionModel().select(selectedMotorName);
+        motorSelector.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) selectMotor(newVal);
+        });
+        Label motorSelectorLabel = new Label("Motor:");
+        motorSelectorLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: " + TEXT_COLOR + ";");
+        motorHealthLabel = new Label();
+        motorHealthLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #aaaaaa;");
+        HBox motorSelectorBox = new HBox(15, motorSelectorLabel, motorSelector, motorHealthLabel);
+        motorSelectorBox.setAlignment(Pos.CENTER);
         // Create a container for the toggle to position it above the gauge
         // Modern card-style buttons
 
         normalModeBtn = createModeButton("NORMAL MODE", "#4CAF50");
-        normalModeBtn.setOnAction(e -> primaryStage.setScene(normalMotorControlScene));
+        normalModeBtn.setOnAction(e -> primaryStage.setScene(getNormalMotorControlScene()));
 
         acModeBtn = createModeButton("AIR CONDITIONER MODE", "#2196F3");
-        acModeBtn.setOnAction(e -> primaryStage.setScene(airConditionerScene));
+        acModeBtn.setOnAction(e -> primaryStage.setScene(getAirConditionerScene()));
         normalModeBtn.setDisable(true);
         acModeBtn.setDisable(true);
         // Layout with improved spacing and background
-        VBox modeSelectionLayout = new VBox(30, titleLabel, subtitleLabel,toggleContainer, normalModeBtn, acModeBtn);
+        VBox modeSelectionLayout = new VBox(30, titleLabel, subtitleLabel, motorSelectorBox, toggleContainer, normalModeBtn, acModeBtn, createStatsLabel());
         modeSelectionLayout.setAlignment(Pos.CENTER);
         modeSelectionLayout.setPadding(new Insets(40));
         modeSelectionLayout.setStyle("-fx-background-color: " + PRIMARY_COLOR + ";");
@@ -281,6 +559,29 @@ public class App extends Application {
         modeSelectionScene = new Scene(modeSelectionLayout, 800, 700);
     }
 
+    private Scene getNormalMotorControlScene() {
+        if (normalMotorControlScene == null) {
+            createNormalMotorControlScene();
+            refreshNewScene();
+        }
+        return normalMotorControlScene;
+    }
+
+    private Scene getAirConditionerScene() {
+        if (airConditionerScene == null) {
+            createAirConditionerScene();
+            refreshNewScene();
+        }
+        return airConditionerScene;
+    }
+
+    // A scene built after the render pulse started shows the current state right away instead of at the next refresh
+    private void refreshNewScene() {
+        refreshMotorHealth();
+        refreshTelemetry();
+        refreshProfileState();
+    }
+
     private void createNormalMotorControlScene() {
 
         // Direction controls
@@ -293,7 +594,7 @@ public class App extends Application {
         clockwiseBtn.setOnAction(e -> {
             clockwiseDirection = true;
             updateMotorDirection();
-            serialCommManager.setLastSentByte(bridgeValue());
+            sendSpeedTarget();
         });
         
         counterClockwiseBtn = new RadioButton("Counter-Clockwise");
@@ -303,14 +604,14 @@ public class App extends Application {
         counterClockwiseBtn.setOnAction(e -> {
             clockwiseDirection = false;
             updateMotorDirection();
-            serialCommManager.setLastSentByte(bridgeValue());
+            sendSpeedTarget();
         });
         
         HBox directionBox = new HBox(20, clockwiseBtn, counterClockwiseBtn);
         directionBox.setAlignment(Pos.CENTER);
 
-        // Normal mode slider (0-5)
-        slider = new Slider(0, 5, 0);
+        // Normal mode slider (0-100 %)
+        slider = new Slider(0, MotorCommand.MAX_PERCENTAGE, 0);
         slider.setPrefWidth(550);
         slider.setStyle(
             "-fx-control-inner-background: #444444; " +
@@ -319,13 +620,12 @@ public class App extends Application {
             "-fx-show-tick-labels: true; " +
             "-fx-show-tick-marks: true;"
         );
-        slider.setMajorTickUnit(1);
-        slider.setMinorTickCount(0);
+        slider.setMajorTickUnit(10);
+        slider.setMinorTickCount(1);
         slider.setBlockIncrement(1);
         // slider.setDisable(true);
-        slider.setSnapToTicks(true);
         
-        motorSpeedLabel = new Label("0 (0 RPM)");
+        motorSpeedLabel = new Label("0 % (0 RPM)");
         motorSpeedLabel.setStyle(
             "-fx-font-size: 36px; " +
             "-fx-font-weight: bold; " +
@@ -339,15 +639,25 @@ public class App extends Application {
             "-fx-text-fill: #aaaaaa;"
         );
 
+        // Sent while the slider is still being dragged, the manager ramps && rate limits what goes on the link
         slider.valueProperty().addListener((obs, oldVal, newVal) -> {
-            int discreteValue = newVal.intValue();
-            if (!slider.isValueChanging()) {
-                updateMotorSpeed(discreteValue);
-                serialCommManager.setLastSentByte(bridgeValue());
+            int speedPercentage = (int) Math.round(newVal.doubleValue());
+            if (speedPercentage != (int) Math.round(oldVal.doubleValue())) {
+                updateMotorSpeed(speedPercentage);
+                sendSpeedTarget();
             }
         });
 
-        VBox motorControlBox = new VBox(20, directionBox, slider, motorSpeedLabel, motorDirectionLabel);
+        // Timed setpoint program loaded from a file, slider && direction are locked while it runs
+        profileButton = new Button("RUN PROFILE...");
+        profileButton.setStyle("-fx-font-size: 14px; -fx-text-fill: " + TEXT_COLOR + "; -fx-background-color: #555555;");
+        profileButton.setOnAction(e -> toggleProfile());
+        profileLabel = new Label("PROFILE: NONE");
+        profileLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #aaaaaa;");
+        HBox profileBox = new HBox(15, profileButton, profileLabel);
+        profileBox.setAlignment(Pos.CENTER);
+
+        VBox motorControlBox = new VBox(20, directionBox, slider, motorSpeedLabel, motorDirectionLabel, profileBox);
         motorControlBox.setAlignment(Pos.CENTER);
         
         
@@ -361,28 +671,28 @@ public class App extends Application {
 
         Button backButton = createBackButton(modeSelectionScene);
 
-        VBox root = new VBox(40, motorControlBox, backButton);
+        VBox root = new VBox(30, motorControlBox, createConfirmedLabel(), createTelemetryChart(), createTelemetryLabel(), backButton, createStatsLabel());
         root.setAlignment(Pos.CENTER);
         root.setStyle("-fx-background-color: " + PRIMARY_COLOR + ";");
 
-        normalMotorControlScene = new Scene(root, 800, 800);
+        normalMotorControlScene = new Scene(root, 800, 1000);
     }
 
     private void createAirConditionerScene() {
-        // Create the gauge with -5 to 5 range
+        // Create the gauge with -100 to 100 % range
         gauge = GaugeBuilder.create()
                 .prefSize(550, 550)
                 .title("AIR CONDITIONER MODE")
-                .unit("Level")
-                .minValue(-5)
-                .maxValue(5)
+                .unit("%")
+                .minValue(-MotorCommand.MAX_PERCENTAGE)
+                .maxValue(MotorCommand.MAX_PERCENTAGE)
                 .decimals(0)
                 .valueColor(Color.WHITE)
                 .titleColor(Color.web(ACCENT_COLOR))
                 .barColor(Color.web(ACCENT_COLOR))
                 .needleColor(Color.WHITE)
                 .thresholdColor(Color.web(WARNING_COLOR))
-                .threshold(3)
+                .threshold(60)
                 .tickLabelColor(Color.web("#aaaaaa"))
                 .tickMarkColor(Color.BLACK)
                 .tickLabelOrientation(TickLabelOrientation.ORTHOGONAL)
@@ -391,34 +701,34 @@ public class App extends Application {
         
         
         
-        // AC mode slider (-5 to 5)
-        acSlider = new Slider(-5, 5, 0);
+        // AC mode slider (-100 to 100 %, negative is counter-clockwise)
+        acSlider = new Slider(-MotorCommand.MAX_PERCENTAGE, MotorCommand.MAX_PERCENTAGE, 0);
         acSlider.setPrefWidth(550);
         acSlider.setStyle(
             "-fx-control-inner-background: #444444; " +
             "-fx-padding: 20px; " +
             "-fx-font-size: 16px;"
         );
-        acSlider.setMajorTickUnit(1);
-        acSlider.setMinorTickCount(0);
+        acSlider.setMajorTickUnit(20);
+        acSlider.setMinorTickCount(1);
         acSlider.setBlockIncrement(1);
-        acSlider.setSnapToTicks(true);
         // acSlider.setDisable(true);
-        acSpeedLabel = new Label("SPEED: 0 (0 RPM)");
+        acSpeedLabel = new Label("SPEED: 0 % (0 RPM)");
         acSpeedLabel.setStyle("-fx-font-size: 28px; -fx-font-weight: bold; -fx-text-fill: " + TEXT_COLOR + ";");
         
         acDirectionLabel = new Label("DIRECTION: STOPPED");
         acDirectionLabel.setStyle("-fx-font-size: 24px; -fx-font-weight: bold; -fx-text-fill: #aaaaaa;");
 
+        // Sent while the slider (or the gauge bound to it) is still being dragged, the manager ramps && rate limits what goes on the link
         acSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
-            int discreteValue = newVal.intValue();
-            if (!acSlider.isValueChanging()) {
-                updateACStatus(discreteValue);
-                serialCommManager.setLastSentByte(bridgeValue());
+            int signedPercentage = (int) Math.round(newVal.doubleValue());
+            if (signedPercentage != (int) Math.round(oldVal.doubleValue())) {
+                updateACStatus(signedPercentage);
+                sendSpeedTarget();
             }
         });
 
-        gauge.valueProperty().bindBidirectional(acSlider.valueProperty());
+        // Gauge shows the speed MCU reports (see refreshTelemetry), the requested one while there is no telemetry
 
         VBox gaugeToggleContainer = new VBox(10, gauge);
         gaugeToggleContainer.setAlignment(Pos.CENTER);
@@ -434,12 +744,12 @@ public class App extends Application {
 
         Button backButton = createBackButton(modeSelectionScene);
 
-        VBox root = new VBox(40, controlPanel, backButton);
+        VBox root = new VBox(30, controlPanel, createConfirmedLabel(), createTelemetryChart(), createTelemetryLabel(), backButton, createStatsLabel());
         root.setAlignment(Pos.CENTER);
         root.setPadding(new Insets(40));
         root.setStyle("-fx-background-color: " + PRIMARY_COLOR + ";");
 
-        airConditionerScene = new Scene(root, 800, 900);
+        airConditionerScene = new Scene(root, 800, 1150);
     }
 
     private Button createModeButton(String text, String baseColor) {
@@ -491,8 +801,9 @@ public class App extends Application {
             
             @Override
             public void handle(ActionEvent e) {
-                slider.setValue(0);
-                acSlider.setValue(0);
+                stopProfile();
+                if (slider != null) slider.setValue(0);
+                if (acSlider != null) acSlider.setValue(0);
                 Stage currentStage = (Stage) backButton.getScene().getWindow();
                 currentStage.setScene(targetScene);
             }
@@ -502,53 +813,325 @@ public class App extends Application {
 
     private void initializeMotor() {
         if (motorInitialized) {
-                serialCommManager.startPeriodicTransmission(() -> {
-                    Platform.runLater(() -> handleConnectionError(serialCommManager));
-            });
+            motorManager.startTransmission(selectedMotorName);
+        }
+    }
+
+    private void handleConnectionEvent(ConnectionEvents.ConnectionEvent event) {
+        refreshMotorHealth();
+        // Only the motor on screen gets the blocking dialog, the others show up in the health label
+        // (no dialog at all while the reconnect supervisor is on it, and never a second one on top of an open one)
+        if (event.state == ConnectionState.LOST && event.deviceName.equals(selectedMotorName)
+                && !motorManager.isAutoReconnect() && connectionAlert == null) {
+            handleConnectionError(serialCommManager);
+        }
+    }
+
+    private void selectMotor(String deviceName) {
+        selectedMotorName = deviceName;
+        serialCommManager = motorManager.getManager(deviceName);
+        // Toggle reflects the ON/OFF state of the newly selected motor
+        int deviceState = motorManager.isEnabled(deviceName) ? 1 : 0;
+        if (deviceState != currentState) {
+            currentState = deviceState;
+            renderToggleState();
+        }
+        motorInitialized = (currentState == 1);
+        guiUpdates.clearConfirmLatency();
+        refreshConfirmedState();
+    }
+
+    private void refreshMotorHealth() {
+        int deviceCount = motorManager.getDeviceCount();
+        int healthyCount = motorManager.getHealthyCount();
+        int degradedCount = motorManager.getDegradedCount();
+        int recoveringCount = 0;
+        for (String deviceName : motorManager.getDeviceNames()) {
+            if (motorManager.isRecovering(deviceName)) {
+                recoveringCount++;
+            }
+        }
+        motorHealthLabel.setText(healthyCount + "/" + deviceCount + " connected"
+            + (degradedCount > 0 ? ", " + degradedCount + " degraded" : "")
+            + (recoveringCount > 0 ? ", " + recoveringCount + " reconnecting" : ""));
+        motorHealthLabel.setTextFill(healthyCount == deviceCount && degradedCount == 0 ? Color.web("#aaaaaa") : Color.web(WARNING_COLOR));
+        refreshStats();
+        refreshConfirmedState();
+    }
+
+    private void sendCommand(byte command) {
+        // Commands are queued by the manager (superseded setpoints merged, stop first), the label turns green once MCU acks
+        serialCommManager.setLastSentByte(command);
+        guiUpdates.postConfirmedChange();
+    }
+
+    private void sendSpeedTarget() {
+        // Unlike sendCommand the motor is ramped to the new speed, setpoints go out at a bounded rate however fast the slider moves
+        byte command = bridgeValue();
+        serialCommManager.setSpeedTarget(MotorCommand.speedOf(command), MotorCommand.isClockwise(command));
+        guiUpdates.postConfirmedChange();
+    }
+
+    private void startRenderPulse() {
+        // Runs once per frame on the FX thread: whatever link threads left in guiUpdates since the last frame is rendered once,
+        // telemetry && health are polled at their own throttled rates, so a busy link costs the GUI nothing extra
+        renderPulse = new AnimationTimer() {
+            // Pulse timestamps are System.nanoTime based, both are due on the first frame
+            private long lastTelemetryRefresh = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(TELEMETRY_FRAME_MILLIS);
+            private long lastHealthRefresh = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(HEALTH_REFRESH_MILLIS);
+            private final Map<String, ConnectionEvents.ConnectionEvent> eventsThisFrame = new LinkedHashMap<>();
+
+            @Override
+            public void handle(long now) {
+                if (guiUpdates.takeConfirmedChange()) {
+                    refreshConfirmedState();
+                }
+
+                // Dialogs cannot be opened during a pulse, so only the newest event of each device is handed over once per frame
+                ConnectionEvents.ConnectionEvent connectionEvent;
+                while ((connectionEvent = guiUpdates.pollConnectionEvent()) != null) {
+                    eventsThisFrame.put(connectionEvent.deviceName, connectionEvent);
+                }
+                for (ConnectionEvents.ConnectionEvent event : eventsThisFrame.values()) {
+                    Platform.runLater(() -> handleConnectionEvent(event));
+                }
+                eventsThisFrame.clear();
+
+                if (now - lastTelemetryRefresh >= TimeUnit.MILLISECONDS.toNanos(TELEMETRY_FRAME_MILLIS)) {
+                    lastTelemetryRefresh = now;
+                    refreshTelemetry();
+                }
+                if (now - lastHealthRefresh >= TimeUnit.MILLISECONDS.toNanos(HEALTH_REFRESH_MILLIS)) {
+                    lastHealthRefresh = now;
+                    refreshMotorHealth();
+                    refreshProfileState();
+                }
+            }
+        };
+        renderPulse.start();
+    }
+
+    private Label createConfirmedLabel() {
+        Label confirmedLabel = new Label();
+        confirmedLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        confirmedLabels.add(confirmedLabel);
+        return confirmedLabel;
+    }
+
+    private void refreshConfirmedState() {
+        int confirmed = serialCommManager.getConfirmedCommand();
+        byte requested = serialCommManager.getRequestedCommand();
+        String text;
+        Color color;
+        if (confirmed < 0) {
+            text = "MOTOR: NOT CONFIRMED";
+            color = Color.web(WARNING_COLOR);
+        } else {
+            text = "MOTOR: " + describeCommand((byte) confirmed);
+            long confirmLatencyNanos = guiUpdates.getConfirmLatencyNanos();
+            if (confirmLatencyNanos >= 0) {
+                text += String.format(" (acked in %.1f ms)", confirmLatencyNanos / 1e6);
+            }
+            // Requested state is not on the motor yet until its ACK comes back (a legacy MCU only gets the nearest speed it knows)
+            color = (confirmed == (serialCommManager.toLinkCommand(requested) & 0xFF)) ? Color.GREEN : Color.web(WARNING_COLOR);
+        }
+        for (Label confirmedLabel : confirmedLabels) {
+            confirmedLabel.setText(text);
+            confirmedLabel.setTextFill(color);
+        }
+    }
+
+    private String describeCommand(byte command) {
+        if (MotorCommand.isStop(command)) {
+            return "STOPPED";
+        }
+        int speedPercentage = MotorCommand.speedOf(command);
+        return speedPercentage + " % (" + getScaledRPM(speedPercentage) + " RPM) " + (MotorCommand.isClockwise(command) ? "CLOCKWISE" : "COUNTER-CLOCKWISE");
+    }
+
+    private LineChart<Number, Number> createTelemetryChart() {
+        // Speed reported by MCU over the last TELEMETRY_WINDOW_SECONDS (negative is counter-clockwise)
+        NumberAxis timeAxis = new NumberAxis(-TELEMETRY_WINDOW_SECONDS, 0, 2);
+        timeAxis.setLabel("s");
+        NumberAxis speedAxis = new NumberAxis(-MotorCommand.MAX_PERCENTAGE, MotorCommand.MAX_PERCENTAGE, 50);
+        speedAxis.setLabel("%");
+        LineChart<Number, Number> chart = new LineChart<>(timeAxis, speedAxis);
+        // Redrawn in place every frame, so no animation && no per point symbol nodes
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(false);
+        chart.setPrefSize(550, 180);
+        chart.setMaxWidth(550);
+        chart.getData().add(new XYChart.Series<>());
+        telemetryCharts.add(chart);
+        return chart;
+    }
+
+    private Label createTelemetryLabel() {
+        Label telemetryLabel = new Label();
+        telemetryLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #aaaaaa;");
+        telemetryLabels.add(telemetryLabel);
+        return telemetryLabel;
+    }
+
+    private void refreshTelemetry() {
+        // Rx thread only fills the ring, the gauge && charts are redrawn from a copy of it every TELEMETRY_FRAME_MILLIS (see startRenderPulse)
+        TelemetrySeries telemetry = serialCommManager.getTelemetry();
+        long now = System.nanoTime();
+        int count = telemetry.copyLatest(now - TimeUnit.SECONDS.toNanos(TELEMETRY_WINDOW_SECONDS), telemetrySnapshot);
+        boolean fresh = count > 0 && now - telemetrySnapshot.times[count - 1] < TimeUnit.MILLISECONDS.toNanos(TELEMETRY_STALE_MILLIS);
+
+        for (LineChart<Number, Number> chart : telemetryCharts) {
+            ObservableList<XYChart.Data<Number, Number>> points = chart.getData().get(0).getData();
+            if (points.size() > count) {
+                points.remove(count, points.size());
+            }
+            for (int i = 0; i < count; i++) {
+                double secondsAgo = (telemetrySnapshot.times[i] - now) / 1e9;
+                if (i < points.size()) {
+                    points.get(i).setXValue(secondsAgo);
+                    points.get(i).setYValue(telemetrySnapshot.speeds[i]);
+                } else {
+                    points.add(new XYChart.Data<>(secondsAgo, telemetrySnapshot.speeds[i]));
+                }
+            }
+        }
+
+        String text;
+        if (fresh) {
+            int speed = telemetrySnapshot.speeds[count - 1];
+            int flags = telemetrySnapshot.flags[count - 1];
+            String current = ((flags & TelemetrySeries.FLAG_CURRENT_VALID) != 0) ? telemetrySnapshot.currents[count - 1] + " mA" : "n/a";
+            text = String.format("MEASURED: %d %% (%d RPM) | CURRENT: %s | LOST %d", Math.abs(speed), getScaledRPM(Math.abs(speed)), current, telemetry.getLostSamples());
+            if (gauge != null) gauge.setValue(speed);
+        } else {
+            text = "MEASURED: NO TELEMETRY";
+            if (gauge != null) gauge.setValue(acSlider.getValue());
+        }
+        for (Label telemetryLabel : telemetryLabels) {
+            telemetryLabel.setText(text);
+        }
+    }
+
+    private void toggleProfile() {
+        if (profileRunner != null && !profileRunner.isFinished()) {
+            stopProfile();
+            return;
+        }
+        if (!motorInitialized) {
+            showError("Turn the motor ON before running a profile.");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Select Motion Profile");
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) return;
+        MotionProfile profile;
+        try {
+            profile = MotionProfile.load(file);
+        } catch (IOException e) {
+            showError("Invalid profile " + file.getName() + ": " + e.getMessage());
+            return;
+        }
+        profileRunner = new ProfileRunner(serialCommManager, profile);
+        profileRunner.start();
+        refreshProfileState();
+    }
+
+    private void stopProfile() {
+        if (profileRunner != null) {
+            profileRunner.stop();
+        }
+    }
+
+    private void refreshProfileState() {
+        // Profile controls live in the normal mode scene, nothing to show until it is built
+        if (slider == null) return;
+        boolean running = profileRunner != null && !profileRunner.isFinished();
+        slider.setDisable(running);
+        clockwiseBtn.setDisable(running);
+        counterClockwiseBtn.setDisable(running);
+        profileButton.setText(running ? "STOP PROFILE" : "RUN PROFILE...");
+        if (profileRunner != null) {
+            profileLabel.setText((running ? "PROFILE: " : "PROFILE DONE: ") + profileRunner.describe());
+        }
+    }
+
+    private Label createStatsLabel() {
+        Label statsLabel = new Label();
+        statsLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 12px; -fx-text-fill: #aaaaaa;");
+        statsLabels.add(statsLabel);
+        return statsLabel;
+    }
+
+    private void refreshStats() {
+        CommStats stats = serialCommManager.getStats();
+        int protocolVersion = serialCommManager.getProtocolVersion();
+        String text = String.format(
+            "TX %d | ACK %d | RETRY %d | TIMEOUT %d | IN FLIGHT %d%nRTT p50 %.1f ms | p99 %.1f ms | max %.1f ms | RTO %.1f ms%nLINK %s @ %d bps",
+            stats.getFramesSent(), stats.getFramesAcked(), stats.getFramesRetransmitted(),
+            stats.getFramesTimedOut(), stats.getInFlight(),
+            stats.getRttP50Micros() / 1000.0, stats.getRttP99Micros() / 1000.0,
+            stats.getRttMaxMicros() / 1000.0, stats.getRtoMicros() / 1000.0,
+            (protocolVersion > 0) ? "framed v" + protocolVersion : "legacy", serialCommManager.getBaudRate());
+        // Link degrades before it fails: highlight new retries so they are noticed before the Connection Lost dialog
+        long retries = stats.getFramesRetransmitted();
+        Color color = (retries != lastStatsRetries) ? Color.web(WARNING_COLOR) : Color.web("#aaaaaa");
+        lastStatsRetries = retries;
+        for (Label statsLabel : statsLabels) {
+            statsLabel.setText(text);
+            statsLabel.setTextFill(color);
         }
     }
         
     private void toggleState() {
         // toggle the initialize motor button state 
         currentState ^= 1;
+        motorManager.setEnabled(selectedMotorName, currentState == 1);
+        renderToggleState();
+        if (currentState == 1) { // motor ON
+            motorInitialized = true;
+            initializeMotor();
+        } else { // motor Off
+            // motorInitialized = false;
+            sendCommand((byte)0x00);
+
+        }
+
+    }
+
+    private void renderToggleState() {
         // animate the initialization button toggle
         TranslateTransition transition = new TranslateTransition(Duration.millis(200), toggleKnob);
         transition.setToX(currentState==1 ? 30 : -30); 
         transition.play();        
         if (currentState == 1) { // motor ON
-            motorInitialized = true;
             toggleBackground.setFill(Color.GREEN.darker());
             statusText.setText("ON");
             statusText.setTranslateX(-15);
             normalModeBtn.setDisable(false);
             acModeBtn.setDisable(false);
-
-            initializeMotor();
         } else { // motor Off
-            // motorInitialized = false;
             toggleBackground.setFill(Color.RED.darker());
             statusText.setText("OFF");
             statusText.setTranslateX(15);
             normalModeBtn.setDisable(true);
             acModeBtn.setDisable(true);
-            serialCommManager.setLastSentByte((byte)0x00);
-
         }
-
     }
     
-    private int getScaledRPM(int sliderValue) {
-        return SPEED_MAPPING[sliderValue] * RPM_SCALE_FACTOR;
+    private int getScaledRPM(int speedPercentage) {
+        return speedPercentage * MAX_RPM / MotorCommand.MAX_PERCENTAGE;
     }
 
-    private void updateMotorSpeed(int sliderValue) {
+    private void updateMotorSpeed(int speedPercentage) {
         if (!motorInitialized) {
             statusLabel.setText("Status: Please initialize motor first");
             return;
         }
         
-        this.motorSpeed = getScaledRPM(sliderValue);
-        motorSpeedLabel.setText(sliderValue + " (" + this.motorSpeed + " RPM)");
+        this.motorSpeed = getScaledRPM(speedPercentage);
+        motorSpeedLabel.setText(speedPercentage + " % (" + this.motorSpeed + " RPM)");
         updateMotorDirection();
     }
 
@@ -556,7 +1139,7 @@ public class App extends Application {
         int absoluteValue = Math.abs(sliderValue);
         this.motorSpeed = getScaledRPM(absoluteValue);
         
-        acSpeedLabel.setText("SPEED: " + absoluteValue + " (" + this.motorSpeed + " RPM)");
+        acSpeedLabel.setText("SPEED: " + absoluteValue + " % (" + this.motorSpeed + " RPM)");
 
         if (sliderValue > 0) {
             clockwiseDirection = true;
@@ -571,7 +1154,7 @@ public class App extends Application {
             acDirectionLabel.setTextFill(Color.web("#aaaaaa"));
         }
 
-        if (absoluteValue >= 4) {
+        if (absoluteValue >= 80) {
             gauge.setBarColor(Color.web(WARNING_COLOR));
         } else {
             gauge.setBarColor(Color.web(ACCENT_COLOR));
@@ -592,26 +1175,16 @@ public class App extends Application {
     private byte bridgeValue() {
         if (!motorInitialized) return 0;
         
-        int mappedSpeed;
+        int sliderValue;
         boolean isNormalMode = (primaryStage.getScene() == normalMotorControlScene);
         
         if (isNormalMode) {
-            mappedSpeed = SPEED_MAPPING[(int)slider.getValue()];
+            sliderValue = (int) Math.round(slider.getValue());
         } else {
-            mappedSpeed = SPEED_MAPPING[Math.abs((int)acSlider.getValue())];
+            sliderValue = (int) Math.round(acSlider.getValue());
         }
 
-        int directionBit = clockwiseDirection ? 0 : 1;
-        byte result = (byte)((directionBit << 4) | mappedSpeed);
-
-        System.out.printf("Mode: %s, Slider: %d, Speed: %d, Dir: %s, Binary: %08d%n",
-            isNormalMode ? "NORMAL" : "AC",
-            isNormalMode ? (int)slider.getValue() : (int)acSlider.getValue(),
-            getScaledRPM(isNormalMode ? (int)slider.getValue() : Math.abs((int)acSlider.getValue())),
-            directionBit == 0 ? "CW" : "CCW",
-            Integer.parseInt(Integer.toBinaryString(result & 0xFF)));
-        
-        return result;
+        return MotorCommand.percent(Math.abs(sliderValue), clockwiseDirection);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,206 @@
+// for segment files
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+// for memory mapping segments
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+// for sorting segment files
+import java.util.Arrays;
+// for claiming record slots without locking
+import java.util.concurrent.atomic.AtomicInteger;
+
+// binary journal of everything that happens on the link (frames, ACKs, timeouts, setpoints)
+// records are fixed size and appended to memory mapped segment files that rotate when full,
+// so appending costs a few absolute puts into memory and can stay on in production
+// use JournalReader to dump/export a journal directory
+public class CommJournal {
+
+    // record types
+    public static final byte FRAME_SENT = 1;
+    public static final byte FRAME_RETRANSMITTED = 2;
+    public static final byte ACK = 3;
+    public static final byte STRAY_ACK = 4;
+    public static final byte TIMEOUT = 5;
+    public static final byte FAILURE = 6;
+    public static final byte SETPOINT = 7;
+    public static final byte DEVICE_OPENED = 8;
+    // value is the protocol version (0 --> legacy), aux the line rate in bps (0 --> none), written when a device is journaled
+    // and whenever a link negotiation settles
+    public static final byte LINK = 9;
+
+    // segment header: magic, version, record size, session id, wall clock (ms) && System.nanoTime at segment creation
+    // session id is the sequence number of the first segment written by a CommJournal instance
+    public static final int MAGIC = 0x4D434A31; // "MCJ1"
+    // version 2: SETPOINT, TIMEOUT && FAILURE values are commands with the speed in percent (see MotorCommand, TIMEOUT/FAILURE
+    // hold the last command sent)
+    // version 3: LINK records, FRAME/ACK values are commands as well after a LINK with a framed protocol version (legacy data
+    // bytes with their ID otherwise)
+    public static final int VERSION = 3;
+    public static final int HEADER_SIZE = 32;
+
+    // record layout: timestamp (System.nanoTime, 8) | type (1) | value (1) | device (2) | aux (4)
+    // type is written last, a record whose type is 0 was never completed (end of data)
+    public static final int RECORD_SIZE = 16;
+
+    // segment file naming
+    public static final String SEGMENT_PREFIX = "journal-";
+    public static final String SEGMENT_SUFFIX = ".mcj";
+    public static final String DEVICE_INDEX_FILE = "devices.idx";
+
+    // one mapped segment file
+    private static class Segment {
+        final int sequence;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        // next free record slot (claimed with getAndIncrement, may run past capacity)
+        final AtomicInteger nextSlot = new AtomicInteger();
+
+        Segment(int sequence, MappedByteBuffer buffer, int capacity) {
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+
+    // defining the directory segments are written to
+    private final File directory;
+
+    // defining the size of a segment file (in bytes)
+    private final int segmentBytes;
+
+    // defining the max number of segment files kept on disk (oldest are deleted on rotation)
+    private final int maxSegments;
+
+    // defining the segment currently appended to
+    private volatile Segment current;
+
+    // defining a flag to indicate that journal has been closed
+    private volatile boolean closed = false;
+
+    // defining the number of device ids handed out
+    private final AtomicInteger deviceCount = new AtomicInteger();
+
+    // defining the id of this session (device ids are only unique within a session)
+    private final int sessionId;
+
+    // CommJournal constructor takes the directory, the size of one segment (in bytes) and how many segments to keep
+    public CommJournal(File directory, int segmentBytes, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        } else {}
+        // every session starts a new segment after the ones left by previous sessions
+        File[] existing = listSegments(directory);
+        int nextSequence = (existing.length == 0) ? 0 : segmentSequence(existing[existing.length - 1]) + 1;
+        sessionId = nextSequence;
+        current = openSegment(nextSequence);
+        deleteOldSegments();
+    }
+
+    // method to register a device, returns the id its records carry (name goes to devices.idx)
+    public synchronized int registerDevice(String name) {
+        int deviceId = deviceCount.getAndIncrement();
+        try (FileWriter writer = new FileWriter(new File(directory, DEVICE_INDEX_FILE), true)) {
+            writer.write(sessionId + " " + deviceId + " " + name + System.lineSeparator());
+        } catch (IOException e) {
+            // records are still written, only the name lookup is lost
+        }
+        append(DEVICE_OPENED, (byte)0, deviceId, 0);
+        return deviceId;
+    }
+
+    // method to append a record stamped with the current time
+    public void append(byte type, byte value, int device, int aux) {
+        append(System.nanoTime(), type, value, device, aux);
+    }
+
+    // method to append a record with a given System.nanoTime timestamp (ex. ACK arrival time)
+    public void append(long timestampNanos, byte type, byte value, int device, int aux) {
+        while (!closed) {
+            Segment segment = current;
+            int slot = segment.nextSlot.getAndIncrement();
+            if (slot < segment.capacity) {
+                // absolute puts only, so concurrent writers never share buffer state
+                int offset = HEADER_SIZE + slot * RECORD_SIZE;
+                MappedByteBuffer buffer = segment.buffer;
+                buffer.putLong(offset, timestampNanos);
+                buffer.put(offset + 9, value);
+                buffer.putShort(offset + 10, (short)device);
+                buffer.putInt(offset + 12, aux);
+                buffer.put(offset + 8, type);
+                return;
+            } else {}
+            // segment is full --> first writer to get here rotates, the others retry on the new one
+            rotate(segment);
+        }
+    }
+
+    // method to switch to a new segment once the given one is full
+    private synchronized void rotate(Segment full) {
+        if (current != full || closed) {
+            return; // somebody else already rotated
+        } else {}
+        try {
+            current = openSegment(full.sequence + 1);
+            deleteOldSegments();
+        } catch (IOException e) {
+            // disk full or similar --> stop journaling rather than slowing the link down
+            closed = true;
+        }
+    }
+
+    // method to create && map a new zero filled segment file
+    private Segment openSegment(int sequence) throws IOException {
+        File file = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            // mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, sessionId);
+            buffer.putLong(16, System.currentTimeMillis());
+            buffer.putLong(24, System.nanoTime());
+            return new Segment(sequence, buffer, (segmentBytes - HEADER_SIZE) / RECORD_SIZE);
+        }
+    }
+
+    // method to keep at most maxSegments files on disk
+    private void deleteOldSegments() {
+        File[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+            segments[i].delete();
+        }
+    }
+
+    // method to flush the current segment to disk and stop appending
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.buffer.force();
+        } else {}
+    }
+
+    // method to list segment files of a journal directory, oldest first
+    public static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        } else {}
+        Arrays.sort(segments, (a, b) -> Integer.compare(segmentSequence(a), segmentSequence(b)));
+        return segments;
+    }
+
+    // method to get the sequence number of a segment file from its name
+    public static int segmentSequence(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,194 @@
+// for counters updated by executor thread && read by GUI/JMX threads
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+// for time unit conversions
+import java.util.concurrent.TimeUnit;
+
+// link health counters && ACK round trip histogram of a single SerialCommManager, exposed over JMX (see CommStatsMBean)
+// histogram is HDR style: linear below 64us, then 32 sub-buckets per power of two (~3% precision) up to ~19h
+public class CommStats implements CommStatsMBean {
+
+    // defining the number of sub-buckets per power of two (2^SUB_BUCKET_BITS)
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // defining the largest power of two tracked, bigger samples land in the last bucket
+    private static final int MAX_MAGNITUDE = 36;
+
+    // defining the total number of buckets: 2 * SUB_BUCKET_COUNT linear ones, then SUB_BUCKET_COUNT per extra power of two
+    private static final int BUCKET_COUNT = 2 * SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    // defining the largest Tx batch size counted on its own, bigger batches are counted together
+    public static final int MAX_BATCH_SIZE = 16;
+
+    // defining frame counters
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesAcked = new LongAdder();
+    private final LongAdder framesRetransmitted = new LongAdder();
+    private final LongAdder framesTimedOut = new LongAdder();
+    private final LongAdder strayAcks = new LongAdder();
+
+    // defining the number of queued commands superseded by a newer one before they were sent
+    private final LongAdder commandsCoalesced = new LongAdder();
+
+    // defining the number of Tx writes, the frames they carried, the largest one && how many writes carried each number of frames
+    // (index 1..MAX_BATCH_SIZE, the last one also counts bigger batches)
+    private final LongAdder txFlushes = new LongAdder();
+    private final LongAdder txFlushedFrames = new LongAdder();
+    private volatile int txMaxBatchFrames;
+    private final AtomicLongArray txBatchSizes = new AtomicLongArray(MAX_BATCH_SIZE + 1);
+
+    // defining gauges mirrored from executor thread
+    private volatile int inFlight;
+    private volatile long rtoNanos;
+
+    // defining ACK round trip histogram (in us) && its summary values
+    private final AtomicLongArray rttBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder rttSampleCount = new LongAdder();
+    private final LongAdder rttSumMicros = new LongAdder();
+    private volatile long rttMaxMicros;
+
+    // recording methods (called by SerialCommManager)
+    public void recordFrameSent() { framesSent.increment(); }
+    public void recordFrameAcked() { framesAcked.increment(); }
+    public void recordRetransmission() { framesRetransmitted.increment(); }
+    public void recordTimeout() { framesTimedOut.increment(); }
+    public void recordStrayAck() { strayAcks.increment(); }
+    public void recordCommandsCoalesced(int count) { commandsCoalesced.add(count); }
+    public void recordInFlight(int count) { inFlight = count; }
+    public void recordRto(long nanos) { rtoNanos = nanos; }
+
+    // method to add a Tx write that carried the passed number of frames
+    public void recordFlush(int frames) {
+        txFlushes.increment();
+        txFlushedFrames.add(frames);
+        txBatchSizes.incrementAndGet(Math.min(frames, MAX_BATCH_SIZE));
+        // single writer per manager, so a plain read-compare-write is enough
+        if (frames > txMaxBatchFrames) {
+            txMaxBatchFrames = frames;
+        } else {}
+    }
+
+    // method to get the number of Tx writes that carried the passed number of frames (MAX_BATCH_SIZE --> that many or more)
+    public long getTxBatchSizeCount(int frames) {
+        return txBatchSizes.get(Math.max(0, Math.min(frames, MAX_BATCH_SIZE)));
+    }
+
+    // method to add an ACK round trip sample (in ns)
+    public void recordRtt(long rttNanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(rttNanos));
+        rttBuckets.incrementAndGet(bucketIndex(micros));
+        rttSampleCount.increment();
+        rttSumMicros.add(micros);
+        // single writer per manager, so a plain read-compare-write is enough
+        if (micros > rttMaxMicros) {
+            rttMaxMicros = micros;
+        } else {}
+    }
+
+    // method to map a value to its bucket
+    private static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int)value;
+        } else {}
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        } else {}
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >> shift) - SUB_BUCKET_COUNT;
+        return 2 * SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    // method to get the highest value that falls in a bucket
+    private static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        } else {}
+        int offset = index - 2 * SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_COUNT + 1;
+        long top = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // method to get the RTT (in us) below which percentile % of samples fall
+    public long getRttPercentileMicros(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = rttBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        } else {}
+        long target = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), rttMaxMicros);
+            } else {}
+        }
+        return rttMaxMicros;
+    }
+
+    @Override public long getFramesSent() { return framesSent.sum(); }
+    @Override public long getFramesAcked() { return framesAcked.sum(); }
+    @Override public long getFramesRetransmitted() { return framesRetransmitted.sum(); }
+    @Override public long getFramesTimedOut() { return framesTimedOut.sum(); }
+    @Override public long getStrayAcks() { return strayAcks.sum(); }
+    @Override public long getCommandsCoalesced() { return commandsCoalesced.sum(); }
+    @Override public int getInFlight() { return inFlight; }
+    @Override public long getRtoMicros() { return TimeUnit.NANOSECONDS.toMicros(rtoNanos); }
+    @Override public long getTxFlushes() { return txFlushes.sum(); }
+    @Override public int getTxMaxBatchFrames() { return txMaxBatchFrames; }
+    @Override public long getRttSampleCount() { return rttSampleCount.sum(); }
+    @Override public long getRttP50Micros() { return getRttPercentileMicros(50); }
+    @Override public long getRttP90Micros() { return getRttPercentileMicros(90); }
+    @Override public long getRttP99Micros() { return getRttPercentileMicros(99); }
+    @Override public long getRttMaxMicros() { return rttMaxMicros; }
+
+    @Override
+    public double getTxMeanBatchFrames() {
+        long flushes = txFlushes.sum();
+        return (flushes == 0) ? 0 : (double)txFlushedFrames.sum() / flushes;
+    }
+
+    @Override
+    public long[] getTxBatchSizeCounts() {
+        long[] counts = new long[MAX_BATCH_SIZE + 1];
+        for (int i = 0; i <= MAX_BATCH_SIZE; i++) {
+            counts[i] = txBatchSizes.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getRttMeanMicros() {
+        long count = rttSampleCount.sum();
+        return (count == 0) ? 0 : rttSumMicros.sum() / count;
+    }
+
+    @Override
+    public void reset() {
+        framesSent.reset();
+        framesAcked.reset();
+        framesRetransmitted.reset();
+        framesTimedOut.reset();
+        strayAcks.reset();
+        commandsCoalesced.reset();
+        txFlushes.reset();
+        txFlushedFrames.reset();
+        txMaxBatchFrames = 0;
+        for (int i = 0; i <= MAX_BATCH_SIZE; i++) {
+            txBatchSizes.set(i, 0);
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            rttBuckets.set(i, 0);
+        }
+        rttSampleCount.reset();
+        rttSumMicros.reset();
+        rttMaxMicros = 0;
+    }
+}
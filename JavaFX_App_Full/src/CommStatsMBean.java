@@ -0,0 +1,43 @@
+// JMX management interface of CommStats (standard MBean naming: <Class>MBean)
+// times are reported in microseconds
+public interface CommStatsMBean {
+
+    long getFramesSent();
+
+    long getFramesAcked();
+
+    long getFramesRetransmitted();
+
+    long getFramesTimedOut();
+
+    long getStrayAcks();
+
+    long getCommandsCoalesced();
+
+    int getInFlight();
+
+    long getRtoMicros();
+
+    long getTxFlushes();
+
+    double getTxMeanBatchFrames();
+
+    int getTxMaxBatchFrames();
+
+    // number of Tx writes per batch size in frames (index 0 unused, the last index also counts bigger batches)
+    long[] getTxBatchSizeCounts();
+
+    long getRttSampleCount();
+
+    long getRttMeanMicros();
+
+    long getRttP50Micros();
+
+    long getRttP90Micros();
+
+    long getRttP99Micros();
+
+    long getRttMaxMicros();
+
+    void reset();
+}
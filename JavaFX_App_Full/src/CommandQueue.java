@@ -0,0 +1,76 @@
+// commands waiting for room in the send window of a SerialCommManager
+// superseded setpoints are merged into the newest one, and a stop (speed 0) is never merged away:
+// it drops the setpoints queued before it and is always sent before the setpoints queued after it.
+// so the queue is bounded by construction: at most one stop followed by one setpoint
+// thread safe: app threads offer, executor thread polls
+public class CommandQueue {
+
+    // defining a value returned when there is no command
+    public static final int NONE = -1;
+
+    // defining the pending stop && the pending setpoint (NONE --> empty slot) [guarded by this]
+    private int pendingStop = NONE;
+    private int pendingSetpoint = NONE;
+
+    // defining the time each pending command was submitted (caller's clock) [guarded by this]
+    private long stopSubmittedAt;
+    private long setpointSubmittedAt;
+
+    // defining the submission time of the last polled command [executor thread only]
+    private long polledSubmittedAt;
+
+    // method to queue a command, returns the number of queued commands it supersedes
+    public synchronized int offer(byte command, long submittedAtNanos) {
+        int superseded = 0;
+        if (MotorCommand.isStop(command)) {
+            // motor is going to stop --> setpoints that have not been sent yet are stale
+            if (pendingSetpoint != NONE) {
+                pendingSetpoint = NONE;
+                superseded++;
+            } else {}
+            // consecutive stops collapse into the newest one
+            if (pendingStop != NONE) {
+                superseded++;
+            } else {}
+            pendingStop = command & 0xFF;
+            stopSubmittedAt = submittedAtNanos;
+        } else {
+            if (pendingSetpoint != NONE) {
+                superseded++;
+            } else {}
+            pendingSetpoint = command & 0xFF;
+            setpointSubmittedAt = submittedAtNanos;
+        }
+        return superseded;
+    }
+
+    // method to take the next command to send (stop first), returns NONE if the queue is empty
+    public synchronized int poll() {
+        int command;
+        if (pendingStop != NONE) {
+            command = pendingStop;
+            polledSubmittedAt = stopSubmittedAt;
+            pendingStop = NONE;
+        } else {
+            command = pendingSetpoint;
+            polledSubmittedAt = setpointSubmittedAt;
+            pendingSetpoint = NONE;
+        }
+        return command;
+    }
+
+    // method to get the submission time of the command returned by the last poll [executor thread only]
+    public long getPolledSubmittedAt() {
+        return polledSubmittedAt;
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingStop == NONE && pendingSetpoint == NONE;
+    }
+
+    // method to drop all pending commands (ex. after a failure, the last requested value is sent on restart)
+    public synchronized void clear() {
+        pendingStop = NONE;
+        pendingSetpoint = NONE;
+    }
+}
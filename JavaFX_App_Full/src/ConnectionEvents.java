@@ -0,0 +1,184 @@
+// for subscribers && per device state shared between link threads and the hub thread
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// typed stream of connection state changes (see ConnectionState) fanned out to any number of subscribers.
+// link threads only publish: the latest state of the device is overwritten and, if none is pending yet, a single delivery
+// is scheduled one debounce window later on the hub thread. whatever happened in the window is merged into one event
+// (nothing at all if the device ended up in the state subscribers already know), so a storm of failures costs
+// subscribers at most one event per device per window. every subscriber is called through its own executor,
+// a slow subscriber (ex. one that writes to disk) never holds up the link or the other subscribers
+public class ConnectionEvents {
+
+    // defining the default debounce window (in ms)
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    // subscriber told about state changes (called on the executor it subscribed with)
+    public interface Subscriber {
+        void onConnectionEvent(ConnectionEvent event);
+    }
+
+    // state change of one device, merged over a debounce window
+    public static final class ConnectionEvent {
+        public final String deviceName;
+        // state subscribers were told about before (null --> first event of the device)
+        public final ConnectionState previousState;
+        public final ConnectionState state;
+        // time the event was delivered (System.nanoTime based)
+        public final long timeNanos;
+        // number of published changes merged into this event (1 --> nothing was merged)
+        public final long mergedChanges;
+
+        ConnectionEvent(String deviceName, ConnectionState previousState, ConnectionState state, long timeNanos, long mergedChanges) {
+            this.deviceName = deviceName;
+            this.previousState = previousState;
+            this.state = state;
+            this.timeNanos = timeNanos;
+            this.mergedChanges = mergedChanges;
+        }
+
+        @Override
+        public String toString() {
+            return deviceName + ": " + ((previousState != null) ? previousState + " -> " : "") + state
+                + ((mergedChanges > 1) ? " (" + mergedChanges + " changes merged)" : "");
+        }
+    }
+
+    // per device state
+    private static class DeviceState {
+        // latest published state && number of changes published since the last delivery (any thread)
+        final AtomicReference<ConnectionState> latest = new AtomicReference<>();
+        final AtomicLong pendingChanges = new AtomicLong(0);
+        // flag telling if a delivery is scheduled
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        // state subscribers were last told about [hub thread only]
+        ConnectionState delivered;
+    }
+
+    private static class Subscription {
+        final Subscriber subscriber;
+        final Executor executor;
+
+        Subscription(Subscriber subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+    }
+
+    // defining the debounce window (in ns)
+    private final long debounceNanos;
+
+    // defining the thread deliveries run on
+    private final ScheduledExecutorService hub;
+
+    // defining the subscribers (copied on subscribe, so deliveries walk it without locking)
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // defining the state of every device that ever published
+    private final ConcurrentHashMap<String, DeviceState> devices = new ConcurrentHashMap<>();
+
+    // defining the number of published changes && of delivered events
+    private final AtomicLong publishedChanges = new AtomicLong(0);
+    private final AtomicLong deliveredEvents = new AtomicLong(0);
+
+    public ConnectionEvents() {
+        this(DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    // ConnectionEvents constructor takes the debounce window (in ms)
+    public ConnectionEvents(long debounceMillis) {
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.hub = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-events");
+            // hub thread must never keep the JVM alive on its own
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // method to subscribe, the subscriber is called on the hub thread (it must not block)
+    public void subscribe(Subscriber subscriber) {
+        subscribe(subscriber, Runnable::run);
+    }
+
+    // method to subscribe, the subscriber is called through the passed executor
+    // (ex. a single thread executor for a subscriber that blocks, or one that hops on the GUI thread)
+    public void subscribe(Subscriber subscriber, Executor executor) {
+        subscriptions.add(new Subscription(subscriber, executor));
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscriptions.removeIf(subscription -> subscription.subscriber == subscriber);
+    }
+
+    // method to publish the new state of a device (any thread, never blocks)
+    public void publish(String deviceName, ConnectionState state) {
+        DeviceState device = devices.computeIfAbsent(deviceName, name -> new DeviceState());
+        device.latest.set(state);
+        device.pendingChanges.incrementAndGet();
+        publishedChanges.incrementAndGet();
+        // only the first change of a window schedules a delivery, the others are merged into it
+        if (device.scheduled.compareAndSet(false, true)) {
+            try {
+                hub.schedule(() -> deliver(deviceName, device), debounceNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // hub was shut down --> nobody listens anymore
+            }
+        } else {}
+    }
+
+    // method to tell subscribers about the state a device settled on in the window [hub thread only]
+    private void deliver(String deviceName, DeviceState device) {
+        // changes published from now on schedule the next window
+        device.scheduled.set(false);
+        long merged = device.pendingChanges.getAndSet(0);
+        ConnectionState state = device.latest.get();
+        if (state == device.delivered || devices.get(deviceName) != device) {
+            return; // ended up where it was (ex. a retry failed again), or device was forgotten
+        } else {}
+        ConnectionEvent event = new ConnectionEvent(deviceName, device.delivered, state, System.nanoTime(), merged);
+        device.delivered = state;
+        deliveredEvents.incrementAndGet();
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.executor.execute(() -> subscription.subscriber.onConnectionEvent(event));
+            } catch (RuntimeException e) {
+                // a broken subscriber (or its executor) must not keep the event from the others
+                System.err.println("Connection event subscriber failed: " + e);
+            }
+        }
+    }
+
+    // method to get the latest published state of a device (may not be delivered yet), null if it never published one
+    public ConnectionState getState(String deviceName) {
+        DeviceState device = devices.get(deviceName);
+        return (device != null) ? device.latest.get() : null;
+    }
+
+    // method to forget a device (ex. it was closed), a pending delivery is dropped
+    public void remove(String deviceName) {
+        devices.remove(deviceName);
+    }
+
+    // method to get the number of changes published so far
+    public long getPublishedChanges() {
+        return publishedChanges.get();
+    }
+
+    // method to get the number of events delivered so far (each one went to every subscriber)
+    public long getDeliveredEvents() {
+        return deliveredEvents.get();
+    }
+
+    public void shutdown() {
+        hub.shutdownNow();
+    }
+}
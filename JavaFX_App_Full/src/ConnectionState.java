@@ -0,0 +1,11 @@
+// state of the link to one MCU, as published by SerialCommManager && fanned out by ConnectionEvents
+public enum ConnectionState {
+    // MCU acks what it is sent
+    CONNECTED,
+    // MCU still acks, but frames had to be retransmitted recently (link is lossy or slower than estimated)
+    DEGRADED,
+    // MCU stopped answering (retransmissions ran out, a retry failed or the port failed)
+    LOST,
+    // a retry is in progress (by the operator or by ReconnectSupervisor)
+    RECOVERING
+}
@@ -0,0 +1,219 @@
+// framed link protocol (version 1) shared by SerialCommManager, SimulatedMcuTransport && control.c:
+//
+//   START (0xA5) | TYPE << 4 | VERSION | SEQ lo | SEQ hi | LEN | PAYLOAD (LEN bytes) | CRC lo | CRC hi
+//
+// CRC is CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF) over TYPE/VERSION .. PAYLOAD, multi-byte fields are little endian.
+// frames:
+//   CMD         host -> MCU  payload: speed (0-100 %) | direction (0 clockwise, 1 counter-clockwise)
+//   ACK         MCU -> host  no payload, SEQ of the acked CMD
+//   HELLO       host -> MCU  payload: highest version | baud rate candidates (u16 each in units of 100 bps, best first, none --> keep current)
+//   HELLO_REPLY MCU -> host  payload: chosen version | chosen baud rate (u16 in units of 100 bps)
+//   TELEMETRY   MCU -> host  payload: applied speed (0-100 %) | direction | flags (see TelemetrySeries) | current (u16 in mA),
+//                            sent every 100 ms once the link is framed, SEQ counts telemetry frames
+// links start in the legacy single byte protocol at 9600 bps, see SerialCommManager.negotiateLink.
+// a legacy MCU applies every byte it receives as a command, so a HELLO must read as stops to it: HELLO is type 6 (TYPE/VERSION
+// byte 0x61) and encodeHello picks the SEQ that makes every byte, CRC included, a clockwise stop (speed level legacy firmware
+// maps to 0 %, direction bit clear), so probing an old MCU never spins its motor nor flips its direction
+public final class FrameCodec {
+
+    // defining protocol constants
+    public static final int START = 0xA5;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 5;
+    public static final int CRC_SIZE = 2;
+    public static final int MAX_PAYLOAD = 32;
+    public static final int MAX_FRAME_SIZE = HEADER_SIZE + MAX_PAYLOAD + CRC_SIZE;
+
+    // defining frame types
+    public static final int TYPE_CMD = 1;
+    public static final int TYPE_ACK = 2;
+    public static final int TYPE_HELLO_REPLY = 4;
+    public static final int TYPE_TELEMETRY = 5;
+    // HELLO type is even so the direction bit of its TYPE/VERSION byte is clear (see encodeHello)
+    public static final int TYPE_HELLO = 6;
+
+    // defining the payload size of a CMD frame
+    public static final int CMD_PAYLOAD_SIZE = 2;
+
+    // defining the payload size of a TELEMETRY frame
+    public static final int TELEMETRY_PAYLOAD_SIZE = 5;
+
+    // defining the unit baud rates are carried in (bps)
+    public static final int BAUD_UNIT = 100;
+
+    // defining CRC-16/CCITT-FALSE lookup table
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 0x8000) != 0) ? ((crc << 1) ^ 0x1021) : (crc << 1);
+            }
+            CRC_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private FrameCodec() {}
+
+    // callback interface of the decoder, payload is only valid during the call
+    public interface FrameListener {
+        void onFrame(int type, int sequence, byte[] payload, int payloadLength);
+    }
+
+    // method to update a CRC-16/CCITT-FALSE with a byte range (start with 0xFFFF)
+    public static int crc16(int crc, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    // method to write a frame into out (at least HEADER_SIZE + payloadLength + CRC_SIZE bytes), returns the frame length
+    public static int encode(int type, int sequence, byte[] payload, int payloadLength, byte[] out) {
+        out[0] = (byte) START;
+        out[1] = (byte) ((type << 4) | VERSION);
+        out[2] = (byte) sequence;
+        out[3] = (byte) (sequence >> 8);
+        out[4] = (byte) payloadLength;
+        if (payloadLength > 0) {
+            System.arraycopy(payload, 0, out, HEADER_SIZE, payloadLength);
+        } else {}
+        int crc = crc16(0xFFFF, out, 1, HEADER_SIZE - 1 + payloadLength);
+        out[HEADER_SIZE + payloadLength] = (byte) crc;
+        out[HEADER_SIZE + payloadLength + 1] = (byte) (crc >> 8);
+        return HEADER_SIZE + payloadLength + CRC_SIZE;
+    }
+
+    // method to write a HELLO offering the passed line rates (in bps, best first, none --> keep the current one) into out,
+    // returns the frame length. SEQ of a HELLO means nothing to the MCU, the first one that makes every byte of the frame
+    // a clockwise stop for legacy firmware is taken (see MotorCommand.isLegacyClockwiseStop). a LEN that is not one
+    // gets a 0 byte padded to the payload, MCU reads candidates in pairs so it never sees it
+    public static int encodeHello(int[] baudCandidates, byte[] out) {
+        int payloadLength = 1 + 2 * baudCandidates.length;
+        if (!MotorCommand.isLegacyClockwiseStop((byte) payloadLength)) {
+            payloadLength++;
+        } else {}
+        byte[] payload = new byte[payloadLength];
+        payload[0] = (byte) VERSION;
+        for (int i = 0; i < baudCandidates.length; i++) {
+            writeShort(payload, 1 + 2 * i, baudCandidates[i] / BAUD_UNIT);
+        }
+        for (int sequence = 0; sequence <= 0xFFFF; sequence++) {
+            int length = encode(TYPE_HELLO, sequence, payload, payload.length, out);
+            if (isLegacyStops(out, length)) {
+                return length;
+            } else {}
+        }
+        throw new IllegalArgumentException("no HELLO sequence number makes the offered baud rates safe for legacy firmware");
+    }
+
+    // method to check if every byte of a frame is a clockwise stop for legacy firmware
+    public static boolean isLegacyStops(byte[] frame, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!MotorCommand.isLegacyClockwiseStop(frame[i])) {
+                return false;
+            } else {}
+        }
+        return true;
+    }
+
+    // method to write a CMD frame carrying a speed (0-100 %) && direction into out, returns the frame length
+    public static int encodeCommand(int sequence, int speedPercentage, boolean clockwise, byte[] out) {
+        out[0] = (byte) START;
+        out[1] = (byte) ((TYPE_CMD << 4) | VERSION);
+        out[2] = (byte) sequence;
+        out[3] = (byte) (sequence >> 8);
+        out[4] = (byte) CMD_PAYLOAD_SIZE;
+        out[5] = (byte) speedPercentage;
+        out[6] = (byte) (clockwise ? 0 : 1);
+        int crc = crc16(0xFFFF, out, 1, HEADER_SIZE - 1 + CMD_PAYLOAD_SIZE);
+        out[7] = (byte) crc;
+        out[8] = (byte) (crc >> 8);
+        return HEADER_SIZE + CMD_PAYLOAD_SIZE + CRC_SIZE;
+    }
+
+    // method to read a little endian u16 from a payload
+    public static int readShort(byte[] payload, int offset) {
+        return (payload[offset] & 0xFF) | (payload[offset + 1] & 0xFF) << 8;
+    }
+
+    // method to write a little endian u16 into a payload
+    public static void writeShort(byte[] payload, int offset, int value) {
+        payload[offset] = (byte) value;
+        payload[offset + 1] = (byte) (value >> 8);
+    }
+
+    // incremental decoder: bytes can be fed in any chunking, garbage between frames is skipped && frames with a bad CRC are dropped
+    // not thread safe (one decoder per Rx thread)
+    public static class Decoder {
+        private final FrameListener listener;
+        // defining the frame being assembled && the number of bytes in it
+        private final byte[] frame = new byte[MAX_FRAME_SIZE];
+        private final byte[] payload = new byte[MAX_PAYLOAD];
+        private int position = 0;
+        private int expectedLength = 0;
+        // defining counters of dropped frames
+        private long crcErrors = 0;
+        private long framingErrors = 0;
+
+        public Decoder(FrameListener listener) {
+            this.listener = listener;
+        }
+
+        public void feed(byte[] data, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                feed(data[i]);
+            }
+        }
+
+        public void feed(byte value) {
+            if (position == 0) {
+                // hunting for a start marker
+                if ((value & 0xFF) == START) {
+                    frame[position++] = value;
+                } else {}
+                return;
+            } else {}
+
+            frame[position++] = value;
+            if (position == 2 && (value & 0x0F) != VERSION) {
+                // unknown version --> resync on the next start marker
+                framingErrors++;
+                position = 0;
+            } else if (position == HEADER_SIZE) {
+                int payloadLength = value & 0xFF;
+                if (payloadLength > MAX_PAYLOAD) {
+                    framingErrors++;
+                    position = 0;
+                } else {
+                    expectedLength = HEADER_SIZE + payloadLength + CRC_SIZE;
+                }
+            } else if (position > HEADER_SIZE && position == expectedLength) {
+                int payloadLength = expectedLength - HEADER_SIZE - CRC_SIZE;
+                int crc = crc16(0xFFFF, frame, 1, HEADER_SIZE - 1 + payloadLength);
+                int receivedCrc = (frame[expectedLength - 2] & 0xFF) | (frame[expectedLength - 1] & 0xFF) << 8;
+                position = 0;
+                if (crc != receivedCrc) {
+                    crcErrors++;
+                    return;
+                } else {}
+                System.arraycopy(frame, HEADER_SIZE, payload, 0, payloadLength);
+                listener.onFrame((frame[1] >> 4) & 0x0F, (frame[2] & 0xFF) | (frame[3] & 0xFF) << 8, payload, payloadLength);
+            } else {}
+        }
+
+        // method to check if the decoder is between frames (hunting for a start marker)
+        public boolean isIdle() {
+            return position == 0;
+        }
+
+        // method to drop a partially assembled frame (ex. after a baud rate change)
+        public void reset() {
+            position = 0;
+        }
+
+        public long getCrcErrors() { return crcErrors; }
+        public long getFramingErrors() { return framingErrors; }
+    }
+}
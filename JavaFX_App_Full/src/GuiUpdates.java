@@ -0,0 +1,65 @@
+// for the latest values && flags link threads leave for the GUI
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// lock-free mailbox between link threads && the render pulse of the GUI (see App.startRenderPulse)
+// link threads only overwrite the latest value and raise a flag, they never post work to the FX thread.
+// the pulse takes whatever is there once per frame, so updates that arrive in between are dropped
+// and the cost of a frame does not depend on how fast the link is
+public class GuiUpdates {
+
+    // defining the ACK latency of the newest confirmed command of the selected motor (-1 --> none)
+    private final AtomicLong confirmLatencyNanos = new AtomicLong(-1);
+
+    // defining a flag telling if the confirmed state changed since the last frame
+    private final AtomicBoolean confirmedChanged = new AtomicBoolean(false);
+
+    // defining the connection events delivered since the last frame (only the newest one of a device is handled)
+    private final ConcurrentLinkedQueue<ConnectionEvents.ConnectionEvent> connectionEvents = new ConcurrentLinkedQueue<>();
+
+    // defining the number of updates overwritten before a frame took them
+    private final AtomicLong droppedUpdates = new AtomicLong(0);
+
+    // method to leave the ACK latency of a confirmed command (any thread)
+    public void postConfirmation(long latencyNanos) {
+        confirmLatencyNanos.set(latencyNanos);
+        postConfirmedChange();
+    }
+
+    // method to flag the confirmed state as changed without a new ACK (ex. a new command was requested)
+    public void postConfirmedChange() {
+        if (confirmedChanged.getAndSet(true)) {
+            droppedUpdates.incrementAndGet();
+        } else {}
+    }
+
+    // method to take the confirmed state flag, returns true if it changed since the last call [FX thread only]
+    public boolean takeConfirmedChange() {
+        return confirmedChanged.getAndSet(false);
+    }
+
+    public long getConfirmLatencyNanos() {
+        return confirmLatencyNanos.get();
+    }
+
+    // method to forget the latency of the previous motor (ex. another motor was selected)
+    public void clearConfirmLatency() {
+        confirmLatencyNanos.set(-1);
+    }
+
+    // method to leave a connection event (subscriber of ConnectionEvents, any thread)
+    public void postConnectionEvent(ConnectionEvents.ConnectionEvent event) {
+        connectionEvents.add(event);
+    }
+
+    // method to take the next connection event, null --> none left [FX thread only]
+    public ConnectionEvents.ConnectionEvent pollConnectionEvent() {
+        return connectionEvents.poll();
+    }
+
+    // method to get the number of updates that were never rendered because a newer one replaced them
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+}
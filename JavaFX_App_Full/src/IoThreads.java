@@ -0,0 +1,49 @@
+// for the thread factory handed to device I/O
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// thread factories for per-device blocking I/O (see MultiMotorManager blocking mode):
+// virtual threads when the JVM has them (JDK 21+), daemon platform threads otherwise.
+// looked up by reflection so the app still builds && runs on JDK 8
+public final class IoThreads {
+
+    // defining the virtual thread builder interface (null --> JVM has no virtual threads)
+    private static final Class<?> VIRTUAL_BUILDER = findVirtualBuilder();
+
+    private IoThreads() {}
+
+    private static Class<?> findVirtualBuilder() {
+        try {
+            return Class.forName("java.lang.Thread$Builder$OfVirtual");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    // method to check if threads created by factory() are virtual
+    public static boolean isVirtualSupported() {
+        return VIRTUAL_BUILDER != null;
+    }
+
+    // method to get a factory creating threads named <prefix>0, <prefix>1, ...
+    public static ThreadFactory factory(String namePrefix) {
+        if (VIRTUAL_BUILDER != null) {
+            try {
+                // Thread.ofVirtual().name(namePrefix, 0).factory()
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = VIRTUAL_BUILDER.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+                return (ThreadFactory) VIRTUAL_BUILDER.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // preview/disabled or restricted runtime --> platform threads
+            }
+        } else {}
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + threadCount.getAndIncrement());
+            // I/O threads must never keep the JVM alive on their own (virtual threads are always daemon)
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,197 @@
+// serial comm library imported from .jar
+import com.fazecast.jSerialComm.*;
+// for catching IO exceptions
+import java.io.IOException;
+// for the thread running blocking reads
+import java.util.concurrent.ThreadFactory;
+
+// SerialTransport implementation on top of a real serial port (jSerialComm)
+public class JSerialCommTransport implements SerialTransport {
+
+    // defining a reference to a SerialPort object (from jSerialComm lib)
+    private final SerialPort serialPort;
+
+    // defining a reference to the listener that receives incoming bytes
+    private volatile ReceiveListener receiveListener;
+
+    // defining the size of the Rx buffer (bytes pulled from the port in one native call)
+    private static final int RX_BUFFER_SIZE = 256;
+
+    // defining a preallocated Rx buffer reused by every serial event [jSerialComm event thread (or reader thread) only]
+    private final byte[] rxBuffer = new byte[RX_BUFFER_SIZE];
+
+    // defining how long a blocking read waits before checking if the port is being closed (in ms)
+    private static final int READ_TIMEOUT = 100;
+
+    // defining the factory of the thread running blocking reads (null --> jSerialComm event thread delivers data)
+    private final ThreadFactory readerThreads;
+
+    // defining the thread running blocking reads && a flag telling it to stop
+    private Thread readerThread;
+    private volatile boolean reading = false;
+
+    // JSerialCommTransport constructor takes the name of the port (ex. /dev/ttyUSB0) and its baud rate
+    public JSerialCommTransport(String portName, int baudRate) {
+        this(portName, baudRate, null);
+    }
+
+    // JSerialCommTransport constructor takes the name of the port, its baud rate and a factory for a thread
+    // that receives with plain blocking reads instead of jSerialComm's event thread (ex. IoThreads.factory)
+    public JSerialCommTransport(String portName, int baudRate, ThreadFactory readerThreads) {
+        this.readerThreads = readerThreads;
+
+	    // reserving port with passed name for use in app
+        serialPort = SerialPort.getCommPort(portName);
+
+	    // setting baud rate
+        serialPort.setBaudRate(baudRate);
+
+	    // setting data length to 8 bits
+        serialPort.setNumDataBits(8);
+
+	    // setting number of stop bits to 1
+        serialPort.setNumStopBits(SerialPort.ONE_STOP_BIT);
+
+	    // setting parity mode to no parity (no need to use it)
+        serialPort.setParity(SerialPort.NO_PARITY);
+
+	    // setting read/write timeout parameters
+	    // SerialPort.TIMEOUT_WRITE_BLOCKING --> a write/transmission will block until data is written on output stream
+	    // SerialPort.TIMEOUT_READ_SEMI_BLOCKING --> blocks until at least one byte is read from input steam (which is more than enough cuz ack is a single byte)
+	    // set timeout of read && write to 0s
+        serialPort.setComPortTimeouts(
+            SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 
+            0, 0
+        );
+    }
+
+    @Override
+    public boolean open() {
+	    // check if serial port has been opened successfully after reserving it in constructor
+        if (!serialPort.openPort()) {
+		    // wrong port name or sth
+            return false;
+        } else {}
+
+        // call Rx listener init
+        if (readerThreads != null) {
+            startReader();
+        } else {
+            setupListener();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serialPort.isOpen();
+    }
+
+    @Override
+    public void setReceiveListener(ReceiveListener listener) {
+        receiveListener = listener;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        // whole frame goes to the port in one native call (write blocks until it is handed over, nothing to flush)
+        if (serialPort.writeBytes(data, length, offset) < 0) {
+            throw new IOException("Failed to write to " + serialPort.getSystemPortName());
+        } else {}
+    }
+
+    // instance method to initialize Rx listener
+    private void setupListener() {
+
+	    // creating an anonymous inner class that IMPLEMENTS SerialPortDataListener (interface found in jSerialComm)
+        serialPort.addDataListener(new SerialPortDataListener() {
+	        // method to tell listener when data is available on serial port
+	        @Override
+            public int getListeningEvents() { 
+                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE; 
+            }
+	        // method that is called whenever a serial event is called
+            @Override
+            public void serialEvent(SerialPortEvent event) {
+		        // if the serial event that triggered this method is data available, do the following
+                if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
+                    int available;
+		            // as long as there is data on the port, bulk read it into the reused buffer (no stream object, no per-byte call)
+                    while ((available = serialPort.bytesAvailable()) > 0) {
+                        int bytesRead = serialPort.readBytes(rxBuffer, Math.min(available, RX_BUFFER_SIZE));
+                        if (bytesRead <= 0) {
+                            break; // port closed or read error
+                        } else {}
+                        // hand the whole chunk over in one call
+                        ReceiveListener listener = receiveListener;
+                        if (listener != null) {
+                            listener.onBytesReceived(rxBuffer, bytesRead);
+                        } else {} // nobody is listening --> drop it
+                    }
+		        } else {} // do nothing
+            }
+        });
+    }
+
+    // instance method to start the thread receiving with blocking reads
+    private void startReader() {
+        // a read returns as soon as at least one byte arrived, or after READ_TIMEOUT with nothing
+        serialPort.setComPortTimeouts(
+            SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING,
+            READ_TIMEOUT, 0
+        );
+        reading = true;
+        readerThread = readerThreads.newThread(() -> {
+            while (reading) {
+                int bytesRead = serialPort.readBytes(rxBuffer, RX_BUFFER_SIZE);
+                if (bytesRead < 0) {
+                    break; // port closed or unplugged
+                } else if (bytesRead > 0) {
+                    ReceiveListener listener = receiveListener;
+                    if (listener != null) {
+                        listener.onBytesReceived(rxBuffer, bytesRead);
+                    } else {} // nobody is listening --> drop it
+                } else {} // read timed out --> check if still reading
+            }
+        });
+        readerThread.start();
+    }
+
+    @Override
+    public void close() {
+        // if port is still open,
+        if (serialPort.isOpen()) {
+            // stop the reader thread (it notices within READ_TIMEOUT) or close Rx data listener
+            if (readerThread != null) {
+                reading = false;
+                try {
+                    readerThread.join(2 * READ_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                readerThread = null;
+            } else {
+                serialPort.removeDataListener();
+            }
+            // close serial port
+            serialPort.closePort();
+        } else {}
+    }
+
+    @Override
+    public String getName() {
+        return serialPort.getSystemPortName();
+    }
+
+    @Override
+    public int getBaudRate() {
+        return serialPort.getBaudRate();
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        // applied right away on an open port (bytes still in the OS Tx queue may go out at the new rate)
+        return serialPort.setBaudRate(baudRate);
+    }
+}
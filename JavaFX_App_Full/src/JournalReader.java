@@ -0,0 +1,157 @@
+// for reading segment && device index files
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+// for mapping segments read only
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+// for wall clock formatting
+import java.text.SimpleDateFormat;
+import java.util.Date;
+// for device name lookup
+import java.util.HashMap;
+import java.util.Map;
+
+// reader of CommJournal directories: iterates all records oldest first and can dump them as text or CSV
+// usage: java -cp build JournalReader <journal dir> [--csv]
+public class JournalReader {
+
+    // callback interface that receives every record (no object is created per record)
+    public interface RecordVisitor {
+        // timestampNanos is System.nanoTime of the writing process, wallClockMillis is derived from the segment header
+        void onRecord(int session, long timestampNanos, long wallClockMillis, byte type, byte value, int device, int aux);
+    }
+
+    private JournalReader() {}
+
+    // method to feed every record of a journal directory to the visitor, oldest segment first
+    public static void read(File directory, RecordVisitor visitor) throws IOException {
+        for (File segment : CommJournal.listSegments(directory)) {
+            readSegment(segment, visitor);
+        }
+    }
+
+    // method to feed every record of a single segment file to the visitor
+    public static void readSegment(File segment, RecordVisitor visitor) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < CommJournal.HEADER_SIZE
+                    || buffer.getInt(0) != CommJournal.MAGIC
+                    || buffer.getInt(4) != CommJournal.VERSION) {
+                throw new IOException("Not a journal segment: " + segment);
+            } else {}
+            int recordSize = buffer.getInt(8);
+            int session = buffer.getInt(12);
+            long startMillis = buffer.getLong(16);
+            long startNanos = buffer.getLong(24);
+
+            for (int offset = CommJournal.HEADER_SIZE; offset + recordSize <= buffer.limit(); offset += recordSize) {
+                byte type = buffer.get(offset + 8);
+                if (type == 0) {
+                    break; // end of written data
+                } else {}
+                long timestampNanos = buffer.getLong(offset);
+                long wallClockMillis = startMillis + (timestampNanos - startNanos) / 1_000_000L;
+                visitor.onRecord(session, timestampNanos, wallClockMillis, type,
+                    buffer.get(offset + 9), buffer.getShort(offset + 10), buffer.getInt(offset + 12));
+            }
+        }
+    }
+
+    // method to load "session device" --> name from devices.idx
+    public static Map<String, String> readDeviceNames(File directory) throws IOException {
+        Map<String, String> names = new HashMap<>();
+        File index = new File(directory, CommJournal.DEVICE_INDEX_FILE);
+        if (!index.isFile()) {
+            return names;
+        } else {}
+        try (BufferedReader reader = new BufferedReader(new FileReader(index))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 3);
+                if (fields.length == 3) {
+                    names.put(fields[0] + " " + fields[1], fields[2]);
+                } else {}
+            }
+        }
+        return names;
+    }
+
+    // method to get the printable name of a record type
+    public static String typeName(byte type) {
+        switch (type) {
+            case CommJournal.FRAME_SENT:          return "FRAME_SENT";
+            case CommJournal.FRAME_RETRANSMITTED: return "FRAME_RETRANSMITTED";
+            case CommJournal.ACK:                 return "ACK";
+            case CommJournal.STRAY_ACK:           return "STRAY_ACK";
+            case CommJournal.TIMEOUT:             return "TIMEOUT";
+            case CommJournal.FAILURE:             return "FAILURE";
+            case CommJournal.SETPOINT:            return "SETPOINT";
+            case CommJournal.DEVICE_OPENED:       return "DEVICE_OPENED";
+            case CommJournal.LINK:                return "LINK";
+            default:                              return "UNKNOWN_" + type;
+        }
+    }
+
+    // method to dump a journal directory as text (or CSV) to the given stream
+    public static void export(File directory, boolean csv, PrintStream out) throws IOException {
+        Map<String, String> deviceNames = readDeviceNames(directory);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        Date date = new Date();
+        if (csv) {
+            out.println("session,timestamp_ns,wall_clock_ms,device,type,value,id,direction,speed_pct,aux");
+        } else {}
+        // protocol version of the latest LINK record of each "session device" (framed --> FRAME/ACK values are commands)
+        Map<String, Integer> linkVersions = new HashMap<>();
+        read(directory, (session, timestampNanos, wallClockMillis, type, value, device, aux) -> {
+            String key = session + " " + device;
+            String deviceName = deviceNames.getOrDefault(key, "device" + device);
+            if (type == CommJournal.LINK) {
+                linkVersions.put(key, value & 0xFF);
+            } else {}
+            boolean framedFrame = (type == CommJournal.FRAME_SENT || type == CommJournal.FRAME_RETRANSMITTED || type == CommJournal.ACK)
+                && linkVersions.getOrDefault(key, 0) != 0;
+            // data fields of the byte: a setpoint, timeout, failure or frame on a framed link is a command (bit 7 direction,
+            // bits 6-0 speed in %), a LINK carries no motor data, anything else is a legacy data byte (bits 7-5 ID, bit 4 direction,
+            // bits 3-0 speed level), speed is given in % for both
+            int id;
+            String direction;
+            int speed;
+            if (type == CommJournal.LINK) {
+                id = 0;
+                direction = "-";
+                speed = 0;
+            } else if (type == CommJournal.SETPOINT || type == CommJournal.TIMEOUT || type == CommJournal.FAILURE || framedFrame) {
+                id = 0;
+                direction = MotorCommand.isClockwise(value) ? "CW" : "CCW";
+                speed = MotorCommand.speedOf(value);
+            } else {
+                id = (value & 0xE0) >> 5;
+                direction = MotorCommand.isLegacyClockwise(value) ? "CW" : "CCW";
+                speed = MotorCommand.legacyToPercentage(value);
+            }
+            if (csv) {
+                out.printf("%d,%d,%d,%s,%s,%d,%d,%s,%d,%d%n", session, timestampNanos, wallClockMillis,
+                    deviceName, typeName(type), value & 0xFF, id, direction, speed, aux);
+            } else {
+                date.setTime(wallClockMillis);
+                out.printf("%s [%d] %-12s %-19s 0x%02X id=%d dir=%-3s speed=%-3d aux=%d%n", dateFormat.format(date), session,
+                    deviceName, typeName(type), value & 0xFF, id, direction, speed, aux);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: JournalReader <journal dir> [--csv]");
+            System.exit(1);
+        }
+        boolean csv = args.length > 1 && args[1].equals("--csv");
+        export(new File(args[0]), csv, System.out);
+    }
+}
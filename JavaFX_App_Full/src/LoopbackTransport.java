@@ -0,0 +1,53 @@
+// for catching IO exceptions
+import java.io.IOException;
+
+// SerialTransport that swallows every written byte and lets the caller inject received bytes itself
+// (no thread of its own, used by bench/ so only SerialCommManager code shows up in the measurements)
+public class LoopbackTransport implements SerialTransport {
+
+    // defining the listener registered by SerialCommManager
+    private volatile ReceiveListener receiveListener;
+
+    // defining the number of bytes written so far
+    private volatile long bytesWritten;
+
+    @Override
+    public boolean open() {
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void setReceiveListener(ReceiveListener listener) {
+        receiveListener = listener;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        bytesWritten += length;
+    }
+
+    // method to push bytes to SerialCommManager as if they came from MCU
+    public void inject(byte[] data, int length) {
+        ReceiveListener listener = receiveListener;
+        if (listener != null) {
+            listener.onBytesReceived(data, length);
+        } else {}
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
@@ -0,0 +1,168 @@
+// for reading program files
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+// for time unit conversions
+import java.util.concurrent.TimeUnit;
+
+// program of timed setpoints run by ProfileRunner, compiled once into parallel arrays (time offset && command of every point)
+// so running it allocates nothing. ramps are expanded into one point per STEP_MILLIS, points that would not change
+// the command are dropped. program file, one entry per line ('#' starts a comment):
+//
+//   <time in ms from the start of the cycle> <signed speed in % (-100..100, negative --> counter-clockwise)> [ramp]
+//   repeat <number of cycles (0 --> until stopped)>
+//
+// a line without "ramp" jumps to its speed at its time, a "ramp" line moves linearly from the previous line to its speed
+// (through 0 on a reversal). times never go backwards, the time of the last line is the length of a cycle
+public final class MotionProfile {
+
+    // defining the time between two points of a ramp (in ms, same pace as SerialCommManager ramps)
+    public static final int STEP_MILLIS = 20;
+
+    // defining the compiled points (time offset from the start of a cycle in ns, command see MotorCommand)
+    private final long[] offsetsNanos;
+    private final byte[] commands;
+    private final int count;
+
+    // defining the length of a cycle (in ns) && the number of cycles (0 --> until stopped)
+    private final long cycleNanos;
+    private final int repeatCount;
+
+    private MotionProfile(long[] offsetsNanos, byte[] commands, int count, long cycleNanos, int repeatCount) {
+        this.offsetsNanos = offsetsNanos;
+        this.commands = commands;
+        this.count = count;
+        this.cycleNanos = cycleNanos;
+        this.repeatCount = repeatCount;
+    }
+
+    // method to load && compile a program file
+    public static MotionProfile load(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return compile(reader);
+        }
+    }
+
+    // method to compile a program given as text
+    public static MotionProfile parse(String program) throws IOException {
+        return compile(new StringReader(program));
+    }
+
+    private static MotionProfile compile(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        long[] offsets = new long[64];
+        byte[] commands = new byte[64];
+        int count = 0;
+        int repeatCount = 1;
+        // defining the previous line (time in ms && signed speed, -1 --> none yet)
+        long previousMillis = -1;
+        int previousSpeed = 0;
+        // defining the command of the last compiled point (none yet --> any first point is kept)
+        int lastCommand = -1;
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String[] fields = ((comment >= 0) ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                continue;
+            } else {}
+
+            if (fields[0].equals("repeat")) {
+                if (fields.length != 2) {
+                    throw new IOException("line " + lineNumber + ": expected repeat <cycles>");
+                } else {}
+                repeatCount = parseNumber(fields[1], lineNumber);
+                if (repeatCount < 0) {
+                    throw new IOException("line " + lineNumber + ": negative repeat count");
+                } else {}
+                continue;
+            } else {}
+
+            boolean ramp = fields.length == 3 && fields[2].equals("ramp");
+            if (fields.length != 2 && !ramp) {
+                throw new IOException("line " + lineNumber + ": expected <time ms> <speed %> [ramp]");
+            } else {}
+            long timeMillis = parseNumber(fields[0], lineNumber);
+            int speed = parseNumber(fields[1], lineNumber);
+            if (timeMillis < previousMillis || timeMillis < 0) {
+                throw new IOException("line " + lineNumber + ": time goes backwards");
+            } else if (Math.abs(speed) > MotorCommand.MAX_PERCENTAGE) {
+                throw new IOException("line " + lineNumber + ": speed out of -" + MotorCommand.MAX_PERCENTAGE + ".." + MotorCommand.MAX_PERCENTAGE);
+            } else if (ramp && previousMillis < 0) {
+                throw new IOException("line " + lineNumber + ": a ramp needs a line before it");
+            } else {}
+
+            // a ramp gets a point every STEP_MILLIS between the previous line && this one, the last point is the line itself
+            long t = ramp ? previousMillis + STEP_MILLIS : timeMillis;
+            while (true) {
+                t = Math.min(t, timeMillis);
+                int stepSpeed = (t == timeMillis)
+                    ? speed
+                    : previousSpeed + (int) Math.round((speed - previousSpeed) * (double) (t - previousMillis) / (timeMillis - previousMillis));
+                byte command = MotorCommand.fromSignedSpeed(stepSpeed);
+                if ((command & 0xFF) != lastCommand) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                        commands = Arrays.copyOf(commands, count * 2);
+                    } else {}
+                    offsets[count] = TimeUnit.MILLISECONDS.toNanos(t);
+                    commands[count] = command;
+                    lastCommand = command & 0xFF;
+                    count++;
+                } else {}
+                if (t == timeMillis) {
+                    break;
+                } else {}
+                t += STEP_MILLIS;
+            }
+            previousMillis = timeMillis;
+            previousSpeed = speed;
+        }
+
+        if (count == 0) {
+            throw new IOException("program has no setpoints");
+        } else if (repeatCount != 1 && previousMillis == 0) {
+            throw new IOException("a repeated program needs a cycle longer than 0 ms");
+        } else {}
+        return new MotionProfile(Arrays.copyOf(offsets, count), Arrays.copyOf(commands, count), count,
+            TimeUnit.MILLISECONDS.toNanos(previousMillis), repeatCount);
+    }
+
+    private static int parseNumber(String field, int lineNumber) throws IOException {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IOException("line " + lineNumber + ": not a number: " + field);
+        }
+    }
+
+    // getters of the compiled program
+    public int getPointCount() {
+        return count;
+    }
+
+    public long getOffsetNanos(int index) {
+        return offsetsNanos[index];
+    }
+
+    public byte getCommand(int index) {
+        return commands[index];
+    }
+
+    public long getCycleNanos() {
+        return cycleNanos;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+}
@@ -0,0 +1,100 @@
+// helper that builds the motor commands handed to SerialCommManager (bit 7 direction, bits 6-0 speed in percent 0-100)
+// and the data byte legacy firmware understands (ID bits 7-5 are added later by SerialCommManager)
+// kept free of JavaFX so it can be used by benchmarks && headless tools
+public final class MotorCommand {
+
+    // defining the max speed (in %)
+    public static final int MAX_PERCENTAGE = 100;
+
+    // defining the bit offset of direction field of a command (bit 7)
+    private static final int DIR_OFFSET = 7;
+
+    // defining a mask for speed field of a command (bits 6-0)
+    private static final int PERCENTAGE_MASK = 0x7F;
+
+    // defining the bit offset of direction field of a legacy data byte (bit 4)
+    private static final int LEGACY_DIR_OFFSET = 4;
+
+    // defining a mask for speed level field of a legacy data byte (bits 3-0)
+    private static final int LEGACY_LEVEL_MASK = 0x0F;
+
+    // defining the speed levels legacy firmware applies && the speed (in %) each one stands for (see APP_uint8MapSpeedLvlToPercentage in control.c)
+    private static final int[] LEGACY_LEVELS = {0, 3, 6, 9, 12, 15};
+    private static final int[] LEGACY_PERCENTAGES = {0, 60, 70, 80, 90, 100};
+
+    private MotorCommand() {}
+
+    // method to pack a speed (0-100 %, clamped) && a direction into a command
+    public static byte percent(int speedPercentage, boolean clockwise) {
+        int directionBit = clockwise ? 0 : 1;
+        int speed = Math.max(0, Math.min(MAX_PERCENTAGE, speedPercentage));
+        return (byte)((directionBit << DIR_OFFSET) | speed);
+    }
+
+    // method to pack a legacy speed level (0-15) && a direction into a command (ex. commands built for the old 6 step slider)
+    public static byte encode(int mappedSpeed, boolean clockwise) {
+        return percent(legacyLevelToPercentage(mappedSpeed), clockwise);
+    }
+
+    // method to pack a signed speed (-100..100 %, negative --> counter-clockwise) into a command
+    public static byte fromSignedSpeed(int signedPercentage) {
+        return percent(Math.abs(signedPercentage), signedPercentage >= 0);
+    }
+
+    // methods to unpack a command
+    public static int speedOf(byte command) {
+        return command & PERCENTAGE_MASK;
+    }
+
+    public static boolean isClockwise(byte command) {
+        return ((command >> DIR_OFFSET) & 1) == 0;
+    }
+
+    // method to get the signed speed of a command (negative --> counter-clockwise)
+    public static int signedSpeedOf(byte command) {
+        return isClockwise(command) ? speedOf(command) : -speedOf(command);
+    }
+
+    // method to check if a command stops the motor (speed 0 in either direction)
+    public static boolean isStop(byte command) {
+        return speedOf(command) == 0;
+    }
+
+    // method to get the legacy data byte of a command: legacy firmware only knows a few speeds, the nearest one is taken
+    // (so anything below 30 % stops the motor on an old MCU)
+    public static byte toLegacyByte(byte command) {
+        int speed = speedOf(command);
+        int nearest = 0;
+        for (int i = 1; i < LEGACY_PERCENTAGES.length; i++) {
+            if (Math.abs(LEGACY_PERCENTAGES[i] - speed) < Math.abs(LEGACY_PERCENTAGES[nearest] - speed)) {
+                nearest = i;
+            } else {}
+        }
+        int directionBit = isClockwise(command) ? 0 : 1;
+        return (byte)((directionBit << LEGACY_DIR_OFFSET) | LEGACY_LEVELS[nearest]);
+    }
+
+    // method to get the speed (0-100 %) legacy firmware applies for a data byte (same mapping as APP_uint8MapSpeedLvlToPercentage in control.c)
+    public static int legacyToPercentage(byte data) {
+        return legacyLevelToPercentage(data & LEGACY_LEVEL_MASK);
+    }
+
+    // method to get the direction legacy firmware applies for a data byte
+    public static boolean isLegacyClockwise(byte data) {
+        return ((data >> LEGACY_DIR_OFFSET) & 1) == 0;
+    }
+
+    // method to check if legacy firmware takes a data byte for a stop that keeps the clockwise direction (ex. bytes of a HELLO)
+    public static boolean isLegacyClockwiseStop(byte data) {
+        return legacyToPercentage(data) == 0 && isLegacyClockwise(data);
+    }
+
+    private static int legacyLevelToPercentage(int level) {
+        for (int i = 0; i < LEGACY_LEVELS.length; i++) {
+            if (LEGACY_LEVELS[i] == level) {
+                return LEGACY_PERCENTAGES[i];
+            } else {}
+        }
+        return 0;
+    }
+}
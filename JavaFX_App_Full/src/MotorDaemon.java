@@ -0,0 +1,361 @@
+// for the control socket && its clients
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+// for client threads && telemetry age
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// headless entry point: opens motors through MultiMotorManager (no JavaFX needed at runtime) and lets local automation drive them
+// over a localhost TCP socket with a compact binary protocol. every client gets its own thread doing blocking I/O (virtual if supported)
+//
+// request (4 bytes):  OP | DEVICE (index in --list order) | ARG lo | ARG hi
+// reply:              STATUS | OP | LEN | PAYLOAD (LEN bytes)
+//
+// ops:
+//   INFO     payload: daemon protocol version | number of devices
+//   NAME     payload: device name (UTF-8)
+//   START    turns the motor ON (periodic transmission starts, same as the toggle of the app)
+//   RETRY    retries a failed device once (blocks this client until it is known), only needed with --no-reconnect
+//   SPEED    ARG: signed speed (-100..100 %, negative --> counter-clockwise), ramped (see SerialCommManager.setSpeedTarget)
+//   COMMAND  ARG lo: command (see MotorCommand) sent as is, no ramp
+//   STOP     stops the motor at once (cancels any running ramp)
+//   SLEW     ARG: ramp slew rate (% per second, 0 --> no ramp)
+//   STATUS   payload: flags (STATUS_FLAG_*) | requested command | confirmed command (0xFF --> none) | measured signed speed |
+//            current (u16 in mA, 0xFFFF --> n/a) | telemetry age (u16 in ms, 0xFFFF --> none in the last second)
+// multi-byte fields are little endian. OP | OP_QUIET asks for a reply only if the request fails, so setpoints can be streamed
+// without reading anything back. replies are flushed once no more requests are waiting, so pipelined requests share writes
+//
+// usage: java -cp build:jars/jSerialComm-2.11.0.jar MotorDaemon <port>... [--sim <name>]... [--listen <tcp port>]
+//            [--journal <dir>] [--blocking] [--tty] [--tx-batch <us>] [--no-negotiate] [--no-reconnect]
+// --tty opens ports as plain Linux tty devices (see TtyChannelTransport) instead of through jSerialComm
+// --tx-batch gathers frames of a device for up to that long before writing them together (see SerialCommManager.setTxBatchWindow)
+public class MotorDaemon {
+
+    // defining the version of the control protocol
+    public static final int PROTOCOL_VERSION = 1;
+
+    // defining the TCP port listened on by default
+    public static final int DEFAULT_LISTEN_PORT = 7878;
+
+    // defining the request size
+    public static final int REQUEST_SIZE = 4;
+
+    // defining ops
+    public static final int OP_INFO = 0x01;
+    public static final int OP_NAME = 0x02;
+    public static final int OP_START = 0x03;
+    public static final int OP_RETRY = 0x04;
+    public static final int OP_SPEED = 0x10;
+    public static final int OP_COMMAND = 0x11;
+    public static final int OP_STOP = 0x12;
+    public static final int OP_SLEW = 0x13;
+    public static final int OP_STATUS = 0x20;
+
+    // defining the flag of an op asking for a reply only on failure
+    public static final int OP_QUIET = 0x80;
+
+    // defining reply statuses
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_UNKNOWN_OP = 1;
+    public static final int STATUS_UNKNOWN_DEVICE = 2;
+    public static final int STATUS_BAD_ARGUMENT = 3;
+    public static final int STATUS_FAILED = 4;
+
+    // defining flags of a STATUS reply
+    public static final int STATUS_FLAG_STARTED = 0x01;
+    public static final int STATUS_FLAG_FAILED = 0x02;
+    public static final int STATUS_FLAG_FRAMED = 0x04;
+    public static final int STATUS_FLAG_RECOVERING = 0x08;
+    public static final int STATUS_FLAG_DEGRADED = 0x10;
+
+    // defining the payload size of a STATUS reply
+    public static final int STATUS_PAYLOAD_SIZE = 8;
+
+    // defining the max reply size (a NAME reply is cut to it)
+    private static final int MAX_REPLY_SIZE = 3 + 255;
+
+    // defining the window telemetry is looked up in (older --> reported as none)
+    private static final int TELEMETRY_WINDOW_MILLIS = 1000;
+
+    // defining journal segments (same as the app)
+    private static final int JOURNAL_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final int JOURNAL_MAX_SEGMENTS = 16;
+
+    // defining the motors && their names in index order (fixed once the daemon runs)
+    private final MultiMotorManager motorManager;
+    private final List<String> deviceNames;
+
+    // defining the thread factory of client threads
+    private final ThreadFactory clientThreads = IoThreads.factory("daemon-client-");
+
+    // MotorDaemon constructor takes the opened motors
+    public MotorDaemon(MultiMotorManager motorManager) {
+        this.motorManager = motorManager;
+        this.deviceNames = motorManager.getDeviceNames();
+    }
+
+    // method to accept clients until the socket is closed, blocks the caller
+    public void serve(ServerSocket serverSocket) throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket = serverSocket.accept();
+            // setpoints are tiny && latency bound, never hold them back waiting for more bytes
+            socket.setTcpNoDelay(true);
+            clientThreads.newThread(() -> serveClient(socket)).start();
+        }
+    }
+
+    // method to serve one client until it disconnects [client thread only]
+    private void serveClient(Socket socket) {
+        byte[] request = new byte[REQUEST_SIZE];
+        byte[] reply = new byte[MAX_REPLY_SIZE];
+        TelemetrySeries.Snapshot telemetrySnapshot = new TelemetrySeries.Snapshot();
+        try (Socket client = socket) {
+            InputStream rawIn = new BufferedInputStream(client.getInputStream());
+            DataInputStream in = new DataInputStream(rawIn);
+            OutputStream out = new BufferedOutputStream(client.getOutputStream());
+            while (true) {
+                in.readFully(request);
+                int length = handleRequest(request, reply, telemetrySnapshot);
+                if (length > 0) {
+                    out.write(reply, 0, length);
+                } else {}
+                if (rawIn.available() == 0) {
+                    out.flush();
+                } else {}
+            }
+        } catch (EOFException e) {
+            // client closed the connection
+        } catch (IOException e) {
+            System.err.println("Client dropped: " + e.getMessage());
+        }
+    }
+
+    // method to run a request and write its reply, returns the reply length (0 --> no reply)
+    private int handleRequest(byte[] request, byte[] reply, TelemetrySeries.Snapshot telemetrySnapshot) {
+        int op = request[0] & 0xFF;
+        boolean quiet = (op & OP_QUIET) != 0;
+        op &= ~OP_QUIET;
+        int deviceIndex = request[1] & 0xFF;
+        int argument = (request[2] & 0xFF) | (request[3] & 0xFF) << 8;
+
+        reply[1] = (byte) op;
+        int payloadLength = 0;
+        int status = STATUS_OK;
+
+        if (op == OP_INFO) {
+            reply[3] = (byte) PROTOCOL_VERSION;
+            reply[4] = (byte) deviceNames.size();
+            payloadLength = 2;
+        } else if (deviceIndex >= deviceNames.size()) {
+            status = STATUS_UNKNOWN_DEVICE;
+        } else {
+            String deviceName = deviceNames.get(deviceIndex);
+            SerialCommManager manager = motorManager.getManager(deviceName);
+            switch (op) {
+                case OP_NAME:
+                    byte[] name = deviceName.getBytes(StandardCharsets.UTF_8);
+                    payloadLength = Math.min(name.length, MAX_REPLY_SIZE - 3);
+                    System.arraycopy(name, 0, reply, 3, payloadLength);
+                    break;
+                case OP_START:
+                    motorManager.setEnabled(deviceName, true);
+                    if (!manager.isTransmissionStarted()) {
+                        motorManager.startTransmission(deviceName);
+                    } else {}
+                    break;
+                case OP_RETRY:
+                    if (manager.isCommunicationFailed()) {
+                        if (manager.manualRetry()) {
+                            motorManager.startTransmission(deviceName);
+                        } else {
+                            status = STATUS_FAILED;
+                        }
+                    } else {}
+                    break;
+                case OP_SPEED:
+                    int signedPercentage = (short) argument;
+                    if (Math.abs(signedPercentage) > MotorCommand.MAX_PERCENTAGE) {
+                        status = STATUS_BAD_ARGUMENT;
+                    } else {
+                        manager.setSpeedTarget(Math.abs(signedPercentage), signedPercentage >= 0);
+                    }
+                    break;
+                case OP_COMMAND:
+                    byte command = (byte) argument;
+                    if (argument > 0xFF || MotorCommand.speedOf(command) > MotorCommand.MAX_PERCENTAGE) {
+                        status = STATUS_BAD_ARGUMENT;
+                    } else {
+                        manager.setLastSentByte(command);
+                    }
+                    break;
+                case OP_STOP:
+                    manager.setLastSentByte((byte) 0x00);
+                    break;
+                case OP_SLEW:
+                    manager.setSlewRate(argument);
+                    break;
+                case OP_STATUS:
+                    writeStatus(deviceName, manager, reply, 3, telemetrySnapshot);
+                    payloadLength = STATUS_PAYLOAD_SIZE;
+                    break;
+                default:
+                    status = STATUS_UNKNOWN_OP;
+            }
+        }
+
+        if (quiet && status == STATUS_OK) {
+            return 0;
+        } else if (status != STATUS_OK) {
+            payloadLength = 0;
+        } else {}
+        reply[0] = (byte) status;
+        reply[2] = (byte) payloadLength;
+        return 3 + payloadLength;
+    }
+
+    // method to write the STATUS payload of a device into out
+    private void writeStatus(String deviceName, SerialCommManager manager, byte[] out, int offset, TelemetrySeries.Snapshot telemetrySnapshot) {
+        int flags = 0;
+        if (manager.isTransmissionStarted()) {
+            flags |= STATUS_FLAG_STARTED;
+        } else {}
+        if (manager.isCommunicationFailed()) {
+            flags |= STATUS_FLAG_FAILED;
+        } else {}
+        if (manager.getProtocolVersion() > 0) {
+            flags |= STATUS_FLAG_FRAMED;
+        } else {}
+        if (motorManager.isRecovering(deviceName)) {
+            flags |= STATUS_FLAG_RECOVERING;
+        } else {}
+        if (manager.getConnectionState() == ConnectionState.DEGRADED) {
+            flags |= STATUS_FLAG_DEGRADED;
+        } else {}
+        int confirmed = manager.getConfirmedCommand();
+
+        // latest telemetry sample of the last second (only a handful of samples is copied)
+        long now = System.nanoTime();
+        int count = manager.getTelemetry().copyLatest(now - TimeUnit.MILLISECONDS.toNanos(TELEMETRY_WINDOW_MILLIS), telemetrySnapshot);
+        int measuredSpeed = 0;
+        int currentMilliAmps = 0xFFFF;
+        int ageMillis = 0xFFFF;
+        if (count > 0) {
+            measuredSpeed = telemetrySnapshot.speeds[count - 1];
+            if ((telemetrySnapshot.flags[count - 1] & TelemetrySeries.FLAG_CURRENT_VALID) != 0) {
+                currentMilliAmps = Math.min(0xFFFE, telemetrySnapshot.currents[count - 1]);
+            } else {}
+            ageMillis = (int) Math.min(0xFFFE, TimeUnit.NANOSECONDS.toMillis(now - telemetrySnapshot.times[count - 1]));
+        } else {}
+
+        out[offset] = (byte) flags;
+        out[offset + 1] = manager.getRequestedCommand();
+        out[offset + 2] = (byte) ((confirmed < 0) ? 0xFF : confirmed);
+        out[offset + 3] = (byte) measuredSpeed;
+        FrameCodec.writeShort(out, offset + 4, currentMilliAmps);
+        FrameCodec.writeShort(out, offset + 6, ageMillis);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> portNames = new ArrayList<>();
+        List<String> simulatedNames = new ArrayList<>();
+        int listenPort = DEFAULT_LISTEN_PORT;
+        String journalDir = null;
+        boolean blockingIo = false;
+        boolean ttyBackend = false;
+        long txBatchMicros = SerialCommManager.DEFAULT_TX_BATCH_WINDOW;
+        boolean negotiate = true;
+        boolean reconnect = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sim": simulatedNames.add(args[++i]); break;
+                case "--listen": listenPort = Integer.parseInt(args[++i]); break;
+                case "--journal": journalDir = args[++i]; break;
+                case "--blocking": blockingIo = true; break;
+                case "--tty": ttyBackend = true; break;
+                case "--tx-batch": txBatchMicros = Long.parseLong(args[++i]); break;
+                case "--no-negotiate": negotiate = false; break;
+                case "--no-reconnect": reconnect = false; break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.err.println("unknown option " + args[i]);
+                        System.exit(2);
+                    } else {}
+                    portNames.add(args[i]);
+            }
+        }
+        if (portNames.isEmpty() && simulatedNames.isEmpty()) {
+            System.err.println("usage: MotorDaemon <port>... [--sim <name>]... [--listen <tcp port>] [--journal <dir>] [--blocking] [--tty] [--tx-batch <us>] [--no-negotiate] [--no-reconnect]");
+            System.exit(2);
+        } else {}
+
+        MultiMotorManager motorManager = new MultiMotorManager(blockingIo);
+        // a flapping link is logged once per debounce window, not once per failure
+        motorManager.getConnectionEvents().subscribe(event -> System.err.println(event));
+        if (reconnect) {
+            motorManager.enableAutoReconnect();
+        } else {}
+        motorManager.setLinkNegotiation(negotiate);
+        if (ttyBackend && !TtyChannelTransport.isSupported()) {
+            System.err.println("--tty needs Linux with stty");
+            System.exit(2);
+        } else {}
+        motorManager.setTtyChannelBackend(ttyBackend);
+        motorManager.setTxBatchWindow(txBatchMicros);
+        CommJournal journal = null;
+        if (journalDir != null) {
+            journal = new CommJournal(new File(journalDir), JOURNAL_SEGMENT_BYTES, JOURNAL_MAX_SEGMENTS);
+            motorManager.setJournal(journal);
+        } else {}
+
+        for (String portName : portNames) {
+            if (!motorManager.addPort(portName)) {
+                System.err.println("Failed to open port " + portName);
+            } else {}
+        }
+        // simulated MCUs (framed firmware) stand in for hardware, ex. to try automation on a machine without motors
+        for (String simulatedName : simulatedNames) {
+            SimulatedMcuTransport simulatedMcu = new SimulatedMcuTransport(simulatedName, 2000, 500, 0.0, simulatedName.hashCode());
+            simulatedMcu.enableFramedFirmware(38400);
+            if (motorManager.addDevice(simulatedMcu) && negotiate) {
+                motorManager.getManager(simulatedName).negotiateLink();
+            } else {}
+        }
+        if (motorManager.getDeviceCount() == 0) {
+            System.err.println("No device could be opened");
+            System.exit(1);
+        } else {}
+
+        CommJournal openedJournal = journal;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            motorManager.closeAll();
+            if (openedJournal != null) {
+                openedJournal.close();
+            } else {}
+        }, "daemon-shutdown"));
+
+        MotorDaemon daemon = new MotorDaemon(motorManager);
+        // loopback only: anyone who can reach the socket can drive the motors
+        try (ServerSocket serverSocket = new ServerSocket(listenPort, 50, InetAddress.getLoopbackAddress())) {
+            List<String> deviceNames = daemon.deviceNames;
+            for (int i = 0; i < deviceNames.size(); i++) {
+                SerialCommManager manager = motorManager.getManager(deviceNames.get(i));
+                System.out.printf("device %d: %s (%s @ %d bps)%n", i, deviceNames.get(i),
+                    (manager.getProtocolVersion() > 0) ? "framed v" + manager.getProtocolVersion() : "legacy", manager.getBaudRate());
+            }
+            System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+            daemon.serve(serverSocket);
+        }
+    }
+}
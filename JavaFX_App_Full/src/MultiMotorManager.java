@@ -0,0 +1,381 @@
+// for ordered device registry
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+// for the pool shared by all devices
+import java.util.concurrent.*;
+// for naming pool threads
+import java.util.concurrent.atomic.AtomicInteger;
+
+// class that drives many motors (one SerialCommManager per port) from one process
+// by default all devices share a small bounded pool instead of each getting its own transmission thread.
+// in blocking I/O mode every device gets its own sender thread && a receiver thread doing plain blocking reads,
+// both virtual when the JVM supports it (see IoThreads), and both are torn down together when the device is closed
+public class MultiMotorManager {
+
+    // defining the number of threads shared by all devices (bounded no matter how many ports are opened)
+    private static final int IO_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // callback interface used to report a device whose MCU stopped answering
+    public interface FailureListener {
+        // called from a pool thread, it is up to the listener to hop on the GUI thread
+        void onDeviceFailed(String deviceName);
+
+        // called from the reconnect supervisor thread once an automatically recovered device transmits again
+        default void onDeviceRecovered(String deviceName) {}
+    }
+
+    // per device state
+    private static class Device {
+        final SerialCommManager manager;
+        // USB identity of the port (null --> not an enumerated serial port)
+        final ReconnectSupervisor.PortIdentity identity;
+        // motor turned ON by the operator
+        volatile boolean enabled = false;
+
+        Device(SerialCommManager manager, ReconnectSupervisor.PortIdentity identity) {
+            this.manager = manager;
+            this.identity = identity;
+        }
+    }
+
+    // defining the pool && timer shared by all devices (null in blocking I/O mode)
+    private final ScheduledExecutorService sharedScheduler;
+
+    // defining the registry of devices, in the order they were added [guarded by this]
+    private final Map<String, Device> devices = new LinkedHashMap<>();
+
+    // defining the listener notified about failed devices (null --> only the connection events are published)
+    private final FailureListener failureListener;
+
+    // defining the debounced stream every device publishes its connection state to
+    private final ConnectionEvents connectionEvents = new ConnectionEvents();
+
+    // defining the journal all devices are recorded in (null --> not recorded) [guarded by this]
+    private CommJournal journal;
+
+    // defining the supervisor recovering failed devices in the background (null --> operator retries by hand)
+    private volatile ReconnectSupervisor reconnectSupervisor;
+
+    // defining a flag telling if real ports are moved to the framed protocol at a faster line rate when opened
+    // (off --> they stay on the legacy protocol at 9600 bps, ex. for firmware that predates it)
+    private volatile boolean linkNegotiation = true;
+
+    // defining a flag telling if real ports are opened as Linux tty channels (see TtyChannelTransport) instead of through jSerialComm
+    private volatile boolean ttyChannelBackend = false;
+
+    // defining the Tx batch window of devices opened from now on (in us, see SerialCommManager.setTxBatchWindow)
+    private volatile long txBatchWindowMicros = SerialCommManager.DEFAULT_TX_BATCH_WINDOW;
+
+    // MultiMotorManager constructor takes the listener that is told about failed devices
+    public MultiMotorManager(FailureListener failureListener) {
+        this(failureListener, false);
+    }
+
+    // MultiMotorManager constructor takes the I/O mode, failures are only published as connection events (see getConnectionEvents)
+    public MultiMotorManager(boolean blockingIo) {
+        this(null, blockingIo);
+    }
+
+    // MultiMotorManager constructor takes the listener that is told about failed devices and the I/O mode
+    // (true --> per device threads with blocking I/O, false --> shared pool)
+    public MultiMotorManager(FailureListener failureListener, boolean blockingIo) {
+        this.failureListener = failureListener;
+
+        if (blockingIo) {
+            sharedScheduler = null;
+            return;
+        } else {}
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(IO_THREADS, r -> {
+            Thread thread = new Thread(r, "motor-io-" + threadCount.incrementAndGet());
+            // pool threads must never keep the JVM alive on their own
+            thread.setDaemon(true);
+            return thread;
+        });
+        // cancelled heartbeats && retransmission timers must not pile up in the shared queue
+        pool.setRemoveOnCancelPolicy(true);
+        sharedScheduler = pool;
+    }
+
+    // method to open a real serial port (9600 bps) and register it, returns false if it could not be opened
+    // (blocks while the link is negotiated, see SerialCommManager.negotiateLink)
+    public boolean addPort(String portName) {
+        return addPort(portName, false);
+    }
+
+    // method to open a real serial port whose MCU is known to speak the legacy protocol only (ex. found by PortDiscovery),
+    // then its HELLO is skipped, returns false if it could not be opened
+    public boolean addPort(String portName, boolean legacyFirmware) {
+        // identity is taken while the adapter is plugged in, so it can be recognized if it comes back under another name
+        if (!addDevice(newPortTransport(portName), ReconnectSupervisor.PortIdentity.of(portName))) {
+            return false;
+        } else {}
+        SerialCommManager manager = getManager(portName);
+        if (linkNegotiation && !legacyFirmware && manager != null && !manager.isTransmissionStarted()) {
+            manager.negotiateLink();
+        } else {}
+        return true;
+    }
+
+    // method to reopen a port with the link parameters its MCU settled on last time (see PortCache), without probing it first:
+    // a legacy link is checked with a single acked stop, a framed one is negotiated offering only the cached line rate.
+    // returns false if MCU did not answer like that (the port is closed again, the caller probes it), blocks like addPort
+    public boolean reopenPort(String portName, int protocolVersion, int baudRate) {
+        SerialTransport transport = newPortTransport(portName);
+        if (!addDevice(transport, ReconnectSupervisor.PortIdentity.of(portName))) {
+            return false;
+        } else {}
+        SerialCommManager manager = getManager(transport.getName());
+        if (manager == null || manager.isTransmissionStarted()) {
+            return manager != null; // already open and running
+        } else {}
+        boolean answered;
+        if (linkNegotiation && protocolVersion > 0) {
+            answered = manager.negotiateLink((baudRate > 0) ? new int[] { baudRate } : new int[0]);
+        } else {
+            answered = manager.manualRetry();
+        }
+        if (!answered) {
+            removeDevice(transport.getName());
+        } else {}
+        return answered;
+    }
+
+    // method to turn link negotiation of ports opened from now on (and of recovered ports) on or off
+    public void setLinkNegotiation(boolean linkNegotiation) {
+        this.linkNegotiation = linkNegotiation;
+    }
+
+    // method to open real ports opened from now on (and recovered ports) as Linux tty channels instead of through jSerialComm
+    public void setTtyChannelBackend(boolean ttyChannelBackend) {
+        this.ttyChannelBackend = ttyChannelBackend;
+    }
+
+    // method to set how long frames of every device (open ones && ones opened from now on) are gathered before they are written together (in us)
+    public synchronized void setTxBatchWindow(long micros) {
+        txBatchWindowMicros = micros;
+        for (Device device : devices.values()) {
+            device.manager.setTxBatchWindow(micros);
+        }
+    }
+
+    // method to create a discovery that probes ports through the current backend, skipping ports already used by a device
+    public PortDiscovery newPortDiscovery() {
+        return new PortDiscovery(this::newPortTransport, this::isPortInUse);
+    }
+
+    // method to create the transport of a real serial port for the current backend && I/O mode
+    private SerialTransport newPortTransport(String portName) {
+        if (ttyChannelBackend) {
+            // a tty channel always reads on a thread of its own, a virtual one in blocking I/O mode
+            return new TtyChannelTransport(portName, 9600, (sharedScheduler == null) ? IoThreads.factory("motor-rx-" + portName + "-") : null);
+        } else if (sharedScheduler == null) {
+            return new JSerialCommTransport(portName, 9600, IoThreads.factory("motor-rx-" + portName + "-"));
+        } else {}
+        return new JSerialCommTransport(portName, 9600);
+    }
+
+    // method to open a device over any transport and register it under the transport name
+    public boolean addDevice(SerialTransport transport) {
+        return addDevice(transport, null);
+    }
+
+    private synchronized boolean addDevice(SerialTransport transport, ReconnectSupervisor.PortIdentity identity) {
+        String name = transport.getName();
+        if (devices.containsKey(name)) {
+            return true; // already opened
+        } else {}
+
+        SerialCommManager manager = (sharedScheduler != null)
+            ? new SerialCommManager(transport, (byte)0x00, sharedScheduler)
+            : new SerialCommManager(transport, (byte)0x00, IoThreads.factory("motor-tx-" + name + "-"));
+        if (!manager.openPort()) {
+            return false;
+        } else {}
+        if (journal != null) {
+            manager.setJournal(journal);
+        } else {}
+        manager.setTxBatchWindow(txBatchWindowMicros);
+        manager.setStateListener(state -> publishState(name, state));
+        devices.put(name, new Device(manager, identity));
+        return true;
+    }
+
+    // method to let a background supervisor recover failed devices (retries with backoff, follows the adapter if it comes back
+    // under another name, restores the last confirmed command), instead of waiting for the operator
+    public synchronized void enableAutoReconnect() {
+        if (reconnectSupervisor == null) {
+            reconnectSupervisor = new ReconnectSupervisor(this::newPortTransport, this::isPortInUse, this::onDeviceRecovered);
+        } else {}
+    }
+
+    public boolean isAutoReconnect() {
+        return reconnectSupervisor != null;
+    }
+
+    // method to check if a device is being recovered in the background
+    public boolean isRecovering(String deviceName) {
+        ReconnectSupervisor supervisor = reconnectSupervisor;
+        return supervisor != null && supervisor.isRecovering(deviceName);
+    }
+
+    // method to check if a port is currently used by one of the devices
+    private synchronized boolean isPortInUse(String portName) {
+        for (Device device : devices.values()) {
+            if (device.manager.getPortName().equals(portName)) {
+                return true;
+            } else {}
+        }
+        return false;
+    }
+
+    // state listener of every device: a lost device the supervisor is working on is reported as RECOVERING
+    // (its failed attempts flip the link between RECOVERING && LOST, that is still one recovery)
+    private void publishState(String deviceName, ConnectionState state) {
+        if (state == ConnectionState.LOST && isRecovering(deviceName)) {
+            state = ConnectionState.RECOVERING;
+        } else {}
+        connectionEvents.publish(deviceName, state);
+    }
+
+    // method to get the debounced stream of connection state changes of all devices
+    public ConnectionEvents getConnectionEvents() {
+        return connectionEvents;
+    }
+
+    // failure callback of every device: hand it to the supervisor (if any), then tell the listener
+    private void onDeviceFailed(String deviceName) {
+        ReconnectSupervisor supervisor = reconnectSupervisor;
+        if (supervisor != null) {
+            Device device;
+            synchronized (this) {
+                device = devices.get(deviceName);
+            }
+            if (device != null) {
+                supervisor.deviceFailed(deviceName, device.manager, device.identity);
+                connectionEvents.publish(deviceName, ConnectionState.RECOVERING);
+            } else {}
+        } else {}
+        if (failureListener != null) {
+            failureListener.onDeviceFailed(deviceName);
+        } else {}
+    }
+
+    // recovery callback of the supervisor: the faster line rate is negotiated back (a recovered link runs at 9600 bps),
+    // then transmission picks up where it stopped
+    private void onDeviceRecovered(String deviceName) {
+        SerialCommManager manager = getManager(deviceName);
+        if (linkNegotiation && manager != null && manager.getBaudRate() > 0) {
+            manager.negotiateLink();
+        } else {}
+        startTransmission(deviceName);
+        if (failureListener != null) {
+            failureListener.onDeviceRecovered(deviceName);
+        } else {}
+    }
+
+    // method to record all devices (opened now or later) in a journal
+    public synchronized void setJournal(CommJournal journal) {
+        this.journal = journal;
+        for (Device device : devices.values()) {
+            device.manager.setJournal(journal);
+        }
+    }
+
+    // method to start periodic transmission of a device, failures are reported to the failure listener
+    public void startTransmission(String deviceName) {
+        SerialCommManager manager = getManager(deviceName);
+        if (manager != null) {
+            manager.startPeriodicTransmission(() -> onDeviceFailed(deviceName));
+        } else {}
+    }
+
+    public synchronized SerialCommManager getManager(String deviceName) {
+        Device device = devices.get(deviceName);
+        return (device != null) ? device.manager : null;
+    }
+
+    public synchronized List<String> getDeviceNames() {
+        return new ArrayList<>(devices.keySet());
+    }
+
+    // method to remember if operator turned the motor of a device ON
+    public synchronized void setEnabled(String deviceName, boolean enabled) {
+        Device device = devices.get(deviceName);
+        if (device != null) {
+            device.enabled = enabled;
+        } else {}
+    }
+
+    public synchronized boolean isEnabled(String deviceName) {
+        Device device = devices.get(deviceName);
+        return device != null && device.enabled;
+    }
+
+    // number of devices whose MCU acks but needed retransmissions recently
+    public synchronized int getDegradedCount() {
+        int degradedCount = 0;
+        for (Device device : devices.values()) {
+            if (device.manager.getConnectionState() == ConnectionState.DEGRADED) {
+                degradedCount++;
+            } else {}
+        }
+        return degradedCount;
+    }
+
+    // method to check a single device: healthy means its MCU is still acking
+    public synchronized boolean isHealthy(String deviceName) {
+        Device device = devices.get(deviceName);
+        return device != null && !device.manager.isCommunicationFailed();
+    }
+
+    // method to check if devices run on their own (virtual if supported) threads with blocking I/O
+    public boolean isBlockingIo() {
+        return sharedScheduler == null;
+    }
+
+    public synchronized int getDeviceCount() {
+        return devices.size();
+    }
+
+    // aggregated health: number of devices whose MCU is still acking
+    public synchronized int getHealthyCount() {
+        int healthyCount = 0;
+        for (Device device : devices.values()) {
+            if (!device.manager.isCommunicationFailed()) {
+                healthyCount++;
+            } else {}
+        }
+        return healthyCount;
+    }
+
+    // method to close a single device and forget it
+    public synchronized void removeDevice(String deviceName) {
+        Device device = devices.remove(deviceName);
+        if (reconnectSupervisor != null) {
+            reconnectSupervisor.cancel(deviceName);
+        } else {}
+        if (device != null) {
+            device.manager.close();
+        } else {}
+        connectionEvents.remove(deviceName);
+    }
+
+    // method to close all devices and release the shared pool
+    public synchronized void closeAll() {
+        if (reconnectSupervisor != null) {
+            reconnectSupervisor.shutdown();
+        } else {}
+        for (Device device : devices.values()) {
+            device.manager.close();
+        }
+        devices.clear();
+        connectionEvents.shutdown();
+        if (sharedScheduler != null) {
+            sharedScheduler.shutdownNow();
+        } else {}
+    }
+}
@@ -0,0 +1,101 @@
+// for catching IO exceptions
+import java.io.IOException;
+// for copying written bytes
+import java.util.Arrays;
+// for the delivery thread of each end
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+// one end of an in-memory serial link: bytes written to one end are handed to the listener of the other end
+// on the receiving end's own delivery thread (like a real port's Rx thread), so a listener that answers right away
+// never runs inside the writer's call. used by StressTester to put SerialCommManager && StressResponder back to back
+public class PipeTransport implements SerialTransport {
+
+    // defining the name of this end && the other end of the pipe
+    private final String name;
+    private PipeTransport peer;
+
+    // defining the thread bytes written by the peer are delivered on (null --> closed)
+    private volatile ExecutorService deliveryExecutor;
+
+    // defining the listener bytes are delivered to
+    private volatile ReceiveListener receiveListener;
+
+    private PipeTransport(String name) {
+        this.name = name;
+    }
+
+    // method to create both ends of a pipe
+    public static PipeTransport[] pair(String nameA, String nameB) {
+        PipeTransport a = new PipeTransport(nameA);
+        PipeTransport b = new PipeTransport(nameB);
+        a.peer = b;
+        b.peer = a;
+        return new PipeTransport[] { a, b };
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (deliveryExecutor == null) {
+            deliveryExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "pipe-rx-" + name);
+                // delivery thread must never keep the JVM alive on its own
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {}
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return deliveryExecutor != null;
+    }
+
+    @Override
+    public void setReceiveListener(ReceiveListener listener) {
+        receiveListener = listener;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (deliveryExecutor == null) {
+            throw new IOException("Pipe " + name + " is not open");
+        } else {}
+        // bytes written to a closed peer are lost on the wire, like with an unplugged device
+        peer.deliver(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    // method to queue bytes written by the peer for the listener of this end [writer thread of the peer]
+    private void deliver(byte[] data) {
+        ExecutorService executor = deliveryExecutor;
+        if (executor == null) {
+            return;
+        } else {}
+        try {
+            executor.execute(() -> {
+                ReceiveListener listener = receiveListener;
+                if (listener != null) {
+                    listener.onBytesReceived(data, data.length);
+                } else {}
+            });
+        } catch (RejectedExecutionException e) {
+            // this end was closed in the meantime
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        receiveListener = null;
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdownNow();
+            deliveryExecutor = null;
+        } else {}
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,115 @@
+// for the cache file
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// remembers the ports the app was last connected through && the link parameters their MCU settled on, so the next start
+// can probe just those ports and reconnect right away instead of enumerating every port and asking the operator.
+// stored as a small properties file, written to a temporary file first so a crash never leaves a half written cache
+public class PortCache {
+
+    // port the app was connected through && its link parameters
+    public static final class Entry {
+        public final String portName;
+        // protocol spoken on the link (FrameCodec.VERSION --> framed, 0 --> legacy)
+        public final int protocolVersion;
+        // line rate the link ran at (in bps, 0 --> unknown)
+        public final int baudRate;
+
+        public Entry(String portName, int protocolVersion, int baudRate) {
+            this.portName = portName;
+            this.protocolVersion = protocolVersion;
+            this.baudRate = baudRate;
+        }
+
+        @Override
+        public String toString() {
+            return portName + " (" + ((protocolVersion > 0) ? "framed" : "legacy") + ((baudRate > 0) ? ", " + baudRate + " bps" : "") + ")";
+        }
+    }
+
+    // defining the file the cache is kept in
+    private final File file;
+
+    // PortCache constructor takes the file the cache is kept in (it is created on the first save)
+    public PortCache(File file) {
+        this.file = file;
+    }
+
+    // method to read the cached ports, in the order they were saved (empty --> no cache or it could not be read)
+    public List<Entry> load() {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.isFile()) {
+            return entries;
+        } else {}
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("Port cache ignored: " + e.getMessage());
+            return entries;
+        }
+        String ports = properties.getProperty("ports", "").trim();
+        if (ports.isEmpty()) {
+            return entries;
+        } else {}
+        try {
+            for (String portName : ports.split(",")) {
+                portName = portName.trim();
+                entries.add(new Entry(portName,
+                    Integer.parseInt(properties.getProperty(portName + ".protocol", "0")),
+                    Integer.parseInt(properties.getProperty(portName + ".baud", "0"))));
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Port cache ignored: " + e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    // method to replace the cached ports, returns false if the cache could not be written
+    public boolean save(List<Entry> entries) {
+        Properties properties = new Properties();
+        StringBuilder ports = new StringBuilder();
+        for (Entry entry : entries) {
+            if (ports.length() > 0) {
+                ports.append(',');
+            } else {}
+            ports.append(entry.portName);
+            properties.setProperty(entry.portName + ".protocol", Integer.toString(entry.protocolVersion));
+            properties.setProperty(entry.portName + ".baud", Integer.toString(entry.baudRate));
+        }
+        properties.setProperty("ports", ports.toString());
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            return false;
+        } else {}
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "ports the motor control app was last connected through");
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            temporary.delete();
+            return false;
+        }
+    }
+
+    // method to forget the cached ports (ex. they stopped answering), the next start asks the operator again
+    public void clear() {
+        file.delete();
+    }
+}
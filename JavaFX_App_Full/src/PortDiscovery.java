@@ -0,0 +1,193 @@
+// for enumerating ports through jSerialComm
+import com.fazecast.jSerialComm.SerialPort;
+// for catching IO exceptions
+import java.io.IOException;
+// for the probe results
+import java.util.ArrayList;
+import java.util.List;
+// for probing every candidate at the same time
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// finds the ports an MCU answers on without blocking the caller: ports are enumerated on a background thread, then every
+// candidate is probed at the same time, so a machine with many ttys costs one PROBE_TIMEOUT instead of one per port.
+// a probe opens the port at 9600 bps and sends a HELLO that offers no line rate change: framed firmware replies with
+// a HELLO_REPLY, legacy firmware takes every byte of it as a clockwise stop and acks each one with 0xFF (see FrameCodec.encodeHello).
+// the port is closed again when the probe is over, it is opened for good by MultiMotorManager.addPort
+public class PortDiscovery {
+
+    // defining how long a probe waits for an answer (in ms), a port that answers ends its probe right away
+    public static final int PROBE_TIMEOUT = 300;
+
+    // defining the max number of ports probed at the same time
+    private static final int MAX_PARALLEL_PROBES = 16;
+
+    // defining the protocol version reported for a port that did not answer
+    public static final int NO_ANSWER = -1;
+
+    // outcome of probing a single port
+    public static final class Result {
+        public final String portName;
+        // human readable name of the port (ex. the USB adapter's product name)
+        public final String description;
+        // protocol the MCU answered in (FrameCodec.VERSION for framed firmware, 0 for legacy firmware, NO_ANSWER --> nobody answered)
+        public final int protocolVersion;
+        // time from sending the HELLO to the answer (in ns, -1 --> no answer)
+        public final long answerNanos;
+
+        Result(String portName, String description, int protocolVersion, long answerNanos) {
+            this.portName = portName;
+            this.description = description;
+            this.protocolVersion = protocolVersion;
+            this.answerNanos = answerNanos;
+        }
+
+        public boolean isResponding() {
+            return protocolVersion != NO_ANSWER;
+        }
+
+        @Override
+        public String toString() {
+            return portName + ": " + (!isResponding() ? "no answer"
+                : ((protocolVersion > 0) ? "framed" : "legacy") + " MCU in " + TimeUnit.NANOSECONDS.toMillis(answerNanos) + " ms");
+        }
+    }
+
+    // defining the factory of the transport a port is probed through (same backend as the ports opened for good)
+    private final Function<String, SerialTransport> transports;
+
+    // defining the check that tells if a port is already used by a device (it is never probed)
+    private final Predicate<String> portInUse;
+
+    // PortDiscovery constructor takes the factory of port transports and the check of ports already in use (see MultiMotorManager.newPortDiscovery)
+    public PortDiscovery(Function<String, SerialTransport> transports, Predicate<String> portInUse) {
+        this.transports = transports;
+        this.portInUse = portInUse;
+    }
+
+    // method to enumerate the ports and probe every one of them, returned future completes with one result per port
+    // (responding ports first, otherwise in enumeration order)
+    public CompletableFuture<List<Result>> discover() {
+        ExecutorService probes = newProbeExecutor();
+        CompletableFuture<List<Result>> results = CompletableFuture
+            .supplyAsync(SerialPort::getCommPorts, probes)
+            .thenCompose(ports -> {
+                List<CompletableFuture<Result>> pending = new ArrayList<>();
+                for (SerialPort port : ports) {
+                    String portName = port.getSystemPortName();
+                    String description = port.getDescriptivePortName();
+                    pending.add(CompletableFuture.supplyAsync(() -> probeNow(portName, description), probes));
+                }
+                return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                    List<Result> sorted = new ArrayList<>();
+                    for (CompletableFuture<Result> result : pending) {
+                        if (result.join().isResponding()) {
+                            sorted.add(result.join());
+                        } else {}
+                    }
+                    for (CompletableFuture<Result> result : pending) {
+                        if (!result.join().isResponding()) {
+                            sorted.add(result.join());
+                        } else {}
+                    }
+                    return sorted;
+                });
+            });
+        results.whenComplete((sorted, error) -> probes.shutdown());
+        return results;
+    }
+
+    // method to probe the passed ports only (ex. the ones cached from the last run), without enumerating the others
+    public CompletableFuture<List<Result>> probe(List<String> portNames) {
+        ExecutorService probes = newProbeExecutor();
+        List<CompletableFuture<Result>> pending = new ArrayList<>();
+        for (String portName : portNames) {
+            pending.add(CompletableFuture.supplyAsync(() -> probeNow(portName, portName), probes));
+        }
+        CompletableFuture<List<Result>> results = CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<Result> inOrder = new ArrayList<>();
+            for (CompletableFuture<Result> result : pending) {
+                inOrder.add(result.join());
+            }
+            return inOrder;
+        });
+        results.whenComplete((inOrder, error) -> probes.shutdown());
+        return results;
+    }
+
+    // method to probe a single port, blocks for at most PROBE_TIMEOUT once the port is open [probe thread]
+    private Result probeNow(String portName, String description) {
+        if (portInUse.test(portName)) {
+            return new Result(portName, description, NO_ANSWER, -1); // a device is talking on it, a HELLO would confuse its MCU
+        } else {}
+        SerialTransport transport = transports.apply(portName);
+        if (!transport.open()) {
+            return new Result(portName, description, NO_ANSWER, -1);
+        } else {}
+
+        byte[] hello = new byte[FrameCodec.MAX_FRAME_SIZE];
+        int length = FrameCodec.encodeHello(new int[0], hello);
+
+        CompletableFuture<Integer> answer = new CompletableFuture<>();
+        // a framed answer is decoded first, so a 0xFF inside its CRC is not taken for a legacy ACK
+        FrameCodec.Decoder decoder = new FrameCodec.Decoder((type, sequence, payload, payloadLength) -> {
+            if (type == FrameCodec.TYPE_HELLO_REPLY && payloadLength >= 1) {
+                answer.complete(payload[0] & 0xFF);
+            } else if (type == FrameCodec.TYPE_HELLO) {
+                // our own HELLO echoed back (ex. loopback plug), MCU never sends one
+            } else {
+                answer.complete(FrameCodec.VERSION); // ACK or telemetry of framed firmware still running from an earlier session
+            }
+        });
+        // legacy firmware acks every byte of the HELLO with 0xFF and sends nothing else, so anything else on the line
+        // (ex. noise or a device that echoes) keeps the port from being taken for legacy [Rx thread only]
+        AtomicInteger legacyAcks = new AtomicInteger();
+        AtomicBoolean otherBytes = new AtomicBoolean(false);
+        transport.setReceiveListener((buffer, received) -> {
+            decoder.feed(buffer, 0, received);
+            for (int i = 0; i < received; i++) {
+                if (buffer[i] == (byte) 0xFF) {
+                    legacyAcks.incrementAndGet();
+                } else {
+                    otherBytes.set(true);
+                }
+            }
+            if (!otherBytes.get() && legacyAcks.get() == length) {
+                answer.complete(0);
+            } else {}
+        });
+
+        long sentAt = System.nanoTime();
+        try {
+            transport.write(hello, 0, length);
+            int protocolVersion = answer.get(PROBE_TIMEOUT, TimeUnit.MILLISECONDS);
+            return new Result(portName, description, protocolVersion, System.nanoTime() - sentAt);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return new Result(portName, description, NO_ANSWER, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(portName, description, NO_ANSWER, -1);
+        } finally {
+            transport.setReceiveListener(null);
+            transport.close();
+        }
+    }
+
+    // method to create the threads a discovery runs on (daemon, so a discovery never keeps the JVM alive)
+    private static ExecutorService newProbeExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(MAX_PARALLEL_PROBES, r -> {
+            Thread thread = new Thread(r, "port-probe-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
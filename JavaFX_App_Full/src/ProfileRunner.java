@@ -0,0 +1,259 @@
+// for the runner thread && its high resolution waits
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// runs a MotionProfile on one motor from its own thread: every point is handed to the transmit path (SerialCommManager.setLastSentByte)
+// ahead of its scheduled time by the one way link latency (half the smoothed ACK round trip), so MCU applies it on time.
+// the time MCU applied a point is estimated from its ACK (dispatch time + ACK latency - half the round trip) and compared with the schedule.
+// ACKs are matched against the last few dispatched points (an ACK can be reported after the next point went out),
+// a point whose own ACK never arrives (ex. superseded before it was sent, or not a change on a legacy link) is counted as missed.
+// the run loop && the ACK listener allocate nothing
+// usage: java -cp build:jars/jSerialComm-2.11.0.jar ProfileRunner <program file> <port> | --sim
+public class ProfileRunner implements SerialCommManager.CommandListener {
+
+    // defining how long before a deadline the runner stops parking && spins (parking wakes up late by tens of us)
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    // defining the delay between start() and the first point (in ms), so the first points are not late already
+    private static final int START_DELAY_MILLIS = 50;
+
+    // defining the number of dispatched points kept for matching ACKs (more than fit in flight at once)
+    private static final int RECENT_POINTS = 16;
+
+    // defining the motor && the program
+    private final SerialCommManager manager;
+    private final MotionProfile profile;
+
+    // defining the listener that was registered before the run, told about every ACK as before (null --> none)
+    private SerialCommManager.CommandListener previousListener;
+
+    // defining the runner thread (null --> not started)
+    private Thread thread;
+
+    // defining the time the first cycle starts (System.nanoTime based)
+    private volatile long startNanos;
+
+    // defining the last points handed to the link (cycle * point count + index) && their dispatch times, in a ring
+    // written by the runner thread: an entry is published by the volatile write of dispatchedCount after it
+    private final long[] recentPoints = new long[RECENT_POINTS];
+    private final long[] recentDispatchNanos = new long[RECENT_POINTS];
+    private volatile long dispatchedCount = 0;
+
+    // defining the last point whose ACK was matched (-1 --> none yet) [listener thread only]
+    private long ackedPoint = -1;
+
+    // defining a flag telling if the run is over (program done or stopped)
+    private volatile boolean finished = false;
+
+    // defining deviation of the estimated application time from the schedule (in ns, positive --> late) [listener thread only, read by anyone]
+    private volatile long ackedPoints = 0;
+    private volatile long deviationSumNanos = 0;
+    private volatile long deviationAbsSumNanos = 0;
+    private volatile long deviationMinNanos = Long.MAX_VALUE;
+    private volatile long deviationMaxNanos = Long.MIN_VALUE;
+
+    // ProfileRunner constructor takes the motor && the program it runs
+    public ProfileRunner(SerialCommManager manager, MotionProfile profile) {
+        this.manager = manager;
+        this.profile = profile;
+    }
+
+    // method to start the run on a new thread (motor must be transmitting, see SerialCommManager.startPeriodicTransmission)
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        } else {}
+        previousListener = manager.getCommandListener();
+        manager.setCommandListener(this);
+        startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_DELAY_MILLIS);
+        thread = new Thread(this::run, "profile-" + manager.getPortName());
+        thread.setDaemon(true);
+        // deadlines are tight, let the OS pick this thread first when it can
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    // method to stop the run early, the motor is stopped (no-op if the run is over)
+    public synchronized void stop() {
+        if (thread != null && !finished) {
+            thread.interrupt();
+        } else {}
+    }
+
+    // method to wait for the end of the run
+    public void join() throws InterruptedException {
+        Thread runner;
+        synchronized (this) {
+            runner = thread;
+        }
+        if (runner != null) {
+            runner.join();
+        } else {}
+    }
+
+    // run loop [runner thread only]
+    private void run() {
+        int count = profile.getPointCount();
+        int repeatCount = profile.getRepeatCount();
+        long cycleNanos = profile.getCycleNanos();
+        // the first point of a cycle is not a change if the previous cycle ended on the same command
+        boolean wrapsSame = profile.getCommand(0) == profile.getCommand(count - 1);
+        try {
+            for (long cycle = 0; repeatCount == 0 || cycle < repeatCount; cycle++) {
+                long cycleStart = startNanos + cycle * cycleNanos;
+                for (int i = (cycle > 0 && wrapsSame) ? 1 : 0; i < count; i++) {
+                    // link latency is read again for every point, so the lead follows the link
+                    long leadNanos = manager.getSmoothedRttNanos() / 2;
+                    if (!waitUntil(cycleStart + profile.getOffsetNanos(i) - leadNanos)) {
+                        manager.setLastSentByte((byte) 0x00);
+                        return;
+                    } else {}
+                    long dispatched = dispatchedCount;
+                    int slot = (int) (dispatched % RECENT_POINTS);
+                    recentPoints[slot] = cycle * count + i;
+                    recentDispatchNanos[slot] = System.nanoTime();
+                    dispatchedCount = dispatched + 1;
+                    manager.setLastSentByte(profile.getCommand(i));
+                }
+            }
+        } finally {
+            finished = true;
+            manager.setCommandListener(previousListener);
+        }
+    }
+
+    // method to wait for a System.nanoTime deadline, returns false if the runner was interrupted [runner thread only]
+    private boolean waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (Thread.interrupted()) {
+                return false;
+            } else {}
+        }
+        while (deadline - System.nanoTime() > 0) {
+            // spin for the last few us
+        }
+        return !Thread.interrupted();
+    }
+
+    // ACK listener: the newest recently dispatched point with the acked command is the one acked [manager thread only]
+    @Override
+    public void onCommandConfirmed(byte command, long latencyNanos) {
+        long dispatched = dispatchedCount;
+        int count = profile.getPointCount();
+        for (long n = dispatched - 1; latencyNanos >= 0 && n >= 0 && n >= dispatched - RECENT_POINTS; n--) {
+            int slot = (int) (n % RECENT_POINTS);
+            long point = recentPoints[slot];
+            if (point <= ackedPoint) {
+                break;
+            } else {}
+            int index = (int) (point % count);
+            if ((command & 0xFF) == (manager.toLinkCommand(profile.getCommand(index)) & 0xFF)) {
+                // MCU applies a command about half a round trip before its ACK arrives
+                long appliedAt = recentDispatchNanos[slot] + latencyNanos - manager.getSmoothedRttNanos() / 2;
+                long deviation = appliedAt - (startNanos + (point / count) * profile.getCycleNanos() + profile.getOffsetNanos(index));
+                ackedPoint = point;
+                deviationSumNanos += deviation;
+                deviationAbsSumNanos += Math.abs(deviation);
+                if (deviation < deviationMinNanos) {
+                    deviationMinNanos = deviation;
+                } else {}
+                if (deviation > deviationMaxNanos) {
+                    deviationMaxNanos = deviation;
+                } else {}
+                ackedPoints++;
+                break;
+            } else {}
+        }
+
+        SerialCommManager.CommandListener listener = previousListener;
+        if (listener != null) {
+            listener.onCommandConfirmed(command, latencyNanos);
+        } else {}
+    }
+
+    // method to check if the run is over (program done or stopped)
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // method to get the number of points handed to the link so far
+    public long getDispatchedPoints() {
+        return dispatchedCount;
+    }
+
+    // method to get the number of points whose ACK was matched
+    public long getAckedPoints() {
+        return ackedPoints;
+    }
+
+    // method to get the number of dispatched points whose own ACK never arrived (the last one may still be in flight)
+    public long getMissedPoints() {
+        return Math.max(0, getDispatchedPoints() - ackedPoints);
+    }
+
+    // deviation of acked points (in us, positive --> late), 0 if no point has been acked yet
+    public long getMeanDeviationMicros() {
+        long acked = ackedPoints;
+        return (acked > 0) ? TimeUnit.NANOSECONDS.toMicros(deviationSumNanos / acked) : 0;
+    }
+
+    public long getMeanAbsDeviationMicros() {
+        long acked = ackedPoints;
+        return (acked > 0) ? TimeUnit.NANOSECONDS.toMicros(deviationAbsSumNanos / acked) : 0;
+    }
+
+    public long getMinDeviationMicros() {
+        return (ackedPoints > 0) ? TimeUnit.NANOSECONDS.toMicros(deviationMinNanos) : 0;
+    }
+
+    public long getMaxDeviationMicros() {
+        return (ackedPoints > 0) ? TimeUnit.NANOSECONDS.toMicros(deviationMaxNanos) : 0;
+    }
+
+    // method to get a one line summary of the run
+    public String describe() {
+        return String.format("%d/%d points acked (%d missed) | deviation mean %+.1f ms, |mean| %.1f ms, min %+.1f ms, max %+.1f ms",
+            getAckedPoints(), getDispatchedPoints(), getMissedPoints(), getMeanDeviationMicros() / 1000.0,
+            getMeanAbsDeviationMicros() / 1000.0, getMinDeviationMicros() / 1000.0, getMaxDeviationMicros() / 1000.0);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 2) {
+            System.err.println("usage: ProfileRunner <program file> <port> | --sim");
+            System.exit(2);
+        } else {}
+
+        MotionProfile profile = MotionProfile.load(new File(args[0]));
+        SerialTransport transport;
+        if (args[1].equals("--sim")) {
+            SimulatedMcuTransport simulatedMcu = new SimulatedMcuTransport("sim", 2000, 500, 0.0, 1);
+            simulatedMcu.enableFramedFirmware(38400);
+            transport = simulatedMcu;
+        } else {
+            transport = new JSerialCommTransport(args[1], SerialCommManager.LEGACY_BAUD_RATE);
+        }
+        SerialCommManager manager = new SerialCommManager(transport, (byte) 0x00);
+        if (!manager.openPort()) {
+            System.err.println("Failed to open " + transport.getName());
+            System.exit(1);
+        } else {}
+        manager.negotiateLink();
+        manager.startPeriodicTransmission(() -> System.err.println("MCU stopped answering"));
+
+        ProfileRunner runner = new ProfileRunner(manager, profile);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            runner.stop();
+            manager.close();
+        }));
+        runner.start();
+        runner.join();
+        // last ACK is still on its way
+        Thread.sleep(manager.getSmoothedRttNanos() / 1000000 * 4 + 100);
+        System.out.println(runner.describe());
+        System.exit(0);
+    }
+}
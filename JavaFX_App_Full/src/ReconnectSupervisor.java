@@ -0,0 +1,226 @@
+// serial comm library imported from .jar (port enumeration for hot-plug detection)
+import com.fazecast.jSerialComm.SerialPort;
+// for port name sets
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+// for the supervisor thread && backoff jitter
+import java.util.concurrent.*;
+// for checking if a port is already used by another device
+import java.util.function.Predicate;
+
+// background recovery of failed devices (see MultiMotorManager.enableAutoReconnect), nothing in here blocks the GUI:
+// each failed device is retried with jittered exponential backoff, a USB adapter that vanished is looked for in
+// SerialPort.getCommPorts() (possibly under a new name) and reopened, a port whose retry failed is reopened under its
+// name as well (its handle may be dead), and MCU gets back the last command it confirmed unless the operator asked for
+// something else (ex. stopped the motor) during the outage
+public class ReconnectSupervisor {
+
+    // defining the first backoff && the max backoff between two attempts of a device (in ms)
+    private static final long INITIAL_BACKOFF = 250;
+    private static final long MAX_BACKOFF = 10_000;
+
+    // factory of a transport for a (new) port name
+    public interface TransportFactory {
+        SerialTransport create(String portName);
+    }
+
+    // callback interface used to report a recovered device (called on the supervisor thread)
+    public interface RecoveryListener {
+        void onDeviceRecovered(String deviceName);
+    }
+
+    // USB identity of a serial port, used to recognize the adapter when it comes back under another name
+    public static class PortIdentity {
+        final String serialNumber;
+        final int vendorId;
+        final int productId;
+
+        PortIdentity(SerialPort port) {
+            String serial = port.getSerialNumber();
+            this.serialNumber = (serial == null || serial.isEmpty() || "Unknown".equals(serial)) ? null : serial;
+            this.vendorId = port.getVendorID();
+            this.productId = port.getProductID();
+        }
+
+        // method to get the identity of an enumerated port, null if no port has that name right now
+        public static PortIdentity of(String portName) {
+            for (SerialPort port : SerialPort.getCommPorts()) {
+                if (port.getSystemPortName().equals(portName)) {
+                    return new PortIdentity(port);
+                } else {}
+            }
+            return null;
+        }
+
+        // method to check if USB ids are known (virtual && built-in ports have none)
+        boolean hasUsbIds() {
+            return vendorId > 0 && productId > 0;
+        }
+
+        // same adapter: same serial number if it has one, otherwise same vendor && product
+        boolean matches(SerialPort port) {
+            if (serialNumber != null) {
+                return serialNumber.equals(port.getSerialNumber());
+            } else {}
+            return hasUsbIds() && port.getVendorID() == vendorId && port.getProductID() == productId;
+        }
+    }
+
+    // recovery state of a single failed device
+    private static class Recovery {
+        final String deviceName;
+        final SerialCommManager manager;
+        // null --> not a serial port (ex. simulated), only retried
+        final PortIdentity identity;
+        // ports present when the device failed, an adapter without ids is recognized by showing up after that
+        final Set<String> portsAtFailure;
+        // last command confirmed by MCU before the failure (-1 --> none) && number of commands the app had requested then
+        final int restoreCommand;
+        final long requestCountAtFailure;
+        // number of attempts so far && whether the last one failed, so the port is reopened before the next one [supervisor thread only]
+        int attempt = 0;
+        boolean retryFailed = false;
+        volatile boolean cancelled = false;
+
+        Recovery(String deviceName, SerialCommManager manager, PortIdentity identity, Set<String> portsAtFailure) {
+            this.deviceName = deviceName;
+            this.manager = manager;
+            this.identity = identity;
+            this.portsAtFailure = portsAtFailure;
+            this.restoreCommand = manager.getLastConfirmedCommand();
+            this.requestCountAtFailure = manager.getRequestCount();
+        }
+    }
+
+    // defining the single thread running all recoveries (attempts are asynchronous, so one thread is plenty)
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "motor-reconnect");
+        // supervisor must never keep the JVM alive on its own
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // defining the devices currently being recovered
+    private final Map<String, Recovery> recoveries = new ConcurrentHashMap<>();
+
+    // defining the factory used to reopen a port, the check telling if a port belongs to another device && the recovery listener
+    private final TransportFactory transportFactory;
+    private final Predicate<String> portInUse;
+    private final RecoveryListener recoveryListener;
+
+    // ReconnectSupervisor constructor takes the transport factory, the port-in-use check and the recovery listener
+    public ReconnectSupervisor(TransportFactory transportFactory, Predicate<String> portInUse, RecoveryListener recoveryListener) {
+        this.transportFactory = transportFactory;
+        this.portInUse = portInUse;
+        this.recoveryListener = recoveryListener;
+    }
+
+    // method to start recovering a device (ignored if it is already being recovered, ex. a failed attempt reports a failure too)
+    public void deviceFailed(String deviceName, SerialCommManager manager, PortIdentity identity) {
+        Set<String> portsAtFailure = (identity != null) ? listPortNames() : null;
+        Recovery recovery = new Recovery(deviceName, manager, identity, portsAtFailure);
+        if (recoveries.putIfAbsent(deviceName, recovery) == null) {
+            scheduleAttempt(recovery);
+        } else {}
+    }
+
+    // method to check if a device is being recovered
+    public boolean isRecovering(String deviceName) {
+        return recoveries.containsKey(deviceName);
+    }
+
+    // method to stop recovering a device (ex. it is being closed)
+    public void cancel(String deviceName) {
+        Recovery recovery = recoveries.remove(deviceName);
+        if (recovery != null) {
+            recovery.cancelled = true;
+        } else {}
+    }
+
+    public void shutdown() {
+        for (Recovery recovery : recoveries.values()) {
+            recovery.cancelled = true;
+        }
+        recoveries.clear();
+        scheduler.shutdownNow();
+    }
+
+    // method to schedule the next attempt after a jittered exponential backoff (half fixed, half random so devices do not retry in lockstep)
+    private void scheduleAttempt(Recovery recovery) {
+        long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(recovery.attempt, 16));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        recovery.attempt++;
+        try {
+            scheduler.schedule(() -> attempt(recovery), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // supervisor was shut down
+        }
+    }
+
+    // method to try to bring a device back [supervisor thread only]
+    private void attempt(Recovery recovery) {
+        if (recovery.cancelled) {
+            return;
+        } else {}
+
+        // adapter vanished --> find it again (maybe under another name) and move the manager to it,
+        // retry failed on a port that is still listed --> reopen it (ex. adapter came back under the same name, old handle is dead)
+        if (recovery.identity != null) {
+            String currentName = recovery.manager.getPortName();
+            boolean listed = listPortNames().contains(currentName);
+            if (!listed || recovery.retryFailed) {
+                String portName = listed ? currentName : findReplacement(recovery);
+                if (portName == null || !recovery.manager.replaceTransport(transportFactory.create(portName))) {
+                    scheduleAttempt(recovery);
+                    return;
+                } else {}
+                recovery.retryFailed = false;
+            } else {}
+        } else {}
+
+        // MCU gets the last command it confirmed, unless a newer one was requested while it was unreachable or a stop is requested
+        if (recovery.restoreCommand >= 0) {
+            recovery.manager.restoreCommand((byte) recovery.restoreCommand, recovery.requestCountAtFailure);
+        } else {}
+
+        // retry frame is acked on the Rx thread, the outcome is handled back on the supervisor thread
+        recovery.manager.manualRetryAsync().thenAcceptAsync(acked -> {
+            if (recovery.cancelled) {
+                return;
+            } else if (acked) {
+                recoveries.remove(recovery.deviceName, recovery);
+                recoveryListener.onDeviceRecovered(recovery.deviceName);
+            } else {
+                recovery.retryFailed = true;
+                scheduleAttempt(recovery);
+            }
+        }, scheduler);
+    }
+
+    // method to find the port the adapter of a device came back as, null if it is not back yet
+    private String findReplacement(Recovery recovery) {
+        for (SerialPort port : SerialPort.getCommPorts()) {
+            String portName = port.getSystemPortName();
+            if (portInUse.test(portName)) {
+                continue;
+            } else {}
+            if (recovery.identity.matches(port)) {
+                return portName;
+            } else if (recovery.identity.serialNumber == null && !recovery.identity.hasUsbIds()
+                    && !recovery.portsAtFailure.contains(portName)) {
+                // adapter without ids --> take the first port that showed up since the failure
+                return portName;
+            } else {}
+        }
+        return null;
+    }
+
+    private static Set<String> listPortNames() {
+        Set<String> names = new HashSet<>();
+        for (SerialPort port : SerialPort.getCommPorts()) {
+            names.add(port.getSystemPortName());
+        }
+        return names;
+    }
+}
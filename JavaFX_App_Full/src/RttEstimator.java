@@ -0,0 +1,64 @@
+// for time unit conversions
+import java.util.concurrent.TimeUnit;
+
+// round-trip time estimator that sizes the ACK timeout (RTO) like TCP does (RFC 6298, Jacobson/Karels)
+// not thread safe: SerialCommManager only touches it on its executor thread (owner of the window), other threads read
+// the mirrored SerialCommManager.smoothedRttNanos instead
+public class RttEstimator {
+
+    // defining gains of the smoothed RTT and RTT variance filters (1/8 && 1/4 as in RFC 6298)
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+
+    // defining the weight of RTT variance in RTO
+    private static final int K = 4;
+
+    // defining the bounds RTO is clamped to (in ns)
+    private final long minRtoNanos;
+    private final long maxRtoNanos;
+
+    // defining the smoothed RTT && RTT variance (in ns), srtt < 0 means no sample has been taken yet
+    private double srttNanos = -1;
+    private double rttVarNanos;
+
+    // defining the current retransmission timeout (in ns)
+    private long rtoNanos;
+
+    // RttEstimator constructor takes initial RTO (used until the first sample) && RTO bounds (in ms)
+    public RttEstimator(long initialRtoMillis, long minRtoMillis, long maxRtoMillis) {
+        this.minRtoNanos = TimeUnit.MILLISECONDS.toNanos(minRtoMillis);
+        this.maxRtoNanos = TimeUnit.MILLISECONDS.toNanos(maxRtoMillis);
+        this.rtoNanos = clamp(TimeUnit.MILLISECONDS.toNanos(initialRtoMillis));
+    }
+
+    // method to feed a measured round trip (must only be called for frames that were not retransmitted -- Karn's algorithm)
+    public void addSample(long rttNanos) {
+        if (srttNanos < 0) {
+            // first measurement
+            srttNanos = rttNanos;
+            rttVarNanos = rttNanos / 2.0;
+        } else {
+            rttVarNanos = (1 - BETA) * rttVarNanos + BETA * Math.abs(srttNanos - rttNanos);
+            srttNanos = (1 - ALPHA) * srttNanos + ALPHA * rttNanos;
+        }
+        rtoNanos = clamp((long)(srttNanos + K * rttVarNanos));
+    }
+
+    // method to double RTO after a timeout (exponential backoff), next valid sample brings it back down
+    public void backoff() {
+        rtoNanos = clamp(rtoNanos * 2);
+    }
+
+    public long getRtoNanos() {
+        return rtoNanos;
+    }
+
+    // smoothed RTT in ns (0 if no sample has been taken yet)
+    public long getSrttNanos() {
+        return (srttNanos < 0) ? 0 : (long)srttNanos;
+    }
+
+    private long clamp(long value) {
+        return Math.max(minRtoNanos, Math.min(maxRtoNanos, value));
+    }
+}
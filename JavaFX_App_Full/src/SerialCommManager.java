@@ -1,28 +1,70 @@
-// serial comm library imported from .jar
-import com.fazecast.jSerialComm.*; 
-// platform class allows interactions with JavaFx GUI thread
-import javafx.application.Platform;
-// data input stream class
-import java.io.DataInputStream;
-// data output stream class
-import java.io.DataOutputStream;
 // for catching IO exceptions
 import java.io.IOException;
 // for ScheduledExecutorService class to manage transmission thread SAFELY
 import java.util.concurrent.*;
-// for critical section Lock && ackReceived Condition for safe synchronization
-import java.util.concurrent.locks.*;
+// for flags shared between Rx thread and executor thread without locking
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+// for registering link statistics as a JMX MBean
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+// for the clock frame/ACK times are taken from
+import java.util.function.LongSupplier;
 
 public class SerialCommManager {
+
+    // listener told when MCU has acked a command
+    public interface CommandListener {
+        // command is the acked command (see MotorCommand, as MCU applies it), latencyNanos is the time from submission to ACK (-1 for heartbeat frames)
+        void onCommandConfirmed(byte command, long latencyNanos);
+    }
+
+    // listener told when the link moves to another ConnectionState (called on the thread that saw the change, it must not block)
+    public interface StateListener {
+        void onConnectionStateChanged(ConnectionState state);
+    }
     
-    // defining a reference to a SerialPort object (from jSerialComm lib)
-    private SerialPort serialPort;
+    // defining a reference to the transport that carries bytes to/from MCU (real serial port or simulated MCU)
+    // (replaced when the adapter comes back under another name, see ReconnectSupervisor)
+    private volatile SerialTransport transport;
+
+    // defining a buffer a single frame is encoded into (a single byte or a whole FrameCodec frame) [executor thread only]
+    private final byte[] txBuffer = new byte[FrameCodec.MAX_FRAME_SIZE];
+
+    // defining link protocols: legacy single byte frames acked by 0xFF, HELLO exchange in progress,
+    // CRC protected frames whose ACKs carry the sequence number of the acked frame (see FrameCodec)
+    private static final int LINK_LEGACY = 0;
+    private static final int LINK_HANDSHAKE = 1;
+    private static final int LINK_FRAMED = 2;
+
+    // defining the protocol currently spoken on the link (only changed while transmission is paused by negotiateLink)
+    private volatile int linkMode = LINK_LEGACY;
+
+    // defining the line rate every link starts at && falls back to (MCU boots at it)
+    public static final int LEGACY_BAUD_RATE = 9600;
+
+    // defining the line rates offered to MCU, best first (it takes the first one its clock can generate within 2 %)
+    private static final int[] BAUD_CANDIDATES = { 115200, 57600, 38400, 19200, LEGACY_BAUD_RATE };
+
+    // defining how long to wait for a HELLO_REPLY (in ms)
+    private final int HELLO_TIMEOUT = 300;
 
-    // defining a reference to a DataOutputStream object (for data transmission)
-    private DataOutputStream outputStream;
+    // defining how long MCU may take to switch its line rate, it does it on its next 250 ms control tick (in ms)
+    private final int BAUD_SWITCH_SETTLE = 300;
 
-    // defining a flag for indicating a wait for ack signal [MAYBE CHANGE IT TO AtomicBoolean?!!]
-    private boolean waitingForAck = false;
+    // defining how long MCU goes without a valid frame before it falls back to 9600 bps legacy (FRAMED_SILENCE_TICKS in control.c) (in ms)
+    private final int MCU_SILENCE_FALLBACK = 3000;
+
+    // defining a flag that keeps executor tasks off the link while negotiateLink talks to MCU
+    private volatile boolean negotiating = false;
+
+    // defining the HELLO waiting for its reply, completed by Rx thread with { version, baud rate } (null when none is pending)
+    private volatile CompletableFuture<int[]> pendingHello;
+
+    // defining the decoder assembling frames out of received bytes [Rx thread only]
+    private final FrameCodec.Decoder frameDecoder = new FrameCodec.Decoder(this::onFrameReceived);
 
     // defining a flag to indicate failed communication with MCU
     private volatile boolean communicationFailed = false;
@@ -30,82 +72,298 @@ public class SerialCommManager {
     // defining a reference to ScheduledExecutorService for handling transmission thread + make it run with specific periodicity 
     private ScheduledExecutorService executor;
 
+    // defining a reference to a pool shared with other devices (null --> this manager gets a thread of its own)
+    private final ScheduledExecutorService sharedScheduler;
+
+    // defining the factory of this manager's own thread when no pool is shared (null --> default platform thread)
+    private final ThreadFactory ioThreads;
+
     // defining a reference to a runnable/thread that will be called upon failure
     private Runnable onFailureCallback;
 
-    // defining a variable to hold the last sent byte
+    // defining a variable to hold the last sent byte (command handed to the link, a ramp step while a ramp runs)
     private volatile byte lastSentByte;
-    
-    // defining a reference to a Lock to make critical sections more efficient/readable
-    private final Lock lock = new ReentrantLock();
 
-    // defining a reference to a Condition to handle ack event with more precision and notify transmission thread on time
-    private final Condition ackReceivedCondition = lock.newCondition();
+    // defining the last command requested by the app (the ramp target while a ramp runs)
+    private volatile byte requestedCommand;
+
+    // defining how often a ramp started by setSpeedTarget sends its next setpoint (in ms),
+    // so a dragged slider costs at most 50 commands per second no matter how fast its events come
+    private final int RAMP_PERIODICITY = 20;
+
+    // defining the default max speed change of a ramp (in % per second, 0 --> jump straight to the target)
+    public static final int DEFAULT_SLEW_RATE = 200;
+
+    // defining the max speed change of a ramp (in % per second)
+    private volatile int slewRate = DEFAULT_SLEW_RATE;
+
+    // defining a lock && a generation number bumped by every direct command: a ramp step of an older generation is dropped,
+    // so a direct command (ex. stop) always wins over a running ramp [guarded by rampLock]
+    private final Object rampLock = new Object();
+    private long rampGeneration = 0;
 
+    // defining a flag telling that a ramp of the current generation is running (it picks up new targets on its next step) [guarded by rampLock]
+    private boolean rampRunning = false;
+
+    // defining the number of commands requested by the app so far (setLastSentByte + setSpeedTarget) [guarded by rampLock]
+    private long requestCount = 0;
+
+    // defining the time (nanoClock based) of the last ramp step && whether there has been one [executor thread only]
+    private long lastRampStepAt;
+    private boolean rampStepTaken = false;
+    
     // defining a byte constant for ack byte
     private final byte ACK_BYTE = (byte)0xFF;
 
-    // defining a Tx scheduling periodicity constant (in ms)
+    // defining a Tx scheduling periodicity constant (in ms), heartbeat period right after a value change && initial ACK timeout
     private final int TX_PERIODICITY = 500;
+
+    // defining the slowest heartbeat period reached when the value stays the same (in ms)
+    private final int MAX_HEARTBEAT_PERIODICITY = 2000;
+
+    // defining bounds of the ACK timeout derived from measured round trips (in ms)
+    private final int MIN_ACK_TIMEOUT = 50;
+    private final int MAX_ACK_TIMEOUT = 2000;
     
-    // defining a variable to keep track of sent byte ID
-    private volatile int sentByteID;
+    // defining a variable to keep track of sent byte ID [executor thread only]
+    private int sentByteID;
+
+    // defining the max number of frames that can be in flight at once (3-bit ID gives 8 IDs, one is kept unused so in-flight IDs never collide)
+    private final int WINDOW_SIZE = 7;
+
+    // defining the number of times a single frame may be retransmitted before communication is considered failed
+    private final int MAX_RETRANSMISSIONS = 2;
+
+    // defining the number of ACKs of frames sent once needed to go from DEGRADED back to CONNECTED
+    private final int CLEAN_ACKS_TO_RECOVER = 10;
+
+    // defining how often in-flight frames are checked for an expired ACK deadline (in ms)
+    private final int RETRANSMIT_CHECK_PERIODICITY = 20;
+
+    // frames are not written one by one: new frames, heartbeats && retransmissions are gathered in a batch that goes out
+    // in a single transport write when the Tx batch window closes (by default as soon as the executor task that sent them
+    // is done, so a retransmission pass or a burst of queued commands costs one system call). a stop command closes
+    // the window right away, it goes out together with whatever was gathered before it so frame order is kept
+
+    // defining the max number of frames in a batch (a whole window retransmitted + a whole window of new frames), a full batch is written right away
+    private final int TX_BATCH_FRAMES = 2 * WINDOW_SIZE;
+
+    // defining the batch frames are gathered in && its length in bytes && in frames [executor thread only]
+    private final byte[] txBatch = new byte[TX_BATCH_FRAMES * FrameCodec.MAX_FRAME_SIZE];
+    private int txBatchLength = 0;
+    private int txBatchFrames = 0;
+
+    // defining a flag telling that a flush of the batch is scheduled [executor thread only]
+    private boolean txFlushScheduled = false;
+
+    // defining the default Tx batch window (in us, 0 --> frames are gathered until the running executor task is done)
+    public static final long DEFAULT_TX_BATCH_WINDOW = 0;
+
+    // defining how long a batch stays open after its first frame (in us)
+    private volatile long txBatchWindowMicros = DEFAULT_TX_BATCH_WINDOW;
+
+    // defining a ring buffer holding in-flight frames (oldest frame is at windowHead) as legacy data bytes with ID [executor thread only]
+    private final byte[] windowFrames = new byte[WINDOW_SIZE];
+
+    // defining the command (see MotorCommand) carried by each in-flight frame as MCU applies it [executor thread only]
+    private final byte[] windowCommands = new byte[WINDOW_SIZE];
+
+    // defining the time (nanoClock based) each in-flight frame was last sent [executor thread only]
+    private final long[] windowSentAt = new long[WINDOW_SIZE];
+
+    // defining the ACK deadline (nanoClock based) of each in-flight frame [executor thread only]
+    private final long[] windowDeadlines = new long[WINDOW_SIZE];
+
+    // defining the number of retransmissions already done for each in-flight frame [executor thread only]
+    private final int[] windowRetransmissions = new int[WINDOW_SIZE];
+
+    // defining the sequence number of each in-flight frame && whether it has been acked already,
+    // on a framed link ACKs name their frame so a frame can be acked before older ones [executor thread only]
+    private final int[] windowSequences = new int[WINDOW_SIZE];
+    private final boolean[] windowAcked = new boolean[WINDOW_SIZE];
+
+    // defining the sequence number of the next framed frame (16 bits on the wire) [executor thread only]
+    private int frameSequence = 0;
+
+    // defining the sequence number of the newest acked frame, so a late ACK of an older frame does not roll the
+    // confirmed command back (-1 --> none since the window was cleared) [executor thread only]
+    private int confirmedSequence = -1;
+
+    // defining the time (nanoClock based) the command carried by each in-flight frame was submitted,
+    // NOT_A_COMMAND for heartbeat frames [executor thread only]
+    private final long[] windowSubmittedAt = new long[WINDOW_SIZE];
+    private static final long NOT_A_COMMAND = Long.MIN_VALUE;
+
+    // defining the index of the oldest in-flight frame [executor thread only]
+    private int windowHead = 0;
+
+    // defining the number of in-flight frames [executor thread only]
+    private int windowCount = 0;
+
+    // ACK handshake is lock free: Rx thread only appends ACK arrival times to a single-producer/single-consumer ring
+    // and executor thread (sole owner of the window) retires frames from it, so Rx thread never waits for the sender
+
+    // defining the size of the ACK ring (way more than WINDOW_SIZE so it never fills while the executor is alive)
+    private final int ACK_RING_SIZE = 64;
+
+    // defining the ring holding arrival time (nanoClock based) of each received ACK
+    private final long[] ackArrivals = new long[ACK_RING_SIZE];
+
+    // defining the ring holding the sequence number each received ACK names (NO_SEQUENCE for a legacy ACK byte)
+    private final int[] ackSequences = new int[ACK_RING_SIZE];
+    private static final int NO_SEQUENCE = -1;
+
+    // defining the ACK count appended to the ring by the chunk being decoded, published when the chunk is done [Rx thread only]
+    private long rxWriteSeq;
+
+    // defining the arrival time of the chunk being decoded [Rx thread only]
+    private long rxChunkTime;
+
+    // defining the number of ACKs ever published by Rx thread (volatile write publishes the ring entries before it)
+    private volatile long ackWriteSeq = 0;
+
+    // defining the number of ACKs ever consumed by executor thread
+    private volatile long ackReadSeq = 0;
+
+    // defining a manual retry frame waiting for its ACK
+    private static class RetryAttempt {
+        // completed with true once an ACK is published after ackMark, false on deadline/error
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // defining ackWriteSeq at the time the retry frame was sent (ACKs published after it belong to the retry)
+        volatile long ackMark;
+    }
+
+    // defining the manual retry waiting for an ACK (null when no retry is pending)
+    private volatile RetryAttempt pendingRetry;
+
+    // defining the clock all frame/ACK times are taken from (System.nanoTime unless driven by a virtual clock, see SessionReplayer)
+    private final LongSupplier nanoClock;
+
+    // defining a flag raised by executor thread when a changed value did not fit in the window, Rx thread pushes it once a frame is retired
+    private final AtomicBoolean changePending = new AtomicBoolean(false);
+
+    // defining the commands waiting to be put in flight (superseded setpoints are merged, stop goes first)
+    private final CommandQueue commandQueue = new CommandQueue();
+
+    // defining the last command acked by MCU (data byte, -1 --> none since start or last failure)
+    private volatile int confirmedCommand = -1;
+
+    // defining the last command ever acked by MCU, kept across failures so it can be restored on reconnect (-1 --> none)
+    private volatile int lastConfirmedCommand = -1;
+
+    // defining the listener told about acked commands (null --> nobody listens)
+    private volatile CommandListener commandListener;
+
+    // defining the state of the link (null --> no ACK yet) && the listener told when it changes (null --> nobody listens)
+    private final AtomicReference<ConnectionState> connectionState = new AtomicReference<>();
+    private volatile StateListener stateListener;
+
+    // defining the number of ACKs of frames sent once since the link got DEGRADED [executor thread only]
+    private int cleanAcks = 0;
+
+    // defining the number of telemetry samples kept (a minute at the 100 ms rate MCU sends them)
+    private final int TELEMETRY_CAPACITY = 600;
+
+    // defining the time series of telemetry frames received from MCU (written by Rx thread, read by anyone)
+    private final TelemetrySeries telemetry = new TelemetrySeries(TELEMETRY_CAPACITY);
+
+    // defining link statistics (counters, ACK round trip histogram, in-flight depth), also published over JMX
+    private final CommStats stats = new CommStats();
+
+    // defining the JMX name stats are registered under (null when not registered)
+    private ObjectName statsMBeanName;
+
+    // defining the journal every frame/ACK/timeout/setpoint is recorded in (null --> not recorded) && this device's id in it
+    private volatile CommJournal journal;
+    private volatile int journalDeviceId;
+
+    // defining an estimator that sizes the ACK timeout from measured round trips instead of using TX_PERIODICITY [executor thread only]
+    private final RttEstimator rttEstimator = new RttEstimator(TX_PERIODICITY, MIN_ACK_TIMEOUT, MAX_ACK_TIMEOUT);
+
+    // defining the smoothed round trip of rttEstimator mirrored for other threads (in ns, 0 --> no sample yet)
+    private volatile long smoothedRttNanos = 0;
+
+    // defining references to the scheduled heartbeat && retransmission tasks so they can be cancelled on restart [executor thread only]
+    private ScheduledFuture<?> heartbeatTask;
+    private ScheduledFuture<?> retransmitTask;
+
+    // defining the current heartbeat period, doubled on every idle heartbeat up to MAX_HEARTBEAT_PERIODICITY (in ms) [executor thread only]
+    private int heartbeatPeriodicity = TX_PERIODICITY;
+
+    // defining a flag to indicate that periodic transmission has been started
+    private volatile boolean transmissionStarted = false;
 
     // SerialCommManager constructor takes a string signifying the name of the port (ex. /dev/ttyUSB0)
     public SerialCommManager(String portName, byte dataByte) {
-	    // reserving port with passed name for use in app
-        serialPort = SerialPort.getCommPort(portName);
+	    // reserving real serial port with passed name at 9600 bps
+        this(new JSerialCommTransport(portName, 9600), dataByte);
+    }
 
-	    // setting baud rate to 9600 bps
-        serialPort.setBaudRate(9600);
+    // SerialCommManager constructor takes the transport to talk to MCU through (ex. SimulatedMcuTransport)
+    public SerialCommManager(SerialTransport transport, byte dataByte) {
+        this(transport, dataByte, (ScheduledExecutorService) null);
+    }
 
-	    // setting data length to 8 bits
-        serialPort.setNumDataBits(8);
+    // SerialCommManager constructor takes the transport and a pool shared by many devices (see MultiMotorManager)
+    public SerialCommManager(SerialTransport transport, byte dataByte, ScheduledExecutorService sharedScheduler) {
+        this(transport, dataByte, sharedScheduler, System::nanoTime);
+    }
 
-	    // setting number of stop bits to 1
-        serialPort.setNumStopBits(SerialPort.ONE_STOP_BIT);
+    // SerialCommManager constructor takes the transport, a pool shared by many devices and the clock that pool runs on
+    // (ex. a VirtualTimeScheduler && its nanoTime to replay a recorded session deterministically)
+    public SerialCommManager(SerialTransport transport, byte dataByte, ScheduledExecutorService sharedScheduler, LongSupplier nanoClock) {
+        this(transport, dataByte, sharedScheduler, null, nanoClock);
+    }
 
-	    // setting parity mode to no parity (no need to use it)
-        serialPort.setParity(SerialPort.NO_PARITY);
+    // SerialCommManager constructor takes the transport and the factory of its own thread (ex. IoThreads.factory for a virtual thread)
+    public SerialCommManager(SerialTransport transport, byte dataByte, ThreadFactory ioThreads) {
+        this(transport, dataByte, null, ioThreads, System::nanoTime);
+    }
+
+    private SerialCommManager(SerialTransport transport, byte dataByte, ScheduledExecutorService sharedScheduler, ThreadFactory ioThreads, LongSupplier nanoClock) {
+        this.transport = transport;
+        this.sharedScheduler = sharedScheduler;
+        this.ioThreads = ioThreads;
+        this.nanoClock = nanoClock;
 
-	    // setting read/write timeout parameters
-	    // SerialPort.TIMEOUT_WRITE_BLOCKING --> a write/transmission will block until data is written on output stream
-	    // SerialPort.TIMEOUT_READ_SEMI_BLOCKING --> blocks until at least one byte is read from input steam (which is more than enough cuz ack is a single byte)
-	    // set timeout of read && write to 0s
-        serialPort.setComPortTimeouts(
-            SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 
-            0, 0
-        );
-        
         // setting initial ID to 0
         sentByteID = 0;
+
+        // initial ACK timeout shows up in stats before the first round trip is measured
+        stats.recordRto(rttEstimator.getRtoNanos());
         
         // setting data byte to 0 initially
         setLastSentByte(dataByte);
     }
 
-    // instance method to prepare Tx (outputStream) + its thread && Rx with its listener 
+    // instance method to prepare Tx + its thread && Rx with its listener 
     public boolean openPort() {
 	    // flag acts as return status for method
 	    boolean isPortOpenedSuccessfully = true;
 
-	    // check if serial port has been opened successfully after reserving it in constructor
-        if (!serialPort.openPort()) {
+	    // check if transport has been opened successfully
+        if (!transport.open()) {
 		    // wrong port name or sth
 		    isPortOpenedSuccessfully = false;
 	    } else { // port was opened normally
 	    
-	        // surround the following statements with try...catch to handle possible IO exceptions
+	        // surround the following statements with try...catch to handle possible exceptions
 	        try {
-		
-		        // open a new data output stream and pass the serialPort's output stream to it
-                outputStream = new DataOutputStream(serialPort.getOutputStream());
-    
 		        // call Rx listener init
-                setupListener();
+                transport.setReceiveListener(this::onBytesReceived);
+
+		        // publish link statistics over JMX
+                registerStatsMBean();
 
 		        // run Tx thread periodically with a constant delay SAFELY
-                executor = Executors.newSingleThreadScheduledExecutor();
+		        // on a shared pool tasks of this device still run one at a time, so window state keeps a single owner
+                if (sharedScheduler != null) {
+                    executor = new SerialScheduler(sharedScheduler);
+                } else if (ioThreads != null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(ioThreads);
+                } else {
+                    executor = Executors.newSingleThreadScheduledExecutor();
+                }
             } catch (Exception e) { // in case an Exception was caught
                 
 		        // close serial port connection
@@ -119,166 +377,591 @@ public class SerialCommManager {
         return isPortOpenedSuccessfully;
     }
 
+    // method to send a command (see MotorCommand) as is, a running ramp is cancelled (ex. a stop never waits for one)
     public void setLastSentByte(byte data) {
-    	lastSentByte = data;
+        synchronized (rampLock) {
+            requestCount++;
+            rampGeneration++;
+            rampRunning = false;
+            requestedCommand = data;
+            submitCommand(data);
+        }
+    }
+
+    // method to give MCU back a command it confirmed before a failure (see ReconnectSupervisor), returns false if it was not sent:
+    // the app asked for something since expectedRequestCount (ex. operator stopped the motor during the outage),
+    // or the requested command is a stop, which is never overwritten
+    public boolean restoreCommand(byte command, long expectedRequestCount) {
+        synchronized (rampLock) {
+            if (requestCount != expectedRequestCount || MotorCommand.isStop(requestedCommand)) {
+                return false;
+            } else {}
+            rampGeneration++;
+            rampRunning = false;
+            requestedCommand = command;
+            submitCommand(command);
+            return true;
+        }
+    }
+
+    // method to get the number of commands requested by the app so far (a restored command does not count)
+    public long getRequestCount() {
+        synchronized (rampLock) {
+            return requestCount;
+        }
+    }
+
+    // method to move the motor to a speed (0-100 %) && direction through a ramp: a setpoint goes out every RAMP_PERIODICITY
+    // at most, each one at most slewRate away from the previous one (through 0 on a reversal).
+    // meant for values that change continuously (ex. a slider being dragged), older targets are simply overtaken
+    public void setSpeedTarget(int speedPercentage, boolean clockwise) {
+        byte target = MotorCommand.percent(speedPercentage, clockwise);
+        long generation;
+        synchronized (rampLock) {
+            requestCount++;
+            requestedCommand = target;
+            if (!transmissionStarted || executor.isShutdown()) {
+                // nothing is on the link --> the target is the value sent once transmission starts
+                rampGeneration++;
+                rampRunning = false;
+                submitCommand(target);
+                return;
+            } else if (rampRunning) {
+                return; // running ramp heads to the new target from its next step on
+            } else {}
+            rampRunning = true;
+            generation = rampGeneration;
+        }
+        try {
+            executor.execute(() -> rampStep(generation));
+        } catch (RejectedExecutionException e) {
+            // executor was shut down in between --> nothing to send
+        }
+    }
+
+    // method to set the max speed change of ramps started from now on (in % per second, 0 --> no ramp, still rate limited)
+    public void setSlewRate(int percentPerSecond) {
+        slewRate = Math.max(0, percentPerSecond);
+    }
+
+    // task that sends the next setpoint of a ramp and schedules the one after it until the target is reached [executor thread only]
+    private void rampStep(long generation) {
+        long now = nanoClock.getAsLong();
+        // a new ramp keeps RAMP_PERIODICITY from the last step of the previous one as well
+        long wait = rampStepTaken ? lastRampStepAt + TimeUnit.MILLISECONDS.toNanos(RAMP_PERIODICITY) - now : 0;
+        if (wait > 0) {
+            scheduleRampStep(generation, wait);
+            return;
+        } else {}
+
+        int rate = slewRate;
+        int maxStep = Math.max(1, rate * RAMP_PERIODICITY / 1000);
+        synchronized (rampLock) {
+            if (generation != rampGeneration) {
+                return; // cancelled by a direct command
+            } else {}
+            lastRampStepAt = now;
+            rampStepTaken = true;
+            int current = MotorCommand.signedSpeedOf(lastSentByte);
+            int target = MotorCommand.signedSpeedOf(requestedCommand);
+            int next = (rate == 0) ? target : current + Math.max(-maxStep, Math.min(maxStep, target - current));
+            if (next == target) {
+                // last step carries the target itself (keeps the direction of a stop)
+                submitCommand(requestedCommand);
+                rampRunning = false;
+                return;
+            } else {}
+            submitCommand(MotorCommand.fromSignedSpeed(next));
+        }
+        scheduleRampStep(generation, TimeUnit.MILLISECONDS.toNanos(RAMP_PERIODICITY));
+    }
+
+    // method to schedule the next step of a ramp [executor thread only]
+    private void scheduleRampStep(long generation, long delayNanos) {
+        try {
+            executor.schedule(() -> rampStep(generation), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // executor was shut down --> transmission is over
+        }
     }
 
-    // instance method to initialize Rx listener
-    private void setupListener() {
+    // method to hand a command to the link [guarded by rampLock]
+    private void submitCommand(byte data) {
+        // keep track of previous value to only push actual changes
+        byte previousByte = lastSentByte;
+    	lastSentByte = data;
+        journal(CommJournal.SETPOINT, data, 0);
 
-	    // creating an anonymous inner class that IMPLEMENTS SerialPortDataListener (interface found in jSerialComm)
-        serialPort.addDataListener(new SerialPortDataListener() {
-	        // method to tell listener when data is available on serial port
-	        @Override
-            public int getListeningEvents() { 
-                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE; 
+        // a changed value is queued && sent right away (as long as the window has room) instead of waiting for the next heartbeat
+        // (a change MCU would not see, ex. ramp steps between two legacy speeds, waits for the heartbeat)
+        if (toLinkCommand(previousByte) != toLinkCommand(data) && transmissionStarted && !executor.isShutdown()) {
+            stats.recordCommandsCoalesced(commandQueue.offer(data, nanoClock.getAsLong()));
+            try {
+                executor.execute(this::transmitChange);
+            } catch (RejectedExecutionException e) {
+                // executor was shut down in between --> nothing to send
             }
-	        // method that is called whenever a serial event is called
-            @Override
-            public void serialEvent(SerialPortEvent event) {
-		        // if the serial event that triggered this method is data available, do the following
-                if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
-		            // surround the following statements with try...catch to handle exceptions
-		            try {
-		    	        // creating a data input stream for reception and passing serialPort's input stream to it
-                        DataInputStream input = new DataInputStream(serialPort.getInputStream());
-		    	        // as long as there is data on the input stream
-                        while (input.available() > 0) {
-		    	            // read byte from input stream
-                            byte data = input.readByte();
-		    	            // if received data is an ACK byte --> handle it 
-                            if (data == ACK_BYTE) {
-                                handleAckReceived();
-                            } else {} // keep reading 
-                        }
-                    } catch (IOException ex) {
-                        // handle exception
-                    }	
-		        } else {} // do nothing
+        } else {}
+    }
+
+    // method called by transport (on its Rx thread) whenever bytes are received
+    private void onBytesReceived(byte[] buffer, int length) {
+        rxChunkTime = nanoClock.getAsLong();
+        rxWriteSeq = ackWriteSeq;
+        if (linkMode == LINK_LEGACY) {
+            // scan the whole chunk once and queue every ACK byte in it
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == ACK_BYTE) {
+                    appendAck(NO_SEQUENCE);
+                } else {} // keep reading 
             }
-        });
+        } else {
+            // frames may be split over chunks, the decoder keeps the partial one
+            frameDecoder.feed(buffer, 0, length);
+        }
+        // handle all ACKs of the chunk in a single critical section
+        if (rxWriteSeq != ackWriteSeq) {
+            handleAckReceived();
+        } else {}
+    }
+
+    // method called by the decoder for every frame with a valid CRC [Rx thread only]
+    private void onFrameReceived(int type, int sequence, byte[] payload, int payloadLength) {
+        if (type == FrameCodec.TYPE_ACK && linkMode == LINK_FRAMED) {
+            appendAck(sequence);
+        } else if (type == FrameCodec.TYPE_HELLO_REPLY && payloadLength >= 3) {
+            CompletableFuture<int[]> hello = pendingHello;
+            if (hello != null) {
+                hello.complete(new int[] { payload[0] & 0xFF, FrameCodec.readShort(payload, 1) * FrameCodec.BAUD_UNIT });
+            } else {}
+        } else if (type == FrameCodec.TYPE_TELEMETRY && payloadLength >= FrameCodec.TELEMETRY_PAYLOAD_SIZE) {
+            // only copied into the ring, ACKs of the same chunk are published right after it
+            telemetry.append(rxChunkTime, payload[0] & 0xFF, (payload[1] & 0x01) == 0, FrameCodec.readShort(payload, 3), payload[2] & 0xFF, sequence);
+        } else {} // ex. ACK of a frame sent before the handshake --> ignore it
     }
 
-    // method to handle a received ack byte
+    // method to add an ACK of the current chunk to the ring (not visible to executor until handleAckReceived) [Rx thread only]
+    private void appendAck(int sequence) {
+        // ring is full only if executor is gone --> extra ACKs are dropped
+        if (rxWriteSeq - ackReadSeq == ACK_RING_SIZE) {
+            return;
+        } else {}
+        int slot = (int)(rxWriteSeq % ACK_RING_SIZE);
+        ackArrivals[slot] = rxChunkTime;
+        ackSequences[slot] = sequence;
+        rxWriteSeq++;
+    }
+
+    // method to handle the ACKs appended by the current chunk [Rx thread only, never blocks]
     private void handleAckReceived() {
-	    // critical section entered (lock acquired)
-        lock.lock();
-	    // surround statements with a try to make sure lock is released even if an exception happens
-	    try {
-	        // transmitter thread can transmit normally when its time comes
-            	waitingForAck = false;
-            
-            	// lower commFailed flag since ack was received successfully after retry
-            	communicationFailed = false;
-            
-	        // signal to all threads (aka only transmitter thread) that ack has been received
-            	ackReceivedCondition.signalAll();
-        } finally {
-	        // critical section exited (lock will always be released regardless of above statements exit state)
-            lock.unlock();
+        long writeSeq = rxWriteSeq;
+        // publish the new entries in one volatile write
+        ackWriteSeq = writeSeq;
+
+        // lower commFailed flag since ack was received successfully after retry
+        communicationFailed = false;
+
+        // complete the pending manual retry (if any), which wakes up whoever waits for it
+        RetryAttempt attempt = pendingRetry;
+        if (attempt != null && writeSeq != attempt.ackMark) {
+            finishRetry(attempt, true);
+        } else {}
+
+        // a value change is waiting for room in the window --> let executor push it now instead of at next heartbeat
+        if (changePending.compareAndSet(true, false)) {
+            try {
+                executor.execute(this::transmitChange);
+            } catch (RejectedExecutionException e) {
+                // executor was shut down --> transmission is over
+            }
+        } else {}
+    }
+
+    // method to retire in-flight frames whose ACKs have been published by Rx thread [executor thread only]
+    private void drainAcks() {
+        long readSeq = ackReadSeq;
+        long writeSeq = ackWriteSeq;
+        while (readSeq != writeSeq) {
+            int slot = (int)(readSeq % ACK_RING_SIZE);
+            long arrival = ackArrivals[slot];
+            int index = findAckedFrame(ackSequences[slot]);
+            readSeq++;
+            if (index >= 0) {
+                byte frame = journalValue(index);
+                long submittedAt = windowSubmittedAt[index];
+                // only frames that were sent once give an unambiguous round trip sample (Karn's algorithm)
+                if (windowRetransmissions[index] == 0) {
+                    long rtt = arrival - windowSentAt[index];
+                    rttEstimator.addSample(rtt);
+                    smoothedRttNanos = rttEstimator.getSrttNanos();
+                    stats.recordRtt(rtt);
+                    stats.recordRto(rttEstimator.getRtoNanos());
+                    journal(arrival, CommJournal.ACK, frame, (int)TimeUnit.NANOSECONDS.toMicros(rtt));
+                } else {
+                    journal(arrival, CommJournal.ACK, frame, -1);
+                }
+                windowAcked[index] = true;
+                stats.recordFrameAcked();
+                updateStateOnAck(windowRetransmissions[index] == 0);
+                // a late ACK of an older frame must not roll the confirmed command back
+                int sequence = windowSequences[index];
+                if (confirmedSequence < 0 || (short)(sequence - confirmedSequence) > 0) {
+                    confirmedSequence = sequence;
+                    confirmCommand(windowCommands[index], submittedAt, arrival);
+                } else {}
+                // frames leave the window in order, an acked frame behind an unacked one waits for it
+                while (windowCount > 0 && windowAcked[windowHead]) {
+                    windowHead = (windowHead + 1) % WINDOW_SIZE;
+                    windowCount--;
+                }
+            } else { // stray ACK (ex. late ACK of an already retransmitted frame) --> ignore it
+                stats.recordStrayAck();
+                journal(arrival, CommJournal.STRAY_ACK, ACK_BYTE, 0);
+            }
+        }
+        // hand the consumed ring entries back to Rx thread
+        ackReadSeq = readSeq;
+        stats.recordInFlight(windowCount);
+    }
+
+    // method to find the in-flight frame an ACK belongs to, -1 if none [executor thread only]
+    private int findAckedFrame(int sequence) {
+        if (sequence == NO_SEQUENCE) {
+            // ACK byte carries no ID, but the link keeps bytes in order and MCU acks every byte it receives
+            // so each ACK belongs to the oldest in-flight frame
+            return (windowCount > 0) ? windowHead : -1;
+        } else {}
+        for (int i = 0; i < windowCount; i++) {
+            int index = (windowHead + i) % WINDOW_SIZE;
+            if (!windowAcked[index] && windowSequences[index] == sequence) {
+                return index;
+            } else {}
         }
+        return -1;
+    }
+
+    // method to report an acked command: every submitted command is reported, a heartbeat only if it changes the confirmed state [executor thread only]
+    private void confirmCommand(byte command, long submittedAt, long ackedAt) {
+        if (submittedAt != NOT_A_COMMAND || (command & 0xFF) != confirmedCommand) {
+            confirmedCommand = command & 0xFF;
+            lastConfirmedCommand = command & 0xFF;
+            CommandListener listener = commandListener;
+            if (listener != null) {
+                listener.onCommandConfirmed(command, (submittedAt != NOT_A_COMMAND) ? ackedAt - submittedAt : -1);
+            } else {}
+        } else {}
+    }
+
+    // method to put a new frame carrying the passed command (submitted at submittedAt, NOT_A_COMMAND for heartbeats) in flight [executor thread only]
+    // returns false if the window is full (frame is not sent)
+    private boolean sendNewFrame(byte data, long submittedAt) throws IOException {
+        if (windowCount == WINDOW_SIZE) {
+            return false;
+        } else {}
+
+        // set data byte ID to prepare for data transmission
+        byte legacyByte = MotorCommand.toLegacyByte(data);
+        byte dataByteWithID = (byte)(legacyByte | ((sentByteID & 0x07) << 5));
+        // increment byte ID for next transmittable byte
+        sentByteID++;
+
+        // send frame to MCU from the tail of the window
+        int tail = (windowHead + windowCount) % WINDOW_SIZE;
+        windowFrames[tail] = dataByteWithID;
+        windowCommands[tail] = toLinkCommand(data);
+        windowSequences[tail] = frameSequence & 0xFFFF;
+        frameSequence++;
+        sendFrameInternal(tail);
+
+        // register frame with its ACK deadline
+        long now = nanoClock.getAsLong();
+        windowSentAt[tail] = now;
+        windowAcked[tail] = false;
+        windowDeadlines[tail] = now + rttEstimator.getRtoNanos();
+        windowRetransmissions[tail] = 0;
+        windowSubmittedAt[tail] = submittedAt;
+        windowCount++;
+        stats.recordFrameSent();
+        stats.recordInFlight(windowCount);
+        journal(now, CommJournal.FRAME_SENT, journalValue(tail), windowCount);
+
+        return true;
+    }
+
+    // method to drop all in-flight frames (ACKs already received for them are dropped as well, and frames not written yet) [executor thread only]
+    private void clearWindow() {
+        txBatchLength = 0;
+        txBatchFrames = 0;
+        ackReadSeq = ackWriteSeq;
+        windowHead = 0;
+        windowCount = 0;
+        confirmedSequence = -1;
+        stats.recordInFlight(0);
+    }
+
+    // task that sends the last registered value of data byte to MCU if window has room [executor thread only]
+    // returns false if the frame could not be put in flight
+    private boolean transmitLatest() {
+        return transmitLatest(NOT_A_COMMAND);
+    }
+
+    private boolean transmitLatest(long submittedAt) {
+        // if communication is alive && thread is not interrupted
+        if (!Thread.currentThread().isInterrupted() && !communicationFailed && !negotiating) {
+            try {
+                // make room for the new frame with whatever has been acked so far
+                drainAcks();
+                return sendNewFrame(lastSentByte, submittedAt);
+            } catch (Exception e) {
+                // in case an exception has happened, call this method
+                handleFailure();
+            }
+        } else {}
+        return false;
+    }
+
+    // task that puts queued commands in flight while the window has room [executor thread only]
+    // returns false if commands are still waiting
+    private boolean transmitQueued() {
+        // if communication is alive && thread is not interrupted
+        if (!Thread.currentThread().isInterrupted() && !communicationFailed && !negotiating) {
+            try {
+                // make room for the new frames with whatever has been acked so far
+                drainAcks();
+                while (windowCount < WINDOW_SIZE) {
+                    int command = commandQueue.poll();
+                    if (command == CommandQueue.NONE) {
+                        return true;
+                    } else {}
+                    sendNewFrame((byte)command, commandQueue.getPolledSubmittedAt());
+                }
+                return commandQueue.isEmpty();
+            } catch (Exception e) {
+                // in case an exception has happened, call this method
+                handleFailure();
+            }
+        } else {}
+        return false;
+    }
+
+    // task that pushes queued commands and brings the heartbeat back to its fastest rate [executor thread only]
+    private void transmitChange() {
+        if (!transmitQueued() && !communicationFailed && !negotiating) {
+            // window is full --> Rx thread pushes the rest as soon as a frame is acked
+            changePending.set(true);
+        } else {}
+        heartbeatPeriodicity = TX_PERIODICITY;
+        scheduleHeartbeat();
+    }
+
+    // task that keeps MCU fed with the last value, slowing down while the value stays the same [executor thread only]
+    private void heartbeat() {
+        // commands still waiting for room go first, otherwise the last value is sent again
+        if (commandQueue.isEmpty()) {
+            transmitLatest();
+        } else {
+            transmitQueued();
+        }
+        heartbeatPeriodicity = Math.min(heartbeatPeriodicity * 2, MAX_HEARTBEAT_PERIODICITY);
+        scheduleHeartbeat();
+    }
+
+    // method to (re)arm the next heartbeat after the current heartbeat period [executor thread only]
+    private void scheduleHeartbeat() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        } else {}
+        try {
+            heartbeatTask = executor.schedule(this::heartbeat, heartbeatPeriodicity, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // executor was shut down --> transmission is over
+        }
+    }
+
+    // task that retransmits in-flight frames whose ACK deadline has expired [executor thread only]
+    private void retransmitExpired() {
+        // if communication is alive && thread is not interrupted
+        if (!Thread.currentThread().isInterrupted() && !communicationFailed && !negotiating) {
+            try {
+                // frames acked in the meantime must not be retransmitted
+                drainAcks();
+                long now = nanoClock.getAsLong();
+                // RTO is backed off once per pass no matter how many frames expired together
+                boolean backedOff = false;
+                // walk the window from oldest to newest frame
+                for (int i = 0; i < windowCount; i++) {
+                    int index = (windowHead + i) % WINDOW_SIZE;
+                    // frame acked ahead of an older one is only waiting to leave the window
+                    if (!windowAcked[index] && windowDeadlines[index] - now <= 0) {
+                        // frame has run out of retransmissions --> handle communication timeout
+                        if (windowRetransmissions[index] >= MAX_RETRANSMISSIONS) {
+                            handleTimeout();
+                            break;
+                        } else {}
+                        // a lost ACK means the link is slower than estimated --> back off before resending
+                        if (!backedOff) {
+                            cleanAcks = 0;
+                            moveConnectionState(ConnectionState.CONNECTED, ConnectionState.DEGRADED);
+                            rttEstimator.backoff();
+                            stats.recordRto(rttEstimator.getRtoNanos());
+                            backedOff = true;
+                        } else {}
+                        stats.recordRetransmission();
+                        // resend the same frame (same ID) so MCU can tell it apart from a new command
+                        sendFrameInternal(index);
+                        windowRetransmissions[index]++;
+                        windowSentAt[index] = now;
+                        journal(now, CommJournal.FRAME_RETRANSMITTED, journalValue(index), windowRetransmissions[index]);
+                        windowDeadlines[index] = now + rttEstimator.getRtoNanos();
+                    } else {}
+                }
+            } catch (Exception e) {
+                // in case an exception has happened, call this method
+                handleFailure();
+            }
+        } else {}
     }
     
     // method called from app to start transmission
     public void startPeriodicTransmission(Runnable failureCallback) {
 	    // set failure callback function to the passed runnable
         this.onFailureCallback = failureCallback;
-        
-        // creating a new anonymous inner runnable class (logic of the task that will be executed by the created thread) and passing it to executor (scheduler)
-        executor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-	        // if communication is alive && thread is not interrupted
-                if (!Thread.currentThread().isInterrupted() && !communicationFailed) {
-                    try {
-                    	// beginning of critical section (lock is acquired)
-                        lock.lock();
-                        // critical section must be surrounded by a try...finally to make sure lock is released 
-                        try {
-                            // set data byte ID to prepare for data transmission
-                            byte dataByteWithID = (byte)(lastSentByte | ((sentByteID & 0x07) << 5));
-                            // increment byte ID for next transmittable byte
-                            sentByteID++;
-                            // send the last registered value of data byte to MCU
-                            sendByteInternal(dataByteWithID);
-                            // raise waitingForAck flag to indicate waiting for ack after sending data byte
-                            waitingForAck = true;
-                            // communication deadline is set to TX_PERIODICITY ms
-                            long deadline = System.currentTimeMillis() + TX_PERIODICITY;
-                            // as long as waitingForAck flag is raised,
-                            while (waitingForAck) {
-                            	// keep track of periodicity deadline
-                                long remaining = deadline - System.currentTimeMillis();
-                                // if TX_PERIODICITY ms have passed --> handle communication timeout
-                                if (remaining <= 0) {
-                                    handleTimeout();
-                                    break;
-                                }
-                                // thread must wait for ackReceivedCondition condition to happen for remaining ms time
-                                ackReceivedCondition.await(remaining, TimeUnit.MILLISECONDS);
-                            }
-                        } finally {
-                            // end of critical section (lock is released)
-                            lock.unlock();
-                        }
-                    } catch (InterruptedException e) {
-                    	// interrupt thread to handle graceful thread termination
-                        Thread.currentThread().interrupt();
-                    } catch (Exception e) {
-                    	// in case an exception has happened, call this method
-                        handleFailure();
-                    }
-                } else {}
+
+        // (re)arm tasks on executor thread, which owns the heartbeat state
+        executor.execute(() -> {
+            // cancel tasks of a previous start (ex. after a manual retry) so they do not run twice
+            if (retransmitTask != null) {
+                retransmitTask.cancel(false);
+            } else {}
+
+            // heartbeat: send the last value now (it supersedes anything queued), then keep MCU fed (never blocks waiting for an ACK)
+            heartbeatPeriodicity = TX_PERIODICITY;
+            commandQueue.clear();
+            transmitLatest(nanoClock.getAsLong());
+            scheduleHeartbeat();
+
+            // retransmission: resend only the frames whose ACK did not arrive in time
+            retransmitTask = executor.scheduleWithFixedDelay(this::retransmitExpired, RETRANSMIT_CHECK_PERIODICITY, RETRANSMIT_CHECK_PERIODICITY, TimeUnit.MILLISECONDS);
+        });
+        transmissionStarted = true;
+    }
+
+    // method to send an in-flight frame in the protocol of the link, it is added to the Tx batch [executor thread only]
+    private void sendFrameInternal(int index) throws IOException {
+        byte command = windowCommands[index];
+        int length;
+        if (linkMode == LINK_FRAMED) {
+            // MCU gets the full resolution speed, ID bits are replaced by the frame sequence number
+            length = FrameCodec.encodeCommand(windowSequences[index], MotorCommand.speedOf(command), MotorCommand.isClockwise(command), txBuffer);
+        } else {
+            txBuffer[0] = windowFrames[index];
+            length = 1;
+        }
+        System.arraycopy(txBuffer, 0, txBatch, txBatchLength, length);
+        txBatchLength += length;
+        txBatchFrames++;
+
+        // a stop must not wait for the window, nor a frame that fills the batch
+        if (MotorCommand.isStop(command) || txBatchFrames == TX_BATCH_FRAMES) {
+            flushTx();
+        } else if (!txFlushScheduled) {
+            // first frame of the batch opens the window (0 --> flush runs right after the current task)
+            long windowMicros = txBatchWindowMicros;
+            if (windowMicros > 0) {
+                executor.schedule(this::flushScheduled, windowMicros, TimeUnit.MICROSECONDS);
+            } else {
+                executor.execute(this::flushScheduled);
             }
-        }, 0, TX_PERIODICITY, TimeUnit.MILLISECONDS);
+            txFlushScheduled = true;
+        } else {}
     }
 
-    // method to wrap send data byte functionality of jSerialComm class
-    private void sendByteInternal(byte data) throws IOException {
-        if (outputStream != null) {
-            // write data on output stream (send it)
-	        outputStream.writeByte(data);
-	        // clear stream buffer
-            outputStream.flush();
+    // method to write every frame of the Tx batch in one transport write [executor thread only]
+    private void flushTx() throws IOException {
+        if (txBatchFrames == 0) {
+            return;
         } else {}
+        int length = txBatchLength;
+        int frames = txBatchFrames;
+        txBatchLength = 0;
+        txBatchFrames = 0;
+        transport.write(txBatch, 0, length);
+        stats.recordFlush(frames);
     }
 
-    // method to handle timeout events during send/receive cycles [may fuse it with handleFailure]
-    private void handleTimeout() {
-	    // beginning of critical section (acquire lock)
-        lock.lock();
-	    // critical sections must be surrounded by a try...finally to make sure lock is released
+    // task that writes the Tx batch once its window is over [executor thread only]
+    private void flushScheduled() {
+        txFlushScheduled = false;
         try {
-	        // raise failed communication flag
-            communicationFailed = true;
-	        // thread is no longer waiting for an ack
-            waitingForAck = false;
-	        // execute passed callback function in GUI thread
-            Platform.runLater(() -> onFailureCallback.run());
-        } finally {
-	        // end of critical section (release lock)
-            lock.unlock();
+            flushTx();
+        } catch (Exception e) {
+            // frames are in the window already, so a lost write is handled like one that failed right away
+            if (!communicationFailed) {
+                handleFailure();
+            } else {}
         }
     }
 
-    // method to handle exceptions raised during transmission [may fuse it with handleTimeout]
+    // method to set how long frames are gathered before they are written together (in us, 0 --> until the executor task that
+    // sent them is done), a longer window means fewer writes but every frame (so the measured round trip) waits up to that long
+    public void setTxBatchWindow(long micros) {
+        txBatchWindowMicros = Math.max(0, micros);
+    }
+
+    public long getTxBatchWindow() {
+        return txBatchWindowMicros;
+    }
+
+    // method to handle timeout events during send/receive cycles [executor thread only]
+    private void handleTimeout() {
+        stats.recordTimeout();
+        journal(CommJournal.TIMEOUT, lastSentByte, 0);
+        // raise failed communication flag
+        communicationFailed = true;
+        // no frame is waiting for an ack anymore && MCU state is unknown
+        clearWindow();
+        commandQueue.clear();
+        confirmedCommand = -1;
+        fallBackToLegacyBaudRate();
+        setConnectionState(ConnectionState.LOST);
+        // execute passed callback function (it is up to the callback to hop on the GUI thread)
+        notifyFailure();
+    }
+
+    // method to handle exceptions raised during transmission [executor thread only]
     private void handleFailure() {
-	    // beginning of critical section (acquire lock)
-        lock.lock();
-	    // critical sections must be surrounded by a try...finally to make sure lock is released
-        try {
-	        // raise failed communication flag
-            communicationFailed = true;
-	        // execute passed callback function in GUI thread
-            Platform.runLater(() -> onFailureCallback.run());
-        } finally {
-	        // end of critical section (release lock)
-            lock.unlock();
-        }
+        journal(CommJournal.FAILURE, lastSentByte, 0);
+        // raise failed communication flag
+        communicationFailed = true;
+        // in-flight frames are dropped && MCU state is unknown
+        clearWindow();
+        commandQueue.clear();
+        confirmedCommand = -1;
+        fallBackToLegacyBaudRate();
+        setConnectionState(ConnectionState.LOST);
+        // execute passed callback function (it is up to the callback to hop on the GUI thread)
+        notifyFailure();
+    }
+
+    // method to go back to 9600 bps after a failure on a faster framed link: a silent MCU falls back to 9600 on its own
+    // (and a rebooted one starts there), so retries reach it once it does, negotiateLink brings the faster rate back
+    private void fallBackToLegacyBaudRate() {
+        int baudRate = transport.getBaudRate();
+        if (linkMode == LINK_FRAMED && baudRate > 0 && baudRate != LEGACY_BAUD_RATE) {
+            transport.setBaudRate(LEGACY_BAUD_RATE);
+        } else {}
+    }
+
+    // method to run failure callback if one has been registered
+    private void notifyFailure() {
+        if (onFailureCallback != null) {
+            onFailureCallback.run();
+        } else {}
     }
 
     // method to stop data transmission
     public void stopTransmission() {
+        transmissionStarted = false;
         if (executor != null) {
 	        // shutdown thread managed by scheduled executor
             executor.shutdownNow();
@@ -294,45 +977,367 @@ public class SerialCommManager {
         communicationFailed = false;
     }
     
-    public boolean manualRetry() {
-    lock.lock();
-    try {
-        communicationFailed = false;
-        waitingForAck = false;
+    // method to move the link to the framed protocol at the fastest line rate both ends support, blocks the caller
+    // (~0.3 s against a legacy MCU, ~0.6 s when the rate changes, ~4 s if the new rate turns out not to work)
+    // returns true if the link is framed, false if MCU did not answer and the legacy protocol is kept
+    public boolean negotiateLink() {
+        return negotiateLink(BAUD_CANDIDATES);
+    }
 
-        byte dataByteWithID = (byte) (lastSentByte | ((sentByteID & 0x07) << 5));
-        sentByteID++;
-        sendByteInternal(dataByteWithID);
-        waitingForAck = true;
-
-        long deadline = System.currentTimeMillis() + TX_PERIODICITY;
-        while (waitingForAck) {
-            long remaining = deadline - System.currentTimeMillis();
-            if (remaining <= 0) {
-                handleTimeout();
+    // method to negotiate the link offering the passed line rates (best first) instead of the standard ones
+    // (ex. only the rate the link settled on last time, see PortCache)
+    public boolean negotiateLink(int[] baudCandidates) {
+        if (executor == null || executor.isShutdown()) {
+            return false;
+        } else {}
+
+        negotiating = true;
+        try {
+            // wait for a task that may be sending right now, then drop in-flight frames (their ACKs would not match anymore)
+            executor.submit(this::clearWindow).get();
+            linkMode = LINK_HANDSHAKE;
+
+            // every byte of a HELLO is a clockwise stop for a legacy MCU, which acks them and never replies (see FrameCodec.encodeHello)
+            int baudRate = transport.getBaudRate();
+            int[] reply = hello((baudRate > 0) ? baudCandidates : new int[0]);
+            if (reply == null) {
+                linkMode = LINK_LEGACY;
                 return false;
+            } else {}
+
+            // MCU switches after its reply is out, a HELLO at the new rate checks that both ends hear each other
+            int chosenBaudRate = reply[1];
+            if (baudRate > 0 && chosenBaudRate != baudRate) {
+                boolean switched = transport.setBaudRate(chosenBaudRate);
+                Thread.sleep(BAUD_SWITCH_SETTLE);
+                if (!switched || hello(new int[0]) == null) {
+                    // rate does not work on this adapter/cable --> wait for MCU to fall back to 9600 and settle there
+                    transport.setBaudRate(LEGACY_BAUD_RATE);
+                    Thread.sleep(MCU_SILENCE_FALLBACK);
+                    if (hello(new int[0]) == null) {
+                        linkMode = LINK_LEGACY;
+                        return false;
+                    } else {}
+                } else {}
+            } else {}
+            linkMode = LINK_FRAMED;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            linkMode = LINK_LEGACY;
+            return false;
+        } catch (ExecutionException | RejectedExecutionException e) {
+            linkMode = LINK_LEGACY;
+            return false;
+        } finally {
+            negotiating = false;
+            journalLink();
+            // a running transmission picks up right away in the new protocol
+            if (transmissionStarted) {
+                try {
+                    executor.execute(this::transmitChange);
+                } catch (RejectedExecutionException e) {
+                    // executor was shut down --> transmission is over
+                }
+            } else {}
+        }
+    }
+
+    // method to send a HELLO offering the passed line rates (none --> keep the current one) and wait for the reply,
+    // returns { version, baud rate } or null if MCU did not answer [caller of negotiateLink only]
+    private int[] hello(int[] baudCandidates) throws InterruptedException {
+        byte[] frame = new byte[FrameCodec.MAX_FRAME_SIZE];
+        int length;
+        try {
+            length = FrameCodec.encodeHello(baudCandidates, frame);
+        } catch (IllegalArgumentException e) {
+            return null; // rates cannot be offered without spinning a legacy motor, the link stays legacy
+        }
+
+        CompletableFuture<int[]> reply = new CompletableFuture<>();
+        pendingHello = reply;
+        try {
+            transport.write(frame, 0, length);
+            return reply.get(HELLO_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return null;
+        } finally {
+            pendingHello = null;
+        }
+    }
+
+    // method to get the protocol version spoken on the link (0 --> legacy single byte frames)
+    public int getProtocolVersion() {
+        return (linkMode == LINK_FRAMED) ? FrameCodec.VERSION : 0;
+    }
+
+    // method to get the current line rate of the link in bps (0 --> link has none, ex. simulated)
+    public int getBaudRate() {
+        return transport.getBaudRate();
+    }
+
+    // method to send a single frame and block until it is acked (used to check if MCU is back after a failure)
+    public boolean manualRetry() {
+        try {
+            return manualRetryAsync().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            return false;
+        }
+    }
+
+    // method to send a single frame without waiting, returned future completes with true once it is acked
+    // or with false after TX_PERIODICITY ms (deadline runs on the executor, so it follows a virtual clock as well)
+    public CompletableFuture<Boolean> manualRetryAsync() {
+        RetryAttempt attempt = new RetryAttempt();
+        try {
+            // frame is sent by executor thread (owner of the window), Rx thread completes the attempt when its ACK arrives
+            executor.execute(() -> {
+                communicationFailed = false;
+                setConnectionState(ConnectionState.RECOVERING);
+                // start from an empty window so the next ACK belongs to the retry frame (last value supersedes queued commands)
+                clearWindow();
+                commandQueue.clear();
+                attempt.ackMark = ackWriteSeq;
+                pendingRetry = attempt;
+                try {
+                    sendNewFrame(lastSentByte, nanoClock.getAsLong());
+                    executor.schedule(() -> finishRetry(attempt, false), TX_PERIODICITY, TimeUnit.MILLISECONDS);
+                } catch (IOException | RejectedExecutionException ex) {
+                    finishRetry(attempt, false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            finishRetry(attempt, false);
+        }
+        return attempt.result;
+    }
+
+    // method to settle a manual retry, only the first outcome counts (ACK on Rx thread vs deadline on executor thread)
+    private void finishRetry(RetryAttempt attempt, boolean acked) {
+        if (attempt.result.complete(acked)) {
+            if (pendingRetry == attempt) {
+                pendingRetry = null;
+            } else {}
+            // failed retry is reported like any other timeout (window is cleared by the next retry)
+            if (!acked) {
+                stats.recordTimeout();
+                journal(CommJournal.TIMEOUT, lastSentByte, 1);
+                communicationFailed = true;
+                confirmedCommand = -1;
+                setConnectionState(ConnectionState.LOST);
+                notifyFailure();
+            } else {
+                // MCU is back even if transmission is not restarted (ex. motor is OFF)
+                moveConnectionState(ConnectionState.RECOVERING, ConnectionState.CONNECTED);
             }
-            ackReceivedCondition.await(remaining, TimeUnit.MILLISECONDS);
+        } else {}
+    }
+
+    // method to update the link state on an acked frame: any ACK ends LOST/RECOVERING, DEGRADED ends
+    // after CLEAN_ACKS_TO_RECOVER ACKs of frames that did not need a retransmission [executor thread only]
+    private void updateStateOnAck(boolean clean) {
+        ConnectionState state = connectionState.get();
+        if (state == ConnectionState.CONNECTED) {
+            return;
+        } else if (state == ConnectionState.DEGRADED) {
+            if (clean && ++cleanAcks >= CLEAN_ACKS_TO_RECOVER) {
+                moveConnectionState(ConnectionState.DEGRADED, ConnectionState.CONNECTED);
+            } else {}
+        } else {
+            moveConnectionState(state, ConnectionState.CONNECTED);
         }
-        return true; // ACK received
-    } catch (InterruptedException | IOException ex) {
-        handleFailure();
-        return false;
-    } finally {
-        lock.unlock();
     }
-}
+
+    // method to move the link to a state whatever state it is in (any thread)
+    private void setConnectionState(ConnectionState state) {
+        if (connectionState.getAndSet(state) != state) {
+            notifyStateChanged(state);
+        } else {}
+    }
+
+    // method to move the link to a state only if it is still in the expected one (any thread, Rx && executor threads race here)
+    private void moveConnectionState(ConnectionState expected, ConnectionState state) {
+        if (expected != state && connectionState.compareAndSet(expected, state)) {
+            notifyStateChanged(state);
+        } else {}
+    }
+
+    private void notifyStateChanged(ConnectionState state) {
+        StateListener listener = stateListener;
+        if (listener != null) {
+            listener.onConnectionStateChanged(state);
+        } else {}
+    }
+
+    // method to get the telemetry received from MCU (sample times are nanoClock based, nothing arrives on a legacy link)
+    public TelemetrySeries getTelemetry() {
+        return telemetry;
+    }
+
+    // method to get link statistics of this manager
+    public CommStats getStats() {
+        return stats;
+    }
+
+    // method to get the smoothed ACK round trip (in ns, 0 if no frame has been acked yet)
+    public long getSmoothedRttNanos() {
+        return smoothedRttNanos;
+    }
+
+    // method to register stats as MotorControl:type=SerialCommStats,port="<port name>" (a stale registration of the same port is replaced)
+    private void registerStatsMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("MotorControl:type=SerialCommStats,port=" + ObjectName.quote(transport.getName()));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            } else {}
+            server.registerMBean(stats, name);
+            statsMBeanName = name;
+        } catch (JMException e) {
+            // stats are still available through getStats()
+        }
+    }
+
+    // method to remove stats from JMX
+    private void unregisterStatsMBean() {
+        if (statsMBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsMBeanName);
+            } catch (JMException e) {
+                // already gone
+            }
+            statsMBeanName = null;
+        } else {}
+    }
+
+    // method to start recording this device in a journal (registers the device name in it)
+    public void setJournal(CommJournal journal) {
+        journalDeviceId = journal.registerDevice(transport.getName());
+        this.journal = journal;
+        journalLink();
+    }
+
+    // method to journal the protocol version && line rate the link currently runs at (a replay negotiates the same link)
+    private void journalLink() {
+        journal(CommJournal.LINK, (byte)getProtocolVersion(), transport.getBaudRate());
+    }
+
+    // method to get the journal value of an in-flight frame: the command on a framed link, the legacy data byte with its ID
+    // otherwise [executor thread only]
+    private byte journalValue(int index) {
+        return (linkMode == LINK_FRAMED) ? windowCommands[index] : windowFrames[index];
+    }
+
+    // methods to append a record to the journal (if any)
+    private void journal(byte type, byte value, int aux) {
+        journal(nanoClock.getAsLong(), type, value, aux);
+    }
+
+    private void journal(long timestampNanos, byte type, byte value, int aux) {
+        CommJournal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.append(timestampNanos, type, value, journalDeviceId, aux);
+        } else {}
+    }
+
+    // method to register the listener told about acked commands (called on a manager thread, it is up to the listener to hop on the GUI thread)
+    public void setCommandListener(CommandListener listener) {
+        commandListener = listener;
+    }
+
+    public CommandListener getCommandListener() {
+        return commandListener;
+    }
+
+    // method to register the listener told about link state changes (see ConnectionEvents for a debounced stream of them)
+    public void setStateListener(StateListener listener) {
+        stateListener = listener;
+    }
+
+    // method to get the state of the link, null if MCU never acked a frame
+    public ConnectionState getConnectionState() {
+        return connectionState.get();
+    }
+
+    // method to get the last command acked by MCU (see MotorCommand, as MCU applies it), -1 if none since start or last failure
+    public int getConfirmedCommand() {
+        return confirmedCommand;
+    }
+
+    // method to get the last command MCU acked before the current failure (see MotorCommand), -1 if it never acked one
+    public int getLastConfirmedCommand() {
+        return lastConfirmedCommand;
+    }
+
+    // method to get the last requested command (see MotorCommand, the target of a running ramp)
+    public byte getRequestedCommand() {
+        return requestedCommand;
+    }
+
+    // method to get a command as MCU on this link applies it: full resolution on a framed link,
+    // the nearest legacy speed (see MotorCommand.toLegacyByte) on a legacy one
+    public byte toLinkCommand(byte command) {
+        if (linkMode == LINK_FRAMED) {
+            return command;
+        } else {}
+        byte legacyByte = MotorCommand.toLegacyByte(command);
+        return MotorCommand.percent(MotorCommand.legacyToPercentage(legacyByte), MotorCommand.isLegacyClockwise(legacyByte));
+    }
+
+    // method to check if communication with MCU is currently considered lost
+    public boolean isCommunicationFailed() {
+        return communicationFailed;
+    }
+
+    // method to check if periodic transmission is running
+    public boolean isTransmissionStarted() {
+        return transmissionStarted;
+    }
+
+    // method to get the name of the underlying link (ex. /dev/ttyUSB0)
+    public String getPortName() {
+        return transport.getName();
+    }
+
+    // method to move this manager to another transport (ex. USB adapter came back under a new name), returns false if it could not be opened
+    // meant for a failed link: in-flight frames of the old transport are dropped by the next (manual) retry.
+    // the same port is reopened as well (ex. adapter re-enumerated under its old name), then the old handle is released first
+    // since ports are opened exclusively, and a failed open leaves the link closed until the next replacement
+    public synchronized boolean replaceTransport(SerialTransport newTransport) {
+        SerialTransport oldTransport = transport;
+        boolean samePort = newTransport.getName().equals(oldTransport.getName());
+        if (samePort) {
+            oldTransport.setReceiveListener(null);
+            oldTransport.close();
+        } else {}
+        if (!newTransport.open()) {
+            return false;
+        } else {}
+        if (!samePort) {
+            oldTransport.setReceiveListener(null);
+            oldTransport.close();
+        } else {}
+
+        // stats follow the new port name in JMX, journal keeps recording under the same device id
+        unregisterStatsMBean();
+        transport = newTransport;
+        newTransport.setReceiveListener(this::onBytesReceived);
+        registerStatsMBean();
+        return true;
+    }
 
     // method to stop transmission, remove Rx data listener, and close the serial port
-    public void close() {
+    public synchronized void close() {
     	// stop transmission
         stopTransmission();
-        // if port is still open,
-        if (serialPort != null && serialPort.isOpen()) {
-            // close Rx data listener
-            serialPort.removeDataListener();
-            // close serial port
-            serialPort.closePort();
-        } else {}
+        // remove stats from JMX
+        unregisterStatsMBean();
+        // remove Rx listener && close transport
+        transport.setReceiveListener(null);
+        transport.close();
     }
 }
@@ -0,0 +1,211 @@
+// for executor interfaces && futures
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+// for the flag telling whether a drain of the queue is already running
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ScheduledExecutorService that runs its tasks one at a time (in submission order) on top of a shared pool
+// so many devices can share a few threads while each SerialCommManager still sees a single-threaded executor
+public class SerialScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    // defining the max number of tasks run in one go before the pool thread is handed to other devices
+    private static final int MAX_TASKS_PER_DRAIN = 32;
+
+    // defining a reference to the pool (and timer) shared with other devices
+    private final ScheduledExecutorService sharedScheduler;
+
+    // defining the queue of tasks waiting to run
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    // defining a flag raised while a pool thread is draining the queue (guarantees one task at a time)
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    // defining a flag to indicate that no new task is accepted anymore
+    private volatile boolean shutdown = false;
+
+    // SerialScheduler constructor takes the pool shared by all devices
+    public SerialScheduler(ScheduledExecutorService sharedScheduler) {
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        } else {}
+        tasks.add(command);
+        scheduleDrain();
+    }
+
+    // method to hand the queue to a pool thread unless one is already on it
+    private void scheduleDrain() {
+        if (!tasks.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                sharedScheduler.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // shared pool is gone --> nothing will ever run again
+                draining.set(false);
+                shutdownNow();
+            }
+        } else {}
+    }
+
+    // method run by a pool thread to execute queued tasks in order
+    private void drain() {
+        try {
+            Runnable task;
+            int taskCount = 0;
+            while (taskCount < MAX_TASKS_PER_DRAIN && (task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // a failing task must not stop the tasks behind it
+                }
+                taskCount++;
+            }
+        } finally {
+            draining.set(false);
+            if (!tasks.isEmpty()) {
+                // more work (or a task added while draining) --> go again
+                scheduleDrain();
+            } else {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    // method used by timers: queue the task unless scheduler has been shut down in the meantime
+    private void executeIfRunning(Runnable command) {
+        if (!shutdown) {
+            try {
+                execute(command);
+            } catch (RejectedExecutionException e) {
+                // shut down in between --> drop it
+            }
+        } else {}
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        // timer lives in the shared pool, the task itself runs in this scheduler's order
+        FutureTask<V> task = new FutureTask<>(callable);
+        ScheduledFuture<?> timer = sharedScheduler.schedule(() -> executeIfRunning(task), delay, unit);
+        return new ScheduledTask<>(task, timer);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return sharedScheduler.scheduleAtFixedRate(periodic(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return sharedScheduler.scheduleWithFixedDelay(periodic(command), initialDelay, delay, unit);
+    }
+
+    // method to wrap a periodic task so its timer dies with this scheduler
+    private Runnable periodic(Runnable command) {
+        return () -> {
+            if (shutdown) {
+                // an exception is the only way for a periodic task to cancel itself in ScheduledThreadPoolExecutor
+                throw new CancellationException("Scheduler has been shut down");
+            } else {}
+            executeIfRunning(command);
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            pending.add(task);
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !draining.get() && tasks.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            } else {}
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    // ScheduledFuture made of the task (result) and its timer in the shared pool (delay && cancellation)
+    private static class ScheduledTask<V> implements ScheduledFuture<V> {
+        private final FutureTask<V> task;
+        private final ScheduledFuture<?> timer;
+
+        ScheduledTask(FutureTask<V> task, ScheduledFuture<?> timer) {
+            this.task = task;
+            this.timer = timer;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return timer.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            timer.cancel(false);
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// for catching IO exceptions
+import java.io.IOException;
+
+// interface that hides where the bytes of SerialCommManager actually go (real serial port, simulated MCU, ...)
+public interface SerialTransport {
+
+    // callback interface used by a transport to hand received bytes to its user
+    interface ReceiveListener {
+        // called from the transport's own Rx thread, buffer content is only valid during the call
+        void onBytesReceived(byte[] buffer, int length);
+    }
+
+    // method to open the underlying link, returns false if it could not be opened
+    boolean open();
+
+    // method to check if the link is currently open
+    boolean isOpen();
+
+    // method to register the (single) listener that receives all incoming bytes
+    void setReceiveListener(ReceiveListener listener);
+
+    // method to send length bytes of data starting at offset (blocks until they are handed to the link)
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    // method to remove the listener and close the link
+    void close();
+
+    // method to get a human readable name of the link (ex. /dev/ttyUSB0)
+    String getName();
+
+    // method to get the current line rate in bps (0 --> link has no line rate to speak of)
+    default int getBaudRate() {
+        return 0;
+    }
+
+    // method to change the line rate of an open link, returns false if the link cannot change it
+    default boolean setBaudRate(int baudRate) {
+        return false;
+    }
+}
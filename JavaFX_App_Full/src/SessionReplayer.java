@@ -0,0 +1,442 @@
+// for reading the recorded journal && printing the report
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+// for virtual time units && pacing the replay against the wall clock
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// replays a session recorded in a CommJournal through the real SerialCommManager against a simulated MCU:
+// recorded setpoints are pushed at their recorded times, the n-th frame written during the replay gets the fate
+// (ACK latency or loss) of the n-th frame written in the recording, and a failure is retried when the operator retried it.
+// a session recorded on a framed link is replayed against framed firmware after negotiating the recorded line rate.
+// everything runs in virtual time on one thread (the handshake on a second one, see Replay.negotiate), so a replay gives
+// the same result at any speed
+// usage: java -cp build SessionReplayer <journal dir> [--session <id>] [--device <id>] [--speed <factor> | --max]
+public class SessionReplayer {
+
+    // defining how long the replay keeps running after the last record of the device (in ms) so in-flight frames settle
+    private static final int TAIL_MILLIS = 1000;
+
+    // defining the ACK latency handed out once recorded frame fates run out (in us)
+    private static final int DEFAULT_LATENCY_MICROS = 2000;
+
+    // defining how far ahead of the virtual clock the handshake runs MCU work (in ms), later work (ex. telemetry) waits for the replay
+    private static final int HANDSHAKE_STEP_MILLIS = 50;
+
+    // latency model handing out recorded frame fates in recording order, less the wire time the simulated MCU adds itself
+    private static class RecordedLatencyModel implements SimulatedMcuTransport.LatencyModel {
+        private final long[] latencies;
+        private final int count;
+        private final long fallbackNanos;
+        private final long wireNanos;
+        private int next = 0;
+        // HELLOs of the handshake were not journaled --> they get the fallback latency && no recorded fate
+        volatile boolean handshake = false;
+
+        RecordedLatencyModel(long[] latencies, int count, long fallbackNanos, long wireNanos) {
+            this.latencies = latencies;
+            this.count = count;
+            this.fallbackNanos = fallbackNanos;
+            this.wireNanos = wireNanos;
+        }
+
+        @Override
+        public long nextLatencyNanos(byte frame) {
+            if (handshake || next == count) {
+                return fallbackNanos;
+            } else {}
+            long latency = latencies[next++];
+            // frame lost --> stays lost
+            return (latency < 0) ? latency : Math.max(0, latency - wireNanos);
+        }
+    }
+
+    // outcome of a single replay
+    public static class Result {
+        public CommStats stats;
+        public int failures;
+        public int retries;
+        public long framesReceived;
+        public long framesDropped;
+        public long invalidIDs;
+        public long speedReversals;
+        public long virtualNanos;
+        public long wallNanos;
+    }
+
+    // defining the replayed session && device, and the device name found in devices.idx
+    private int session = -1;
+    private int device = -1;
+    private String deviceName;
+
+    // defining the time span of the device's records (journal timestamps, ns)
+    private long startNanos = Long.MAX_VALUE;
+    private long endNanos = Long.MIN_VALUE;
+
+    // defining the time transmission was started (first frame sent, Long.MAX_VALUE if it never was)
+    private long firstSendNanos = Long.MAX_VALUE;
+
+    // defining recorded setpoints (time && value)
+    private long[] setpointTimes = new long[64];
+    private byte[] setpointValues = new byte[64];
+    private int setpointCount = 0;
+
+    // defining the fate of every recorded frame (sent or retransmitted) in order: ACK latency in ns, -1 --> lost
+    private long[] frameLatencies = new long[256];
+    private int frameCount = 0;
+
+    // defining the latest recorded transmission of each frame byte (index && time), used to match ACKs to it on a legacy link
+    private final int[] lastTransmission = new int[256];
+    private final long[] lastTransmissionNanos = new long[256];
+
+    // defining the recorded transmissions of a framed link still waiting for their ACK, oldest first (index, command && time):
+    // framed frames are journaled with their command, which repeats, so an ACK goes to the oldest transmission of its command
+    private int[] pendingFrames = new int[16];
+    private byte[] pendingCommands = new byte[16];
+    private long[] pendingNanos = new long[16];
+    private int pendingCount = 0;
+
+    // defining the latest recorded link (protocol version && line rate), and the one transmission was started on
+    private int linkVersion = 0;
+    private int linkBaudRate = 0;
+    private int replayedLinkVersion = 0;
+    private int replayedBaudRate = 0;
+
+    // defining the times the operator retried after a failure (first frame sent after a timeout/failure)
+    private long[] retryTimes = new long[16];
+    private int retryCount = 0;
+    private boolean awaitingRetry = false;
+
+    // defining recorded counters to compare the replay against
+    private int recordedSent, recordedAcked, recordedRetransmitted, recordedTimeouts, recordedStrayAcks;
+
+    // SessionReplayer constructor loads one device of one session from a journal directory
+    // (session < 0 --> last session in the journal, device < 0 --> lowest device id of that session)
+    public SessionReplayer(File directory, int session, int device) throws IOException {
+        // first pass: pick session && device
+        int[] selection = { session, device };
+        if (session < 0) {
+            JournalReader.read(directory, (s, ts, wall, type, value, dev, aux) -> selection[0] = Math.max(selection[0], s));
+        } else {}
+        if (device < 0) {
+            JournalReader.read(directory, (s, ts, wall, type, value, dev, aux) -> {
+                if (s == selection[0] && (selection[1] < 0 || dev < selection[1])) {
+                    selection[1] = dev;
+                } else {}
+            });
+        } else {}
+        this.session = selection[0];
+        this.device = selection[1];
+
+        // second pass: collect the selected device's records
+        Arrays.fill(lastTransmission, -1);
+        JournalReader.read(directory, (s, ts, wall, type, value, dev, aux) -> {
+            if (s == this.session && dev == this.device) {
+                onRecord(ts, type, value, aux);
+            } else {}
+        });
+        if (startNanos == Long.MAX_VALUE) {
+            throw new IOException("No records for session " + this.session + " device " + this.device + " in " + directory);
+        } else {}
+
+        Map<String, String> names = JournalReader.readDeviceNames(directory);
+        deviceName = names.getOrDefault(this.session + " " + this.device, "device-" + this.device);
+    }
+
+    // method to take a single record of the replayed device into account
+    private void onRecord(long timestampNanos, byte type, byte value, int aux) {
+        startNanos = Math.min(startNanos, timestampNanos);
+        endNanos = Math.max(endNanos, timestampNanos);
+        int frame = value & 0xFF;
+
+        switch (type) {
+            case CommJournal.SETPOINT:
+                if (setpointCount == setpointTimes.length) {
+                    setpointTimes = Arrays.copyOf(setpointTimes, setpointCount * 2);
+                    setpointValues = Arrays.copyOf(setpointValues, setpointCount * 2);
+                } else {}
+                setpointTimes[setpointCount] = timestampNanos;
+                setpointValues[setpointCount] = value;
+                setpointCount++;
+                break;
+            case CommJournal.FRAME_SENT:
+            case CommJournal.FRAME_RETRANSMITTED:
+                if (type == CommJournal.FRAME_SENT) {
+                    recordedSent++;
+                    if (firstSendNanos == Long.MAX_VALUE) {
+                        firstSendNanos = timestampNanos;
+                        replayedLinkVersion = linkVersion;
+                        replayedBaudRate = linkBaudRate;
+                    } else {}
+                    // first frame after a failure is the operator's manual retry
+                    if (awaitingRetry) {
+                        if (retryCount == retryTimes.length) {
+                            retryTimes = Arrays.copyOf(retryTimes, retryCount * 2);
+                        } else {}
+                        retryTimes[retryCount++] = timestampNanos;
+                        awaitingRetry = false;
+                    } else {}
+                } else {
+                    recordedRetransmitted++;
+                }
+                // frame counts as lost until an ACK is matched to it
+                if (frameCount == frameLatencies.length) {
+                    frameLatencies = Arrays.copyOf(frameLatencies, frameCount * 2);
+                } else {}
+                frameLatencies[frameCount] = -1;
+                if (linkVersion != 0) {
+                    // retransmission takes the place of the oldest waiting transmission of its command, which stays lost
+                    int pending = findPending(value);
+                    if (type == CommJournal.FRAME_RETRANSMITTED && pending >= 0) {
+                        pendingFrames[pending] = frameCount;
+                        pendingNanos[pending] = timestampNanos;
+                    } else {
+                        addPending(frameCount, value, timestampNanos);
+                    }
+                } else {
+                    lastTransmission[frame] = frameCount;
+                    lastTransmissionNanos[frame] = timestampNanos;
+                }
+                frameCount++;
+                break;
+            case CommJournal.ACK:
+                recordedAcked++;
+                if (linkVersion != 0) {
+                    int pending = findPending(value);
+                    if (pending >= 0) {
+                        frameLatencies[pendingFrames[pending]] = timestampNanos - pendingNanos[pending];
+                        removePending(pending);
+                    } else {}
+                } else if (lastTransmission[frame] >= 0) {
+                    // ACK goes to the latest transmission of the frame, earlier copies stay lost
+                    frameLatencies[lastTransmission[frame]] = timestampNanos - lastTransmissionNanos[frame];
+                    lastTransmission[frame] = -1;
+                } else {}
+                break;
+            case CommJournal.STRAY_ACK:
+                recordedStrayAcks++;
+                break;
+            case CommJournal.TIMEOUT:
+            case CommJournal.FAILURE:
+                if (type == CommJournal.TIMEOUT) {
+                    recordedTimeouts++;
+                } else {}
+                awaitingRetry = true;
+                // window was cleared, nothing in it gets an ACK anymore
+                pendingCount = 0;
+                break;
+            case CommJournal.LINK:
+                linkVersion = value & 0xFF;
+                // a framed link without a line rate (ex. simulated) is replayed at the rate a link starts at
+                linkBaudRate = (aux > 0) ? aux : SerialCommManager.LEGACY_BAUD_RATE;
+                pendingCount = 0;
+                break;
+            default:
+                break;
+        }
+    }
+
+    // method to find the oldest recorded framed transmission of the command still waiting for its ACK (-1 --> none)
+    private int findPending(byte command) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingCommands[i] == command) {
+                return i;
+            } else {}
+        }
+        return -1;
+    }
+
+    private void addPending(int index, byte command, long timestampNanos) {
+        if (pendingCount == pendingFrames.length) {
+            pendingFrames = Arrays.copyOf(pendingFrames, pendingCount * 2);
+            pendingCommands = Arrays.copyOf(pendingCommands, pendingCount * 2);
+            pendingNanos = Arrays.copyOf(pendingNanos, pendingCount * 2);
+        } else {}
+        pendingFrames[pendingCount] = index;
+        pendingCommands[pendingCount] = command;
+        pendingNanos[pendingCount] = timestampNanos;
+        pendingCount++;
+    }
+
+    private void removePending(int pending) {
+        int tail = pendingCount - pending - 1;
+        System.arraycopy(pendingFrames, pending + 1, pendingFrames, pending, tail);
+        System.arraycopy(pendingCommands, pending + 1, pendingCommands, pending, tail);
+        System.arraycopy(pendingNanos, pending + 1, pendingNanos, pending, tail);
+        pendingCount--;
+    }
+
+    // state of a single replay run [replay thread only]
+    private class Replay {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler(startNanos);
+        // framed firmware puts CMD frames && ACKs on the wire itself, legacy bytes are acked after the latency alone
+        final RecordedLatencyModel latencyModel = new RecordedLatencyModel(frameLatencies, frameCount,
+            TimeUnit.MICROSECONDS.toNanos(DEFAULT_LATENCY_MICROS),
+            (replayedLinkVersion != 0) ? SimulatedMcuTransport.commandWireNanos(replayedBaudRate) : 0);
+        final SimulatedMcuTransport mcu = new SimulatedMcuTransport("replay-" + deviceName, latencyModel, scheduler, scheduler::nanoTime);
+        // motors are opened with 0 (the value they are created with is not journaled, see MultiMotorManager)
+        final SerialCommManager manager = new SerialCommManager(mcu, (byte)0, scheduler, scheduler::nanoTime);
+        final Result result = new Result();
+        int nextRetry = 0;
+        boolean retryScheduled = false;
+
+        // failure callback: retry when the operator did in the recording (no recorded retry left --> stay failed)
+        void onFailure() {
+            result.failures++;
+            long now = scheduler.nanoTime();
+            while (nextRetry < retryCount && retryTimes[nextRetry] < now) {
+                nextRetry++;
+            }
+            if (!retryScheduled && nextRetry < retryCount) {
+                retryScheduled = true;
+                scheduler.schedule(this::retry, retryTimes[nextRetry++] - now, TimeUnit.NANOSECONDS);
+            } else {}
+        }
+
+        // method to negotiate the recorded link: negotiateLink blocks on HELLO replies that only virtual time delivers,
+        // so it runs on a helper thread while this thread runs the MCU work of the handshake
+        boolean negotiate(int baudRate) {
+            FutureTask<Boolean> negotiation = new FutureTask<>(() -> manager.negotiateLink(new int[]{ baudRate }));
+            Thread helper = new Thread(negotiation, "replay-handshake");
+            helper.setDaemon(true);
+            latencyModel.handshake = true;
+            helper.start();
+            try {
+                long step = TimeUnit.MILLISECONDS.toNanos(HANDSHAKE_STEP_MILLIS);
+                while (!negotiation.isDone()) {
+                    if (scheduler.nextTaskTime() <= scheduler.nanoTime() + step) {
+                        scheduler.runNext();
+                    } else {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+                return negotiation.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            } finally {
+                latencyModel.handshake = false;
+            }
+        }
+
+        void retry() {
+            retryScheduled = false;
+            result.retries++;
+            manager.manualRetryAsync().thenAccept(acked -> {
+                if (acked) {
+                    manager.startPeriodicTransmission(this::onFailure);
+                } else {} // failed retry has already called onFailure
+            });
+        }
+    }
+
+    // method to replay the session, speed is virtual time per wall clock time (1 --> real time, 100 --> 100x, <= 0 --> as fast as possible)
+    public Result replay(double speed) {
+        Replay replay = new Replay();
+        if (!replay.manager.openPort()) {
+            throw new IllegalStateException("Simulated port could not be opened");
+        } else {}
+
+        // frames were sent on a framed link --> same firmware && line rate before anything is sent
+        if (replayedLinkVersion != 0) {
+            replay.mcu.enableFramedFirmware(replayedBaudRate);
+            if (!replay.negotiate(replayedBaudRate)) {
+                throw new IllegalStateException("Recorded link (protocol " + replayedLinkVersion + ", " + replayedBaudRate + " bps) could not be negotiated");
+            } else {}
+        } else {}
+
+        // recorded setpoints at their recorded times, transmission started when it was in the recording
+        for (int i = 0; i < setpointCount; i++) {
+            final byte value = setpointValues[i];
+            replay.scheduler.schedule(() -> replay.manager.setLastSentByte(value), setpointTimes[i] - replay.scheduler.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        if (firstSendNanos != Long.MAX_VALUE) {
+            replay.scheduler.schedule(() -> replay.manager.startPeriodicTransmission(replay::onFailure),
+                firstSendNanos - replay.scheduler.nanoTime(), TimeUnit.NANOSECONDS);
+        } else {}
+
+        long stopNanos = endNanos + TimeUnit.MILLISECONDS.toNanos(TAIL_MILLIS);
+        long wallStart = System.nanoTime();
+        while (replay.scheduler.nextTaskTime() <= stopNanos) {
+            if (speed > 0) {
+                pace(wallStart, replay.scheduler.nextTaskTime() - startNanos, speed);
+            } else {}
+            replay.scheduler.runNext();
+        }
+        replay.scheduler.advanceTo(stopNanos);
+
+        Result result = replay.result;
+        result.wallNanos = System.nanoTime() - wallStart;
+        result.virtualNanos = stopNanos - startNanos;
+        result.stats = replay.manager.getStats();
+        result.framesReceived = replay.mcu.getFramesReceived();
+        result.framesDropped = replay.mcu.getFramesDropped();
+        result.invalidIDs = replay.mcu.getInvalidIDs();
+        result.speedReversals = replay.mcu.getSpeedReversals();
+
+        replay.manager.close();
+        replay.scheduler.shutdownNow();
+        return result;
+    }
+
+    // method to hold the replay thread until the wall clock catches up with the virtual time of the next task
+    private static void pace(long wallStart, long virtualElapsedNanos, double speed) {
+        long wallTarget = wallStart + (long)(virtualElapsedNanos / speed);
+        long remaining;
+        while ((remaining = wallTarget - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // method to print recorded vs replayed counters
+    public void printReport(Result result, PrintStream out) {
+        CommStats stats = result.stats;
+        out.printf("session %d device %d (%s): %d setpoints, %d recorded frames, %d operator retries, link %s%n",
+            session, device, deviceName, setpointCount, frameCount, retryCount,
+            (replayedLinkVersion != 0) ? "framed v" + replayedLinkVersion + " at " + replayedBaudRate + " bps" : "legacy");
+        out.printf("%-16s %10s %10s%n", "", "recorded", "replayed");
+        out.printf("%-16s %10d %10d%n", "sent", recordedSent, stats.getFramesSent());
+        out.printf("%-16s %10d %10d%n", "acked", recordedAcked, stats.getFramesAcked());
+        out.printf("%-16s %10d %10d%n", "retransmitted", recordedRetransmitted, stats.getFramesRetransmitted());
+        out.printf("%-16s %10d %10d%n", "timeouts", recordedTimeouts, stats.getFramesTimedOut());
+        out.printf("%-16s %10d %10d%n", "stray ACKs", recordedStrayAcks, stats.getStrayAcks());
+        out.printf("failures %d, retries %d, MCU received %d, dropped %d, invalid IDs %d, reversals %d%n",
+            result.failures, result.retries, result.framesReceived, result.framesDropped, result.invalidIDs, result.speedReversals);
+        out.printf("RTT p50 %d us, p99 %d us, max %d us%n",
+            stats.getRttP50Micros(), stats.getRttP99Micros(), stats.getRttMaxMicros());
+        out.printf("replayed %.3f s of virtual time in %.3f s (%.1fx)%n",
+            result.virtualNanos / 1e9, result.wallNanos / 1e9, (double)result.virtualNanos / Math.max(1, result.wallNanos));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: SessionReplayer <journal dir> [--session <id>] [--device <id>] [--speed <factor> | --max]");
+            System.exit(2);
+        } else {}
+
+        int session = -1;
+        int device = -1;
+        double speed = 1.0;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--session": session = Integer.parseInt(args[++i]); break;
+                case "--device": device = Integer.parseInt(args[++i]); break;
+                case "--speed": speed = Double.parseDouble(args[++i]); break;
+                case "--max": speed = 0; break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SessionReplayer replayer = new SessionReplayer(new File(args[0]), session, device);
+        replayer.printReport(replayer.replay(speed), System.out);
+    }
+}
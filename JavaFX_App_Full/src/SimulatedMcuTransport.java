@@ -0,0 +1,418 @@
+// for catching IO exceptions
+import java.io.IOException;
+// for random latency jitter && frame drops
+import java.util.Random;
+// for the thread that plays the MCU role
+import java.util.concurrent.*;
+// for counters that are read from other threads
+import java.util.concurrent.atomic.AtomicLong;
+// for the clock ACK due times are computed with
+import java.util.function.LongSupplier;
+
+// SerialTransport implementation that simulates the MCU side (MCU_MotorControl/APP/src/control.c) in memory
+// so the Tx/ACK path can be exercised without a USB-serial adapter.
+// by default it plays the legacy firmware (single byte frames, no line rate), enableFramedFirmware makes it answer
+// HELLO frames, speak the framed protocol (see FrameCodec) and take line rate into account like the current firmware
+public class SimulatedMcuTransport implements SerialTransport {
+
+    // interface deciding what happens to each frame on the simulated wire
+    public interface LatencyModel {
+        // time between MCU receiving the passed frame and sending its ACK (in ns), negative --> frame is lost
+        long nextLatencyNanos(byte frame);
+    }
+
+    // default model: fixed latency + uniform jitter, frames dropped at random with a given probability
+    private static class RandomLatencyModel implements LatencyModel {
+        private final long latencyNanos;
+        private final long jitterNanos;
+        private final double dropRate;
+        private final Random random;
+
+        RandomLatencyModel(long latencyNanos, long jitterNanos, double dropRate, long seed) {
+            this.latencyNanos = latencyNanos;
+            this.jitterNanos = jitterNanos;
+            this.dropRate = dropRate;
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public long nextLatencyNanos(byte frame) {
+            if (random.nextDouble() < dropRate) {
+                return -1;
+            } else {}
+            long extraNanos = (jitterNanos > 0) ? (long)(random.nextDouble() * jitterNanos) : 0;
+            return latencyNanos + extraNanos;
+        }
+    }
+
+    // defining a byte constant for ack byte (same as ACK_BYTE in control.c)
+    private final byte ACK_BYTE = (byte)0xFF;
+
+    // defining bit offsets of frame fields (same as ID_OFFSET && DIR_OFFSET in control.c)
+    private final int ID_OFFSET = 5;
+    private final int DIR_OFFSET = 4;
+
+    // defining the name of this simulated port
+    private final String name;
+
+    // defining the model giving each frame its ACK latency (or dropping it) [guarded by this]
+    private final LatencyModel latencyModel;
+
+    // defining the clock ACK due times are based on (System.nanoTime unless driven by a virtual clock)
+    private final LongSupplier nanoClock;
+
+    // defining a scheduler passed by the caller to play the MCU on (null --> a thread of its own is created on open)
+    private final ScheduledExecutorService externalExecutor;
+
+    // defining the single thread that plays the MCU (ISR + scheduled control function)
+    private ScheduledExecutorService mcuExecutor;
+
+    // defining a reference to the listener that receives the ACKs
+    private volatile ReceiveListener receiveListener;
+
+    // defining the time the last ACK is due, used so jitter never reorders ACKs on the simulated wire [guarded by this]
+    private long lastAckDueNanos;
+
+    // defining MCU side state (mirrors arr_uint8CurrDataFields && arr_uint8PrevDataFields in control.c) [MCU thread only]
+    private boolean isFirstReceivedByte = true;
+    private int prevByteID;
+    private int prevSpeedDir;
+
+    // defining the buffer handed to the listener when an ACK is sent [MCU thread only]
+    private final byte[] ackFrame = { ACK_BYTE };
+
+    // defining framed firmware state: enabled flag, fastest line rate the MCU clock can generate,
+    // line rate of each end (bytes sent while they differ are garbled) && protocol MCU currently speaks
+    private volatile boolean framedFirmware = false;
+    private volatile int maxBaudRate;
+    private volatile int hostBaudRate = SerialCommManager.LEGACY_BAUD_RATE;
+    private volatile int mcuBaudRate = SerialCommManager.LEGACY_BAUD_RATE;
+    private volatile boolean mcuFramed = false;
+
+    // defining the decoder assembling frames written by the host (the ISR frame parser of control.c) [guarded by this]
+    private final FrameCodec.Decoder mcuDecoder = new FrameCodec.Decoder(this::onHostFrame);
+
+    // defining the sequence number of the last applied CMD frame [MCU thread only]
+    private int prevSequence;
+
+    // defining the buffer MCU frames are built in [MCU thread only]
+    private final byte[] mcuTxFrame = new byte[FrameCodec.MAX_FRAME_SIZE];
+
+    // defining how often framed firmware sends a telemetry frame (TELEMETRY_PERIOD in control.c) (in ms)
+    private final int TELEMETRY_PERIODICITY = 100;
+
+    // defining the current drawn by the simulated motor: no load current + a part proportional to speed (in mA)
+    private final int IDLE_CURRENT = 40;
+    private final int CURRENT_PER_PERCENTAGE = 12;
+
+    // defining the periodic telemetry task (null until MCU speaks the framed protocol)
+    private volatile ScheduledFuture<?> telemetryTask;
+
+    // defining the sequence number of the next telemetry frame && the noise of the simulated current sensor [MCU thread only]
+    private int telemetrySequence = 0;
+    private final Random currentNoise = new Random(7);
+
+    // defining the buffer telemetry payloads are built in [MCU thread only]
+    private final byte[] telemetryPayload = new byte[FrameCodec.TELEMETRY_PAYLOAD_SIZE];
+
+    // defining the last applied motor command, readable from any thread
+    private volatile int speedLevel;
+    private volatile int speedDir;
+    private volatile int speedPercentage;
+
+    // defining statistics counters
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong invalidIDs = new AtomicLong();
+    private final AtomicLong speedReversals = new AtomicLong();
+
+    // SimulatedMcuTransport constructor takes a port name, ACK latency && jitter (in us), frame drop rate and a random seed
+    public SimulatedMcuTransport(String name, long latencyMicros, long jitterMicros, double dropRate, long seed) {
+        this(name, new RandomLatencyModel(TimeUnit.MICROSECONDS.toNanos(latencyMicros), TimeUnit.MICROSECONDS.toNanos(jitterMicros), dropRate, seed), null, System::nanoTime);
+    }
+
+    // SimulatedMcuTransport constructor takes a port name, a latency model, the scheduler to play the MCU on (null --> own thread)
+    // and the clock that scheduler runs on (ex. VirtualTimeScheduler::nanoTime to replay a session deterministically)
+    public SimulatedMcuTransport(String name, LatencyModel latencyModel, ScheduledExecutorService executor, LongSupplier nanoClock) {
+        this.name = name;
+        this.latencyModel = latencyModel;
+        this.externalExecutor = executor;
+        this.nanoClock = nanoClock;
+    }
+
+    // method to play the current firmware: legacy until a HELLO arrives, then framed, switching to the fastest offered
+    // line rate up to maxBaudRate (must be called before the transport is used)
+    public void enableFramedFirmware(int maxBaudRate) {
+        this.maxBaudRate = maxBaudRate;
+        framedFirmware = true;
+    }
+
+    @Override
+    public int getBaudRate() {
+        return framedFirmware ? hostBaudRate : 0;
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        if (!framedFirmware) {
+            return false;
+        } else {}
+        hostBaudRate = baudRate;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (mcuExecutor == null && externalExecutor != null) {
+            mcuExecutor = externalExecutor;
+        } else if (mcuExecutor == null) {
+            // the MCU thread must never keep the JVM alive on its own
+            mcuExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sim-mcu-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {}
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return mcuExecutor != null;
+    }
+
+    @Override
+    public void setReceiveListener(ReceiveListener listener) {
+        receiveListener = listener;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        if (mcuExecutor == null) {
+            throw new IOException("Simulated port " + name + " is not open");
+        } else {}
+
+        if (framedFirmware) {
+            writeToFramedFirmware(data, offset, length);
+            return;
+        } else {}
+
+        for (int i = offset; i < offset + length; i++) {
+            scheduleLegacyByte(data[i], 0);
+        }
+    }
+
+    // method to hand host bytes to the framed firmware: frames go through the parser, anything else is a legacy command
+    // as long as MCU has not switched to the framed protocol [guarded by this]
+    private void writeToFramedFirmware(byte[] data, int offset, int length) throws IOException {
+        // ends at different line rates --> MCU only sees noise
+        if (hostBaudRate != mcuBaudRate) {
+            framesDropped.incrementAndGet();
+            return;
+        } else {}
+
+        for (int i = offset; i < offset + length; i++) {
+            if (mcuDecoder.isIdle() && (data[i] & 0xFF) != FrameCodec.START) {
+                if (!mcuFramed) {
+                    scheduleLegacyByte(data[i], byteTimeNanos(2));
+                } else {} // noise between frames is dropped
+            } else {
+                mcuDecoder.feed(data[i]);
+            }
+        }
+    }
+
+    // method to get the time length bytes take on the wire at the current line rate (8N1 --> 10 bits per byte)
+    private long byteTimeNanos(int length) {
+        return TimeUnit.SECONDS.toNanos(10L * length) / mcuBaudRate;
+    }
+
+    // method to get the time a CMD frame && its ACK take on the wire at the given line rate
+    public static long commandWireNanos(int baudRate) {
+        return TimeUnit.SECONDS.toNanos(10L * (2 * (FrameCodec.HEADER_SIZE + FrameCodec.CRC_SIZE) + FrameCodec.CMD_PAYLOAD_SIZE)) / baudRate;
+    }
+
+    // method to schedule the handling of a legacy frame byte after its latency + time on the wire [guarded by this]
+    private void scheduleLegacyByte(byte value, long wireNanos) throws IOException {
+        final byte frame = value;
+        long latency = latencyModel.nextLatencyNanos(frame);
+        // frame lost on the wire --> MCU never sees it so it never acks it
+        if (latency < 0) {
+            framesDropped.incrementAndGet();
+        } else {
+            scheduleMcuWork(() -> receiveFrame(frame), latency + wireNanos);
+        }
+    }
+
+    // method called by the parser for every host frame with a valid CRC [guarded by this]
+    private void onHostFrame(int type, int sequence, byte[] payload, int payloadLength) {
+        long latency = latencyModel.nextLatencyNanos((byte) sequence);
+        // frame lost on the wire --> MCU never sees it so it never answers it
+        if (latency < 0) {
+            framesDropped.incrementAndGet();
+            return;
+        } else {}
+
+        try {
+            if (type == FrameCodec.TYPE_CMD && payloadLength >= FrameCodec.CMD_PAYLOAD_SIZE) {
+                final int speed = Math.min(payload[0] & 0xFF, 100);
+                final int dir = payload[1] & 0x01;
+                long wireNanos = commandWireNanos(mcuBaudRate);
+                scheduleMcuWork(() -> receiveCommandFrame(sequence, speed, dir), latency + wireNanos);
+            } else if (type == FrameCodec.TYPE_HELLO && payloadLength >= 1) {
+                // MCU takes the first offered rate its clock can generate
+                int chosenBaudRate = mcuBaudRate;
+                for (int offset = 1; offset + 1 < payloadLength; offset += 2) {
+                    int candidate = FrameCodec.readShort(payload, offset) * FrameCodec.BAUD_UNIT;
+                    if (candidate <= maxBaudRate) {
+                        chosenBaudRate = candidate;
+                        break;
+                    } else {}
+                }
+                final int baudRate = chosenBaudRate;
+                scheduleMcuWork(() -> receiveHello(baudRate), latency + byteTimeNanos(FrameCodec.HEADER_SIZE + FrameCodec.CRC_SIZE + payloadLength));
+            } else {}
+        } catch (IOException e) {
+            // port was closed while the frame was on the wire
+        }
+    }
+
+    // method to run MCU work after a delay, never before work scheduled earlier so MCU answers keep their order [guarded by this]
+    private void scheduleMcuWork(Runnable work, long delayNanos) throws IOException {
+        // ACK leaves the MCU after latency + jitter, but never before the previous ACK
+        long now = nanoClock.getAsLong();
+        long dueNanos = Math.max(now + delayNanos, lastAckDueNanos);
+        lastAckDueNanos = dueNanos;
+
+        try {
+            mcuExecutor.schedule(work, dueNanos - now, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Simulated port " + name + " was closed", e);
+        }
+    }
+
+    // MCU side handling of a HELLO (APP_voidHandleHello in control.c): reply at the current rate, then switch to the chosen one
+    private void receiveHello(int baudRate) {
+        mcuFramed = true;
+        isFirstReceivedByte = true;
+        byte[] payload = new byte[3];
+        payload[0] = (byte) FrameCodec.VERSION;
+        FrameCodec.writeShort(payload, 1, baudRate / FrameCodec.BAUD_UNIT);
+        sendMcuFrame(FrameCodec.TYPE_HELLO_REPLY, 0, payload, payload.length);
+        mcuBaudRate = baudRate;
+        if (telemetryTask == null) {
+            telemetryTask = mcuExecutor.scheduleAtFixedRate(this::sendTelemetry, TELEMETRY_PERIODICITY, TELEMETRY_PERIODICITY, TimeUnit.MILLISECONDS);
+        } else {}
+    }
+
+    // MCU side telemetry (APP_voidSendTelemetry in control.c): applied speed && direction, current of the simulated motor
+    private void sendTelemetry() {
+        int speed = speedPercentage;
+        int current = (speed == 0) ? 0 : IDLE_CURRENT + speed * CURRENT_PER_PERCENTAGE + currentNoise.nextInt(11) - 5;
+        telemetryPayload[0] = (byte) speed;
+        telemetryPayload[1] = (byte) speedDir;
+        telemetryPayload[2] = (byte) TelemetrySeries.FLAG_CURRENT_VALID;
+        FrameCodec.writeShort(telemetryPayload, 3, current);
+        sendMcuFrame(FrameCodec.TYPE_TELEMETRY, telemetrySequence & 0xFFFF, telemetryPayload, telemetryPayload.length);
+        telemetrySequence++;
+    }
+
+    // MCU side handling of a CMD frame (echoReceivedByte + APP_voidScheduledControlFunc in control.c)
+    private void receiveCommandFrame(int sequence, int speed, int dir) {
+        framesReceived.incrementAndGet();
+        mcuFramed = true;
+
+        // ACK goes out right away, whether the command is applied or not
+        sendMcuFrame(FrameCodec.TYPE_ACK, sequence, null, 0);
+
+        if (isFirstReceivedByte) { // first received frame does not require sequence check
+            isFirstReceivedByte = false;
+        } else if (sequence == prevSequence) { // retransmitted frame --> invalid ID event
+            invalidIDs.incrementAndGet();
+        } else if ((short)(sequence - prevSequence) < 0) { // older frame overtaken by a newer one --> not applied
+            return;
+        } else {}
+
+        if (dir != prevSpeedDir) {
+            speedReversals.incrementAndGet();
+        } else {}
+
+        prevSequence = sequence;
+        prevSpeedDir = dir;
+        speedLevel = -1;
+        speedDir = dir;
+        speedPercentage = speed;
+    }
+
+    // method to send a frame from the MCU to the app [MCU thread only]
+    private void sendMcuFrame(int type, int sequence, byte[] payload, int payloadLength) {
+        int length = FrameCodec.encode(type, sequence, payload, payloadLength, mcuTxFrame);
+        ReceiveListener listener = receiveListener;
+        // app only hears MCU if both ends use the same line rate
+        if (listener != null && hostBaudRate == mcuBaudRate) {
+            listener.onBytesReceived(mcuTxFrame, length);
+        } else {}
+    }
+
+    // MCU side handling of a received frame (echoReceivedByte + APP_voidScheduledControlFunc in control.c)
+    private void receiveFrame(byte frame) {
+        framesReceived.incrementAndGet();
+
+        // extract data from received byte
+        int byteID = (frame & 0xE0) >> ID_OFFSET;
+        int dir = (frame & 0x10) >> DIR_OFFSET;
+        int level = frame & 0x0F;
+
+        if (isFirstReceivedByte) { // first received byte does not require ID check
+            isFirstReceivedByte = false;
+        } else if (byteID == prevByteID) { // same ID as last frame --> invalid ID event
+            invalidIDs.incrementAndGet();
+        } else {}
+
+        // check for speed reversal (MCU brakes before starting in opposite dir)
+        if (dir != prevSpeedDir) {
+            speedReversals.incrementAndGet();
+        } else {}
+
+        prevByteID = byteID;
+        prevSpeedDir = dir;
+        speedLevel = level;
+        speedDir = dir;
+        speedPercentage = MotorCommand.legacyToPercentage(frame);
+
+        // send ACK back to app
+        ReceiveListener listener = receiveListener;
+        if (listener != null) {
+            listener.onBytesReceived(ackFrame, 1);
+        } else {}
+    }
+
+    @Override
+    public synchronized void close() {
+        if (telemetryTask != null) {
+            telemetryTask.cancel(false);
+            telemetryTask = null;
+        } else {}
+        if (mcuExecutor != null) {
+            // a scheduler passed by the caller belongs to the caller
+            if (mcuExecutor != externalExecutor) {
+                mcuExecutor.shutdownNow();
+            } else {}
+            mcuExecutor = null;
+        } else {}
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // getters for the simulated MCU state && counters
+    public int getSpeedLevel() { return speedLevel; }
+    public int getSpeedDir() { return speedDir; }
+    public int getSpeedPercentage() { return speedPercentage; }
+    public long getFramesReceived() { return framesReceived.get(); }
+    public long getFramesDropped() { return framesDropped.get(); }
+    public long getInvalidIDs() { return invalidIDs.get(); }
+    public long getSpeedReversals() { return speedReversals.get(); }
+}
@@ -0,0 +1,364 @@
+// for the thread ACKs are sent from && fault decisions
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// MCU side of StressTester: answers SerialCommManager over any transport (end of a pty pair, PipeTransport, ...)
+// like the firmware does, drops or corrupts a share of the ACKs, and checks what the host puts on the wire:
+//   - new frames carry consecutive IDs (3-bit byte ID on a legacy link, 16-bit sequence number on a framed one)
+//   - a frame that reuses a recent ID is a retransmission and carries the same command as the original
+//   - on a framed link (ACKs name their frame) every frame whose ACK was dropped or corrupted is retransmitted,
+//     at most MAX_RETRANSMISSIONS times, unless the host gave up on the link in the meantime (see linkFailed)
+//   - on a framed link the host only gives up after a frame lost the ACK of every transmission, or after a failed retry
+// legacy firmware acks every byte && never answers a HELLO, framed firmware only speaks frames and answers HELLOs
+public class StressResponder {
+
+    // defining protocol constants of the host (same as WINDOW_SIZE && MAX_RETRANSMISSIONS in SerialCommManager)
+    private static final int WINDOW_SIZE = 7;
+    private static final int MAX_RETRANSMISSIONS = 2;
+
+    // defining the ACK byte of the legacy protocol && the offset of the byte ID in a legacy frame (same as control.c)
+    private static final byte ACK_BYTE = (byte) 0xFF;
+    private static final int ID_OFFSET = 5;
+
+    // defining the number of framed records kept for checking retransmissions (far more than fit in the window)
+    private static final int FRAMED_RECORDS = 1024;
+
+    // defining how long frames received after a link failure are still taken as sent before it (in ms)
+    private static final int FAILURE_MARGIN_MILLIS = 50;
+
+    // defining how long a dropped ACK may wait for its retransmission before the end of the run (host ACK timeout is at most 2 s)
+    private static final int PENDING_MILLIS = 2000;
+
+    // defining the number of error messages kept for the report
+    private static final int MAX_ERROR_MESSAGES = 10;
+
+    // defining the link && the protocol the firmware speaks
+    private final SerialTransport transport;
+    private final boolean framed;
+
+    // defining the share of ACKs dropped && corrupted, the ACK latency && its jitter (in ns)
+    private final double ackLossRate;
+    private final double ackCorruptRate;
+    private final long latencyNanos;
+    private final long jitterNanos;
+
+    // defining the source of all fault decisions (fixed seed --> repeatable run) [guarded by this]
+    private final Random random;
+
+    // defining the thread ACKs are sent from && the time the last ACK is due, so jitter never reorders them [guarded by this]
+    private ScheduledExecutorService mcuExecutor;
+    private long lastAckDueNanos;
+
+    // defining the parser of host frames [transport Rx thread only]
+    private final FrameCodec.Decoder decoder = new FrameCodec.Decoder(this::onHostFrame);
+
+    // defining the records of recent frames, indexed by ID (legacy) or sequence modulo FRAMED_RECORDS (framed) [guarded by this]
+    private final int idModulo;
+    private final int[] recordIds;
+    private final boolean[] recordValid;
+    private final int[] recordCommands;
+    private final int[] recordFaults;
+    private final int[] recordRetransmissions;
+    private final boolean[] recordAcked;
+    private final boolean[] recordForgiven;
+    private final long[] recordLastFaultNanos;
+
+    // defining the ID the next new frame must carry (-1 --> no frame yet) && the end of the last failure margin [guarded by this]
+    private int expectedId = -1;
+    private long forgiveUntilNanos = Long.MIN_VALUE;
+
+    // defining the time the host last gave up on the link (System.nanoTime based) [guarded by this]
+    private long lastFailureNanos = System.nanoTime();
+
+    // defining counters (read by anyone)
+    private final AtomicLong newFrames = new AtomicLong();
+    private final AtomicLong retransmittedFrames = new AtomicLong();
+    private final AtomicLong spuriousRetransmissions = new AtomicLong();
+    private final AtomicLong acksSent = new AtomicLong();
+    private final AtomicLong acksDropped = new AtomicLong();
+    private final AtomicLong acksCorrupted = new AtomicLong();
+    private final AtomicLong hellosAnswered = new AtomicLong();
+    private final AtomicLong noiseBytes = new AtomicLong();
+    private final AtomicLong sequenceErrors = new AtomicLong();
+    private final AtomicLong excessRetransmissions = new AtomicLong();
+    private final AtomicLong missedRetransmissions = new AtomicLong();
+    private final AtomicLong unexplainedFailures = new AtomicLong();
+    private final AtomicLong pendingRetransmissions = new AtomicLong();
+
+    // defining the first few error messages [guarded by this]
+    private final List<String> errorMessages = new ArrayList<>();
+
+    // StressResponder constructor takes the link, the protocol (true --> framed firmware), the share of ACKs dropped && corrupted,
+    // the ACK latency && jitter (in us) and the seed of the fault decisions
+    public StressResponder(SerialTransport transport, boolean framed, double ackLossRate, double ackCorruptRate,
+            long latencyMicros, long jitterMicros, long seed) {
+        this.transport = transport;
+        this.framed = framed;
+        this.ackLossRate = ackLossRate;
+        this.ackCorruptRate = ackCorruptRate;
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+        this.random = new Random(seed);
+        idModulo = framed ? 0x10000 : 8;
+        int recordCount = framed ? FRAMED_RECORDS : 8;
+        recordIds = new int[recordCount];
+        recordValid = new boolean[recordCount];
+        recordCommands = new int[recordCount];
+        recordFaults = new int[recordCount];
+        recordRetransmissions = new int[recordCount];
+        recordAcked = new boolean[recordCount];
+        recordForgiven = new boolean[recordCount];
+        recordLastFaultNanos = new long[recordCount];
+    }
+
+    // method to open the link && start answering, returns false if the link could not be opened
+    public synchronized boolean open() {
+        mcuExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stress-mcu");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.setReceiveListener(this::onBytesReceived);
+        return transport.open();
+    }
+
+    public synchronized void close() {
+        transport.close();
+        if (mcuExecutor != null) {
+            mcuExecutor.shutdownNow();
+            mcuExecutor = null;
+        } else {}
+    }
+
+    // method to handle bytes from the host [transport Rx thread only]
+    private void onBytesReceived(byte[] buffer, int length) {
+        if (framed) {
+            decoder.feed(buffer, 0, length);
+            return;
+        } else {}
+        for (int i = 0; i < length; i++) {
+            // a legacy frame is the legacy command (bits 4..0) with the byte ID on top
+            onCommandFrame((buffer[i] >> ID_OFFSET) & 0x07, buffer[i] & 0x1F);
+        }
+    }
+
+    // method called by the parser for every host frame with a valid CRC [transport Rx thread only]
+    private void onHostFrame(int type, int sequence, byte[] payload, int payloadLength) {
+        if (type == FrameCodec.TYPE_CMD && payloadLength >= FrameCodec.CMD_PAYLOAD_SIZE) {
+            // speed && direction make up the command the retransmissions are compared with
+            onCommandFrame(sequence, (payload[0] & 0xFF) | (payload[1] & 0x01) << 8);
+        } else if (type == FrameCodec.TYPE_HELLO && payloadLength >= 1) {
+            answerHello(payload, payloadLength);
+        } else {
+            noiseBytes.incrementAndGet();
+        }
+    }
+
+    // method to answer a HELLO like the firmware: the first offered rate is taken (a pty or a pipe carries any rate)
+    private synchronized void answerHello(byte[] payload, int payloadLength) {
+        int baudRate = (payloadLength >= 3) ? FrameCodec.readShort(payload, 1) * FrameCodec.BAUD_UNIT : SerialCommManager.LEGACY_BAUD_RATE;
+        byte[] reply = new byte[3];
+        reply[0] = (byte) FrameCodec.VERSION;
+        FrameCodec.writeShort(reply, 1, baudRate / FrameCodec.BAUD_UNIT);
+        byte[] frame = new byte[FrameCodec.MAX_FRAME_SIZE];
+        int length = FrameCodec.encode(FrameCodec.TYPE_HELLO_REPLY, 0, reply, reply.length, frame);
+        hellosAnswered.incrementAndGet();
+        scheduleWrite(frame, length, 0, () -> {
+            if (transport.getBaudRate() > 0 && baudRate != transport.getBaudRate()) {
+                transport.setBaudRate(baudRate);
+            } else {}
+        });
+    }
+
+    // method to check a command frame against the frames before it, then ack it (or not) [transport Rx thread only]
+    private synchronized void onCommandFrame(int id, int command) {
+        long now = System.nanoTime();
+        int slot = id % recordIds.length;
+        if (expectedId < 0 || id == expectedId) {
+            newRecord(slot, id, command, now);
+            newFrames.incrementAndGet();
+        } else if (isRecent(id) && recordValid[slot] && recordIds[slot] == id && recordCommands[slot] == command) {
+            retransmittedFrames.incrementAndGet();
+            recordRetransmissions[slot]++;
+            if (recordRetransmissions[slot] > MAX_RETRANSMISSIONS) {
+                excessRetransmissions.incrementAndGet();
+                error("frame " + id + " retransmitted " + recordRetransmissions[slot] + " times");
+            } else {}
+            // an ACK that went out intact but arrived after the host deadline (only a framed ACK names its frame)
+            if (framed && recordAcked[slot]) {
+                spuriousRetransmissions.incrementAndGet();
+            } else {}
+        } else {
+            sequenceErrors.incrementAndGet();
+            error("frame " + id + " (command 0x" + Integer.toHexString(command) + ") is neither the next frame ("
+                + expectedId + ") nor a retransmission of a recent one");
+            // pick up the sequence from here so one error is not reported for every following frame
+            newRecord(slot, id, command, now);
+        }
+        ack(slot, id);
+    }
+
+    // method to check if an ID is one of the last WINDOW_SIZE IDs handed out [guarded by this]
+    private boolean isRecent(int id) {
+        int distance = Math.floorMod(expectedId - 1 - id, idModulo);
+        return distance < WINDOW_SIZE;
+    }
+
+    // method to start the record of a new frame, the frame whose record is replaced is checked first [guarded by this]
+    private void newRecord(int slot, int id, int command, long now) {
+        if (recordValid[slot]) {
+            checkRetransmitted(slot, Long.MAX_VALUE);
+        } else {}
+        recordValid[slot] = true;
+        recordIds[slot] = id;
+        recordCommands[slot] = command;
+        recordFaults[slot] = 0;
+        recordRetransmissions[slot] = 0;
+        recordAcked[slot] = false;
+        recordForgiven[slot] = now - forgiveUntilNanos < 0;
+        expectedId = (id + 1) % idModulo;
+    }
+
+    // method to check that a frame with a dropped ACK was retransmitted, faults newer than pendingSince may still be [guarded by this]
+    private void checkRetransmitted(int slot, long pendingSince) {
+        if (!framed || recordForgiven[slot] || recordFaults[slot] <= recordRetransmissions[slot]
+                || recordRetransmissions[slot] >= MAX_RETRANSMISSIONS) {
+            return;
+        } else if (recordLastFaultNanos[slot] - pendingSince > 0) {
+            pendingRetransmissions.incrementAndGet();
+        } else {
+            missedRetransmissions.incrementAndGet();
+            error("ACK of frame " + recordIds[slot] + " was lost " + recordFaults[slot] + " time(s), frame was retransmitted "
+                + recordRetransmissions[slot] + " time(s)");
+        }
+    }
+
+    // method to send the ACK of a frame, drop it or corrupt it [guarded by this]
+    private void ack(int slot, int id) {
+        double draw = random.nextDouble();
+        byte[] ack;
+        int length;
+        if (framed) {
+            ack = new byte[FrameCodec.HEADER_SIZE + FrameCodec.CRC_SIZE];
+            length = FrameCodec.encode(FrameCodec.TYPE_ACK, id, null, 0, ack);
+        } else {
+            ack = new byte[] { ACK_BYTE };
+            length = 1;
+        }
+
+        if (draw < ackLossRate) {
+            acksDropped.incrementAndGet();
+            fault(slot);
+            return;
+        } else if (draw < ackLossRate + ackCorruptRate) {
+            // one bit of the CRC (framed) or of the ACK byte is flipped, host rejects it without losing frame sync
+            int bit = random.nextInt(framed ? 16 : 8);
+            ack[length - 1 - bit / 8] ^= (byte) (1 << (bit % 8));
+            acksCorrupted.incrementAndGet();
+            fault(slot);
+        } else {
+            recordAcked[slot] = true;
+        }
+        acksSent.incrementAndGet();
+        long delay = latencyNanos + ((jitterNanos > 0) ? (long) (random.nextDouble() * jitterNanos) : 0);
+        scheduleWrite(ack, length, delay, null);
+    }
+
+    private void fault(int slot) {
+        recordFaults[slot]++;
+        recordAcked[slot] = false;
+        recordLastFaultNanos[slot] = System.nanoTime();
+    }
+
+    // method to write bytes to the host after a delay, never before bytes scheduled earlier [guarded by this]
+    private void scheduleWrite(byte[] data, int length, long delayNanos, Runnable afterWrite) {
+        if (mcuExecutor == null) {
+            return; // responder was closed
+        } else {}
+        long now = System.nanoTime();
+        long dueNanos = Math.max(now + delayNanos, lastAckDueNanos);
+        lastAckDueNanos = dueNanos;
+        try {
+            mcuExecutor.schedule(() -> {
+                try {
+                    transport.write(data, 0, length);
+                } catch (IOException e) {
+                    // host end is gone, the run is over
+                }
+                if (afterWrite != null) {
+                    afterWrite.run();
+                } else {}
+            }, dueNanos - now, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // responder was closed
+        }
+    }
+
+    // method to tell the responder the host gave up on the link (timeout or failed retry, see SerialCommManager.startPeriodicTransmission):
+    // its in-flight frames are dropped, so their lost ACKs are not retransmitted anymore
+    public synchronized void linkFailed(boolean retryFailed) {
+        // a timeout is only due if a frame lost the ACK of its first transmission && of all its retransmissions since the last failure
+        boolean explained = retryFailed || !framed;
+        for (int slot = 0; slot < recordValid.length; slot++) {
+            if (recordValid[slot] && recordFaults[slot] > MAX_RETRANSMISSIONS && recordLastFaultNanos[slot] - lastFailureNanos > 0) {
+                explained = true;
+            } else {}
+            recordForgiven[slot] = true;
+        }
+        lastFailureNanos = System.nanoTime();
+        if (!explained) {
+            unexplainedFailures.incrementAndGet();
+            error("host gave up on the link although no frame lost all its ACKs");
+        } else {}
+        // frames sent before the failure may still be on their way
+        forgiveUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FAILURE_MARGIN_MILLIS);
+    }
+
+    // method to check the frames still on record at the end of a run (call once the host stopped transmitting)
+    public synchronized void finish() {
+        long pendingSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(PENDING_MILLIS);
+        for (int slot = 0; slot < recordValid.length; slot++) {
+            if (recordValid[slot]) {
+                checkRetransmitted(slot, pendingSince);
+                recordValid[slot] = false;
+            } else {}
+        }
+    }
+
+    private void error(String message) {
+        if (errorMessages.size() < MAX_ERROR_MESSAGES) {
+            errorMessages.add(message);
+        } else {}
+    }
+
+    // method to get the number of protocol violations seen so far
+    public long getErrorCount() {
+        return sequenceErrors.get() + excessRetransmissions.get() + missedRetransmissions.get() + unexplainedFailures.get();
+    }
+
+    public synchronized List<String> getErrorMessages() {
+        return new ArrayList<>(errorMessages);
+    }
+
+    // getters of the counters
+    public long getNewFrames() { return newFrames.get(); }
+    public long getRetransmittedFrames() { return retransmittedFrames.get(); }
+    public long getSpuriousRetransmissions() { return spuriousRetransmissions.get(); }
+    public long getAcksSent() { return acksSent.get(); }
+    public long getAcksDropped() { return acksDropped.get(); }
+    public long getAcksCorrupted() { return acksCorrupted.get(); }
+    public long getHellosAnswered() { return hellosAnswered.get(); }
+    public long getNoiseBytes() { return noiseBytes.get(); }
+    public long getSequenceErrors() { return sequenceErrors.get(); }
+    public long getExcessRetransmissions() { return excessRetransmissions.get(); }
+    public long getMissedRetransmissions() { return missedRetransmissions.get(); }
+    public long getUnexplainedFailures() { return unexplainedFailures.get(); }
+    public long getPendingRetransmissions() { return pendingRetransmissions.get(); }
+}
@@ -0,0 +1,200 @@
+// for pacing the command storm
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// closed loop soak test of the serial command path, no hardware needed: a SerialCommManager is driven with a sustained
+// storm of setpoints while a StressResponder plays the MCU on the other end of the link, drops && corrupts ACKs and checks
+// ID sequencing && retransmissions. a link that times out is retried and restarted like the app does.
+// the run ends with a throughput && latency report, exit code is 0 only if the responder saw no protocol violation.
+// the link is an in-process pipe (PipeTransport) by default, or a pty pair, ex. made with
+//   socat -d -d pty,raw,echo=0,link=/tmp/motor-host pty,raw,echo=0,link=/tmp/motor-mcu
+// ptys are opened as tty channels (TtyChannelTransport, same backend as --tty ports of the daemon) where supported,
+// --jserialcomm opens them through jSerialComm instead
+// usage: java -cp build:jars/jSerialComm-2.11.0.jar StressTester [--pty <host port> <mcu port> [--jserialcomm]] [--legacy]
+//        [--seconds <n>] [--rate <commands/s>] [--ack-loss <0..1>] [--ack-corrupt <0..1>] [--latency <us>] [--jitter <us>] [--seed <n>]
+//        [--tx-batch <us>]
+public class StressTester {
+
+    // defining how long the link keeps running after the storm, so the last retransmissions happen (in ms)
+    private static final int DRAIN_MILLIS = 3000;
+
+    // defining the options of the run
+    private boolean pty = false;
+    private String hostPortName;
+    private String mcuPortName;
+    private boolean jSerialComm = !TtyChannelTransport.isSupported();
+    private boolean framed = true;
+    private int seconds = 30;
+    private int rate = 1000;
+    private double ackLossRate = 0.02;
+    private double ackCorruptRate = 0.01;
+    private long latencyMicros = 2000;
+    private long jitterMicros = 500;
+    private long seed = 1;
+    private long txBatchMicros = SerialCommManager.DEFAULT_TX_BATCH_WINDOW;
+
+    // defining the host side && the MCU side of the link
+    private SerialCommManager manager;
+    private StressResponder responder;
+
+    // defining the histogram submit --> ACK latencies of commands are recorded in (only its RTT histogram is used)
+    private final CommStats confirmLatency = new CommStats();
+
+    // defining run counters
+    private long commandsSubmitted = 0;
+    private final AtomicLong commandsConfirmed = new AtomicLong();
+    private final AtomicLong linkFailures = new AtomicLong();
+    private final AtomicLong linkRecoveries = new AtomicLong();
+
+    // defining a flag telling if the failure being reported is a failed retry (set right before the manager reports it)
+    private volatile boolean retryFailed = false;
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--pty": pty = true; hostPortName = args[++i]; mcuPortName = args[++i]; break;
+                case "--jserialcomm": jSerialComm = true; break;
+                case "--legacy": framed = false; break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--rate": rate = Integer.parseInt(args[++i]); break;
+                case "--ack-loss": ackLossRate = Double.parseDouble(args[++i]); break;
+                case "--ack-corrupt": ackCorruptRate = Double.parseDouble(args[++i]); break;
+                case "--latency": latencyMicros = Long.parseLong(args[++i]); break;
+                case "--jitter": jitterMicros = Long.parseLong(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--tx-batch": txBatchMicros = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.err.println("usage: StressTester [--pty <host port> <mcu port> [--jserialcomm]] [--legacy] [--seconds <n>] [--rate <commands/s>]"
+                        + " [--ack-loss <0..1>] [--ack-corrupt <0..1>] [--latency <us>] [--jitter <us>] [--seed <n>] [--tx-batch <us>]");
+                    System.exit(2);
+            }
+        }
+    }
+
+    // method to run the whole test, returns true if no protocol violation was seen
+    private boolean run() throws InterruptedException {
+        SerialTransport hostTransport;
+        SerialTransport mcuTransport;
+        if (pty && jSerialComm) {
+            hostTransport = new JSerialCommTransport(hostPortName, SerialCommManager.LEGACY_BAUD_RATE);
+            mcuTransport = new JSerialCommTransport(mcuPortName, SerialCommManager.LEGACY_BAUD_RATE);
+        } else if (pty) {
+            hostTransport = new TtyChannelTransport(hostPortName, SerialCommManager.LEGACY_BAUD_RATE);
+            mcuTransport = new TtyChannelTransport(mcuPortName, SerialCommManager.LEGACY_BAUD_RATE);
+        } else {
+            PipeTransport[] pipe = PipeTransport.pair("stress-host", "stress-mcu");
+            hostTransport = pipe[0];
+            mcuTransport = pipe[1];
+        }
+
+        responder = new StressResponder(mcuTransport, framed, ackLossRate, ackCorruptRate, latencyMicros, jitterMicros, seed);
+        manager = new SerialCommManager(hostTransport, (byte) 0x00);
+        manager.setTxBatchWindow(txBatchMicros);
+        if (!responder.open() || !manager.openPort()) {
+            System.err.println("Failed to open the link");
+            return false;
+        } else {}
+        if (framed && !manager.negotiateLink()) {
+            System.err.println("Link negotiation failed");
+            return false;
+        } else {}
+        manager.setCommandListener((command, latencyNanos) -> {
+            if (latencyNanos >= 0) {
+                commandsConfirmed.incrementAndGet();
+                confirmLatency.recordRtt(latencyNanos);
+            } else {}
+        });
+        manager.startPeriodicTransmission(this::onLinkFailed);
+
+        // storm: a random signed speed every 1/rate s, paced against absolute deadlines so a late wake up does not slow it down
+        Random random = new Random(seed);
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        for (long deadline = startNanos; deadline - endNanos < 0; deadline += periodNanos) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+            } else {}
+            manager.setLastSentByte(MotorCommand.fromSignedSpeed(random.nextInt(2 * MotorCommand.MAX_PERCENTAGE + 1) - MotorCommand.MAX_PERCENTAGE));
+            commandsSubmitted++;
+        }
+        long stormNanos = System.nanoTime() - startNanos;
+
+        // motor ends stopped, heartbeats keep the link going while the last lost ACKs are retransmitted
+        manager.setLastSentByte((byte) 0x00);
+        Thread.sleep(DRAIN_MILLIS);
+        responder.finish();
+        report(stormNanos);
+        manager.close();
+        responder.close();
+        return responder.getErrorCount() == 0 && responder.getNewFrames() > 0;
+    }
+
+    // failure callback: the host gave up on its in-flight frames, retry like the Retry button of the app [manager thread]
+    // (a failed retry reports a failure again, which retries again)
+    private void onLinkFailed() {
+        linkFailures.incrementAndGet();
+        responder.linkFailed(retryFailed);
+        retryFailed = false;
+        manager.manualRetryAsync().thenAccept(acked -> {
+            if (acked) {
+                linkRecoveries.incrementAndGet();
+                manager.startPeriodicTransmission(this::onLinkFailed);
+            } else {
+                retryFailed = true;
+            }
+        });
+    }
+
+    private void report(long stormNanos) {
+        double stormSeconds = stormNanos / 1e9;
+        CommStats stats = manager.getStats();
+        System.out.println(String.format("link      : %s %s, ACK latency %d us + up to %d us, ACK loss %.1f %%, ACK corruption %.1f %%",
+            framed ? "framed" : "legacy",
+            pty ? "pty " + hostPortName + " <-> " + mcuPortName + (jSerialComm ? " (jSerialComm)" : " (tty channel)") : "in-process pipe",
+            latencyMicros, jitterMicros, ackLossRate * 100, ackCorruptRate * 100));
+        System.out.println(String.format("commands  : %d submitted in %.1f s (%.0f/s), %d confirmed (%.1f/s), %d coalesced before sending",
+            commandsSubmitted, stormSeconds, commandsSubmitted / stormSeconds, commandsConfirmed.get(),
+            commandsConfirmed.get() / stormSeconds, stats.getCommandsCoalesced()));
+        System.out.println(String.format("frames    : %d new (%.1f/s), %d retransmitted (%d after an intact ACK), %d host timeouts, %d link failures, %d recovered",
+            responder.getNewFrames(), responder.getNewFrames() / stormSeconds, responder.getRetransmittedFrames(),
+            responder.getSpuriousRetransmissions(), stats.getFramesTimedOut(), linkFailures.get(), linkRecoveries.get()));
+        System.out.println(String.format("acks      : %d sent, %d dropped, %d corrupted, %d stray at the host",
+            responder.getAcksSent(), responder.getAcksDropped(), responder.getAcksCorrupted(), stats.getStrayAcks()));
+        StringBuilder batchSizes = new StringBuilder();
+        for (int frames = 1; frames <= CommStats.MAX_BATCH_SIZE; frames++) {
+            long count = stats.getTxBatchSizeCount(frames);
+            if (count > 0) {
+                batchSizes.append(String.format(" %d%s:%d", frames, (frames == CommStats.MAX_BATCH_SIZE) ? "+" : "", count));
+            } else {}
+        }
+        System.out.println(String.format("writes    : %d (%.1f/s), tx batch window %d us, %.2f frames per write, max %d, frames:writes%s",
+            stats.getTxFlushes(), stats.getTxFlushes() / stormSeconds, txBatchMicros, stats.getTxMeanBatchFrames(),
+            stats.getTxMaxBatchFrames(), batchSizes));
+        System.out.println(String.format("latency   : submit -> ACK p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+            confirmLatency.getRttP50Micros() / 1000.0, confirmLatency.getRttP90Micros() / 1000.0,
+            confirmLatency.getRttP99Micros() / 1000.0, confirmLatency.getRttMaxMicros() / 1000.0));
+        System.out.println(String.format("round trip: p50 %.2f ms, p99 %.2f ms, max %.2f ms, final ACK timeout %.2f ms",
+            stats.getRttP50Micros() / 1000.0, stats.getRttP99Micros() / 1000.0, stats.getRttMaxMicros() / 1000.0, stats.getRtoMicros() / 1000.0));
+        System.out.println(String.format("verify    : %d sequence errors, %d missed retransmissions, %d excess retransmissions, %d unexplained failures"
+            + " (%d retransmissions still pending at the end)", responder.getSequenceErrors(), responder.getMissedRetransmissions(),
+            responder.getExcessRetransmissions(), responder.getUnexplainedFailures(), responder.getPendingRetransmissions()));
+        List<String> errorMessages = responder.getErrorMessages();
+        for (String message : errorMessages) {
+            System.out.println("  " + message);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        StressTester tester = new StressTester();
+        tester.parseArguments(args);
+        boolean passed = tester.run();
+        System.out.println(passed ? "PASS" : "FAIL");
+        System.exit(passed ? 0 : 1);
+    }
+}
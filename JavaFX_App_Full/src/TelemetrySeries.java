@@ -0,0 +1,112 @@
+// time series of the telemetry frames MCU sends on a framed link (see FrameCodec.TYPE_TELEMETRY), kept in a fixed size ring
+// where the oldest samples are overwritten. the single writer (Rx thread of the link) never waits for readers:
+// a reader copies the samples it wants, then drops the ones the writer lapped while it was copying
+public class TelemetrySeries {
+
+    // defining flags of a sample (same as TELEMETRY_FLAG_* in control.c)
+    public static final int FLAG_CURRENT_VALID = 0x01;
+    public static final int FLAG_REVERSING = 0x02;
+    public static final int FLAG_TIMED_OUT = 0x04;
+
+    // reusable copy of the latest samples, oldest first (arrays are grown by copyLatest when needed)
+    public static class Snapshot {
+        public long[] times = new long[0];
+        public int[] speeds = new int[0];
+        public int[] currents = new int[0];
+        public int[] flags = new int[0];
+        public int count;
+    }
+
+    // defining the max number of samples kept
+    private final int capacity;
+
+    // defining the ring: arrival time (nanoClock based), signed speed (0-100 %, negative --> counter-clockwise),
+    // current (in mA) && flags of each sample [written by Rx thread only]
+    private final long[] times;
+    private final int[] speeds;
+    private final int[] currents;
+    private final int[] flags;
+
+    // defining the number of samples ever appended (volatile write publishes the ring entries before it)
+    private volatile long writeCount = 0;
+
+    // defining the sequence number of the last sample (-1 --> none yet) && the number of samples lost on the way [Rx thread only]
+    private int lastSequence = -1;
+    private volatile long lostSamples = 0;
+
+    // TelemetrySeries constructor takes the max number of samples kept
+    public TelemetrySeries(int capacity) {
+        this.capacity = capacity;
+        times = new long[capacity];
+        speeds = new int[capacity];
+        currents = new int[capacity];
+        flags = new int[capacity];
+    }
+
+    // method to add a sample (sequence is the 16 bit frame sequence number, gaps are counted as lost samples) [Rx thread only]
+    public void append(long timeNanos, int speedPercentage, boolean clockwise, int currentMilliAmps, int sampleFlags, int sequence) {
+        if (lastSequence >= 0) {
+            int gap = ((sequence - lastSequence) & 0xFFFF) - 1;
+            if (gap > 0 && gap < 0x8000) {
+                lostSamples += gap;
+            } else {}
+        } else {}
+        lastSequence = sequence;
+
+        long count = writeCount;
+        int slot = (int)(count % capacity);
+        times[slot] = timeNanos;
+        speeds[slot] = clockwise ? speedPercentage : -speedPercentage;
+        currents[slot] = currentMilliAmps;
+        flags[slot] = sampleFlags;
+        writeCount = count + 1;
+    }
+
+    // method to copy the samples that arrived at or after sinceNanos (at most capacity of them) into out, oldest first
+    // returns the number of samples copied (also in out.count)
+    public int copyLatest(long sinceNanos, Snapshot out) {
+        long end = writeCount;
+        long start = Math.max(0, end - capacity);
+        int length = (int)(end - start);
+        if (out.times.length < length) {
+            out.times = new long[capacity];
+            out.speeds = new int[capacity];
+            out.currents = new int[capacity];
+            out.flags = new int[capacity];
+        } else {}
+        for (int i = 0; i < length; i++) {
+            int slot = (int)((start + i) % capacity);
+            out.times[i] = times[slot];
+            out.speeds[i] = speeds[slot];
+            out.currents[i] = currents[slot];
+            out.flags[i] = flags[slot];
+        }
+
+        // samples overwritten while copying are dropped, so are samples older than sinceNanos:
+        // with writeCount samples published the writer may already be filling the slot of sample writeCount - capacity
+        long firstValid = Math.max(start, writeCount - capacity + 1);
+        int skip = (int) Math.min(length, firstValid - start);
+        while (skip < length && out.times[skip] - sinceNanos < 0) {
+            skip++;
+        }
+        int count = length - skip;
+        if (skip > 0) {
+            System.arraycopy(out.times, skip, out.times, 0, count);
+            System.arraycopy(out.speeds, skip, out.speeds, 0, count);
+            System.arraycopy(out.currents, skip, out.currents, 0, count);
+            System.arraycopy(out.flags, skip, out.flags, 0, count);
+        } else {}
+        out.count = count;
+        return count;
+    }
+
+    // method to get the number of samples ever received
+    public long getSampleCount() {
+        return writeCount;
+    }
+
+    // method to get the number of samples MCU sent that never arrived (ex. dropped by a full MCU Tx queue or corrupted)
+    public long getLostSamples() {
+        return lostSamples;
+    }
+}
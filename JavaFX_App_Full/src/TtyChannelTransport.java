@@ -0,0 +1,246 @@
+// for catching IO exceptions && running stty
+import java.io.File;
+import java.io.IOException;
+// for the tty opened as a channel && the buffers reused by every read/write
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+// for the thread running blocking reads
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// SerialTransport implementation for Linux tty devices (USB-serial adapters, ptys) without jSerialComm:
+// the line is configured once with stty (raw 8N1, reads return after at most READ_TIMEOUT), then the device is a plain
+// FileChannel. frames are written from, and chunks read into, direct buffers allocated once, so the hot path is one
+// write()/read() system call per frame/chunk with no stream objects && no per-byte native calls.
+// like any InterruptibleChannel, the device is closed if a thread is interrupted while reading or writing it,
+// the link then fails like an unplugged adapter
+public class TtyChannelTransport implements SerialTransport {
+
+    // defining the size of the Rx && Tx buffers
+    private static final int RX_BUFFER_SIZE = 256;
+    private static final int TX_BUFFER_SIZE = 256;
+
+    // defining how long a read waits for a first byte before checking if the port is being closed (in ms, stty counts in 0.1 s)
+    private static final int READ_TIMEOUT = 100;
+
+    // defining how long stty may take (in ms)
+    private static final int STTY_TIMEOUT = 2000;
+
+    // defining the path of the device (ex. /dev/ttyUSB0) && the name the port goes by (ex. ttyUSB0, like jSerialComm's system port name)
+    private final String devicePath;
+    private final String name;
+
+    // defining the current line rate
+    private volatile int baudRate;
+
+    // defining the factory of the reader thread (null --> a daemon platform thread)
+    private final ThreadFactory readerThreads;
+
+    // defining the device opened once for reading && once for writing (null --> closed): a FileChannel runs reads && writes
+    // under one position lock, so a single channel would hold every write back until the pending read times out
+    private volatile FileChannel readChannel;
+    private volatile FileChannel writeChannel;
+
+    // defining the Rx buffer read into by the channel && the array chunks are handed over in [reader thread only]
+    private final ByteBuffer rxBuffer = ByteBuffer.allocateDirect(RX_BUFFER_SIZE);
+    private final byte[] rxChunk = new byte[RX_BUFFER_SIZE];
+
+    // defining the Tx buffer frames are written from [guarded by this]
+    private final ByteBuffer txBuffer = ByteBuffer.allocateDirect(TX_BUFFER_SIZE);
+
+    // defining a reference to the listener that receives incoming bytes
+    private volatile ReceiveListener receiveListener;
+
+    // defining the thread running blocking reads && a flag telling it to stop
+    private Thread readerThread;
+    private volatile boolean reading = false;
+
+    // TtyChannelTransport constructor takes the port (device path, or a name under /dev like jSerialComm takes) and its baud rate
+    public TtyChannelTransport(String portName, int baudRate) {
+        this(portName, baudRate, null);
+    }
+
+    // TtyChannelTransport constructor takes the port, its baud rate and a factory for the reader thread (ex. IoThreads.factory)
+    public TtyChannelTransport(String portName, int baudRate, ThreadFactory readerThreads) {
+        this.devicePath = portName.startsWith("/") ? portName : "/dev/" + portName;
+        this.name = devicePath.startsWith("/dev/") ? devicePath.substring("/dev/".length()) : devicePath;
+        this.baudRate = baudRate;
+        this.readerThreads = readerThreads;
+    }
+
+    // method to check if this backend can be used here (Linux with stty)
+    public static boolean isSupported() {
+        return System.getProperty("os.name", "").toLowerCase().startsWith("linux") && new File("/bin/stty").canExecute();
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (writeChannel != null) {
+            return true;
+        } else {}
+        // line is set up before the device is opened, so no byte is sent or received in cooked mode
+        if (!new File(devicePath).exists() || !configure(baudRate)) {
+            return false;
+        } else {}
+        try {
+            readChannel = FileChannel.open(Paths.get(devicePath), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            writeChannel = FileChannel.open(Paths.get(devicePath), StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            closeQuietly(readChannel);
+            readChannel = null;
+            return false;
+        }
+        startReader();
+        return true;
+    }
+
+    // method to set the line up: raw 8N1 without flow control at the passed rate, a read returns as soon as
+    // a byte arrived or after READ_TIMEOUT with nothing (min 0 time n)
+    private boolean configure(int rate) {
+        ProcessBuilder stty = new ProcessBuilder("/bin/stty", "-F", devicePath, Integer.toString(rate),
+            "raw", "-echo", "-echoe", "-echok", "-echoctl", "-echoke", "cs8", "-cstopb", "-parenb", "-crtscts", "-ixon", "-ixoff",
+            "clocal", "cread", "min", "0", "time", Integer.toString(READ_TIMEOUT / 100));
+        stty.redirectErrorStream(true);
+        stty.redirectOutput(ProcessBuilder.Redirect.to(new File("/dev/null")));
+        try {
+            Process process = stty.start();
+            if (!process.waitFor(STTY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroy();
+                return false;
+            } else {}
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return writeChannel != null;
+    }
+
+    @Override
+    public void setReceiveListener(ReceiveListener listener) {
+        receiveListener = listener;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        FileChannel currentChannel = writeChannel;
+        if (currentChannel == null) {
+            throw new IOException("Port " + name + " is not open");
+        } else {}
+        // frames fit in one buffer, longer writes go out in buffer sized pieces
+        for (int position = offset; position < offset + length; position += TX_BUFFER_SIZE) {
+            txBuffer.clear();
+            txBuffer.put(data, position, Math.min(TX_BUFFER_SIZE, offset + length - position));
+            txBuffer.flip();
+            while (txBuffer.hasRemaining()) {
+                currentChannel.write(txBuffer);
+            }
+        }
+    }
+
+    // instance method to start the thread receiving with blocking reads
+    private void startReader() {
+        reading = true;
+        Runnable reader = () -> {
+            FileChannel currentChannel = readChannel;
+            while (reading) {
+                int bytesRead;
+                try {
+                    rxBuffer.clear();
+                    // a tty read that times out with nothing shows up as end of stream (-1)
+                    bytesRead = currentChannel.read(rxBuffer);
+                } catch (ClosedChannelException e) {
+                    break; // port is being closed
+                } catch (IOException e) {
+                    break; // adapter unplugged (or pty peer gone)
+                }
+                if (bytesRead > 0) {
+                    rxBuffer.flip();
+                    rxBuffer.get(rxChunk, 0, bytesRead);
+                    ReceiveListener listener = receiveListener;
+                    if (listener != null) {
+                        listener.onBytesReceived(rxChunk, bytesRead);
+                    } else {} // nobody is listening --> drop it
+                } else {} // read timed out --> check if still reading
+            }
+        };
+        if (readerThreads != null) {
+            readerThread = readerThreads.newThread(reader);
+        } else {
+            readerThread = new Thread(reader, "tty-rx-" + name);
+            // reader thread must never keep the JVM alive on its own
+            readerThread.setDaemon(true);
+        }
+        readerThread.start();
+    }
+
+    @Override
+    public void close() {
+        Thread reader;
+        FileChannel currentReadChannel;
+        FileChannel currentWriteChannel;
+        synchronized (this) {
+            reader = readerThread;
+            currentReadChannel = readChannel;
+            currentWriteChannel = writeChannel;
+            readerThread = null;
+            readChannel = null;
+            writeChannel = null;
+        }
+        if (currentWriteChannel == null) {
+            return;
+        } else {}
+        // stop the reader thread (it notices within READ_TIMEOUT), then close the device
+        reading = false;
+        if (reader != null) {
+            try {
+                reader.join(2 * READ_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {}
+        closeQuietly(currentReadChannel);
+        closeQuietly(currentWriteChannel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to do with it
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        // applied right away on the open device (bytes still in the OS Tx queue may go out at the new rate)
+        if (!configure(baudRate)) {
+            return false;
+        } else {}
+        this.baudRate = baudRate;
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+// for executor interfaces && futures
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+
+// ScheduledExecutorService running in virtual time: tasks only run when the owner calls advanceTo/runNext,
+// on the owner's thread, ordered by (due time, submission order). Used by SessionReplayer so a replay is
+// deterministic and can run faster (or slower) than real time
+public class VirtualTimeScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    // one queued task
+    private class VirtualTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        // due time (virtual ns)
+        long time;
+        // submission order, breaks ties between tasks due at the same time
+        final long sequence;
+        // period (virtual ns): > 0 fixed rate, < 0 fixed delay, 0 one shot
+        final long period;
+
+        VirtualTask(Callable<V> callable, long time) {
+            super(callable);
+            this.time = time;
+            this.period = 0;
+            this.sequence = nextSequence();
+        }
+
+        VirtualTask(Runnable runnable, long time, long period) {
+            super(runnable, null);
+            this.time = time;
+            this.period = period;
+            this.sequence = nextSequence();
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (super.runAndReset()) {
+                // periodic task keeps going until it throws or is cancelled (same as ScheduledThreadPoolExecutor)
+                time = (period > 0) ? time + period : now - period;
+                try {
+                    enqueue(this);
+                } catch (RejectedExecutionException e) {
+                    // scheduler was shut down --> periodic task ends here
+                }
+            } else {}
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - now, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof VirtualTask) {
+                VirtualTask<?> task = (VirtualTask<?>) other;
+                int byTime = Long.compare(time, task.time);
+                return (byTime != 0) ? byTime : Long.compare(sequence, task.sequence);
+            } else {}
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    // defining the queue of pending tasks [guarded by this]
+    private final PriorityQueue<VirtualTask<?>> queue = new PriorityQueue<>();
+
+    // defining the current virtual time (ns)
+    private volatile long now;
+
+    // defining a counter used to order tasks due at the same time [guarded by this]
+    private long nextSequence = 0;
+
+    // defining a flag to indicate that no new task is accepted anymore
+    private volatile boolean shutdown = false;
+
+    // VirtualTimeScheduler constructor takes the virtual time to start at (ns)
+    public VirtualTimeScheduler(long startNanos) {
+        this.now = startNanos;
+    }
+
+    // current virtual time, to be used wherever System.nanoTime would be
+    public long nanoTime() {
+        return now;
+    }
+
+    // method to hand out the submission order of a new task (tasks may be submitted from other threads)
+    private synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    private synchronized void enqueue(VirtualTask<?> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        } else {}
+        queue.add(task);
+    }
+
+    // due time of the next pending task, Long.MAX_VALUE if there is none
+    public synchronized long nextTaskTime() {
+        VirtualTask<?> task = queue.peek();
+        return (task == null) ? Long.MAX_VALUE : task.time;
+    }
+
+    // method to run the next pending task (moving time forward to it), returns false if there is none
+    public boolean runNext() {
+        VirtualTask<?> task;
+        synchronized (this) {
+            task = queue.poll();
+            if (task == null) {
+                return false;
+            } else {}
+            now = Math.max(now, task.time);
+        }
+        if (!task.isCancelled()) {
+            task.run();
+        } else {}
+        return true;
+    }
+
+    // method to run all tasks due up to the given time, then set the clock to it
+    public void advanceTo(long timeNanos) {
+        while (nextTaskTime() <= timeNanos) {
+            runNext();
+        }
+        now = Math.max(now, timeNanos);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        enqueue(new VirtualTask<Void>(command, now, 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        VirtualTask<Void> task = new VirtualTask<>(command, now + unit.toNanos(Math.max(0, delay)), 0);
+        enqueue(task);
+        return task;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        VirtualTask<V> task = new VirtualTask<>(callable, now + unit.toNanos(Math.max(0, delay)));
+        enqueue(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        VirtualTask<Void> task = new VirtualTask<>(command, now + unit.toNanos(initialDelay), unit.toNanos(period));
+        enqueue(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        VirtualTask<Void> task = new VirtualTask<>(command, now + unit.toNanos(initialDelay), -unit.toNanos(delay));
+        enqueue(task);
+        return task;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>(queue);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        // nothing runs on its own, so there is nothing to wait for
+        return isTerminated();
+    }
+}
@@ -0,0 +1,51 @@
+// checks the bytes of the HELLOs a host sends: legacy firmware applies each of them as a command,
+// so every one of them must be a stop in the clockwise direction (run with make test)
+public class FrameCodecTest {
+
+    // defining the speed levels legacy firmware spins the motor at (see APP_uint8MapSpeedLvlToPercentage in control.c)
+    private static final int[] RUNNING_LEVELS = {3, 6, 9, 12, 15};
+
+    public static void main(String[] args) {
+        // probe of PortDiscovery && the HELLOs negotiateLink sends at the new rate
+        checkHello(new int[0]);
+        // first HELLO of negotiateLink (same candidates as SerialCommManager.BAUD_CANDIDATES)
+        checkHello(new int[] { 115200, 57600, 38400, 19200, 9600 });
+        // single rates a link may be asked to settle on
+        for (int baudRate : new int[] { 9600, 19200, 38400, 57600, 115200 }) {
+            checkHello(new int[] { baudRate });
+        }
+        System.out.println("FrameCodecTest: all checks passed");
+    }
+
+    // method to encode a HELLO, check every byte against the legacy speed levels && decode it back
+    private static void checkHello(int[] baudCandidates) {
+        byte[] frame = new byte[FrameCodec.MAX_FRAME_SIZE];
+        int length = FrameCodec.encodeHello(baudCandidates, frame);
+        for (int i = 0; i < length; i++) {
+            int value = frame[i] & 0xFF;
+            check(String.format("byte %d (0x%02X) of a HELLO has the direction bit clear", i, value), (value & 0x10) == 0);
+            for (int level : RUNNING_LEVELS) {
+                check(String.format("byte %d (0x%02X) of a HELLO is not speed level %d", i, value, level), (value & 0x0F) != level);
+            }
+        }
+
+        int[] decoded = new int[1];
+        FrameCodec.Decoder decoder = new FrameCodec.Decoder((type, sequence, payload, payloadLength) -> {
+            check("decoded frame is a HELLO", type == FrameCodec.TYPE_HELLO);
+            check("HELLO carries the protocol version", payload[0] == FrameCodec.VERSION);
+            check("HELLO carries every candidate", payloadLength >= 1 + 2 * baudCandidates.length);
+            for (int i = 0; i < baudCandidates.length; i++) {
+                check("HELLO carries candidate " + baudCandidates[i], FrameCodec.readShort(payload, 1 + 2 * i) * FrameCodec.BAUD_UNIT == baudCandidates[i]);
+            }
+            decoded[0]++;
+        });
+        decoder.feed(frame, 0, length);
+        check("HELLO decodes with a valid CRC", decoded[0] == 1);
+    }
+
+    private static void check(String what, boolean condition) {
+        if (!condition) {
+            throw new AssertionError("failed: " + what);
+        } else {}
+    }
+}
@@ -0,0 +1,85 @@
+// for the ports probed
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+// probes simulated MCUs && ports that answer with something else, and checks which ones are taken for an MCU (run with make test)
+public class PortDiscoveryTest {
+
+    public static void main(String[] args) throws Exception {
+        SimulatedMcuTransport framed = new SimulatedMcuTransport("framed", 1000, 0, 0.0, 1);
+        framed.enableFramedFirmware(38400);
+        SimulatedMcuTransport legacy = new SimulatedMcuTransport("legacy", 1000, 0, 0.0, 1);
+        Function<String, SerialTransport> transports = portName -> {
+            switch (portName) {
+                case "framed": return framed;
+                case "legacy": return legacy;
+                // answers a HELLO with a single 0xFF
+                case "one-ff": return new ScriptedTransport(portName, hello -> new byte[] { (byte) 0xFF });
+                // acks every byte like legacy firmware, then sends a byte of its own
+                case "ff-and-noise": return new ScriptedTransport(portName, hello -> {
+                    byte[] answer = new byte[hello.length + 1];
+                    Arrays.fill(answer, (byte) 0xFF);
+                    answer[hello.length] = 0x42;
+                    return answer;
+                });
+                // echoes what it gets
+                case "echo": return new ScriptedTransport(portName, hello -> hello);
+                default: return new ScriptedTransport(portName, hello -> new byte[0]);
+            }
+        };
+
+        PortDiscovery discovery = new PortDiscovery(transports, portName -> false);
+        List<PortDiscovery.Result> results = discovery.probe(Arrays.asList("framed", "legacy", "one-ff", "ff-and-noise", "echo", "silent")).get();
+        check("framed firmware answers framed", results.get(0).protocolVersion == FrameCodec.VERSION);
+        check("legacy firmware answers legacy", results.get(1).protocolVersion == 0);
+        for (PortDiscovery.Result result : results.subList(2, results.size())) {
+            check(result.portName + " is not taken for an MCU", !result.isResponding());
+        }
+        check("legacy firmware was left stopped", legacy.getSpeedPercentage() == 0 && legacy.getSpeedDir() == 0);
+        System.out.println("PortDiscoveryTest: all checks passed");
+    }
+
+    // port that answers every write with the bytes its script makes of them
+    private static class ScriptedTransport implements SerialTransport {
+        private final String name;
+        private final Function<byte[], byte[]> script;
+        private volatile ReceiveListener receiveListener;
+
+        ScriptedTransport(String name, Function<byte[], byte[]> script) {
+            this.name = name;
+            this.script = script;
+        }
+
+        @Override
+        public boolean open() { return true; }
+
+        @Override
+        public boolean isOpen() { return true; }
+
+        @Override
+        public void setReceiveListener(ReceiveListener listener) { receiveListener = listener; }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            byte[] answer = script.apply(Arrays.copyOfRange(data, offset, offset + length));
+            ReceiveListener listener = receiveListener;
+            if (listener != null && answer.length > 0) {
+                listener.onBytesReceived(answer, answer.length);
+            } else {}
+        }
+
+        @Override
+        public void close() {}
+
+        @Override
+        public String getName() { return name; }
+    }
+
+    private static void check(String what, boolean condition) {
+        if (!condition) {
+            throw new AssertionError("failed: " + what);
+        } else {}
+    }
+}
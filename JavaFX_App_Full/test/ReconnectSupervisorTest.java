@@ -0,0 +1,92 @@
+// for switching the simulated wire off && on
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+// drives a simulated outage through MultiMotorManager's auto reconnect and checks what MCU is left running once the link is back
+// (run with make test, exits with a non zero status on the first failed check)
+public class ReconnectSupervisorTest {
+
+    // defining how long a check waits for the condition it expects (in ms)
+    private static final long TIMEOUT = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        stopDuringOutageStaysStopped();
+        confirmedCommandRestoredAfterOutage();
+        System.out.println("ReconnectSupervisorTest: all checks passed");
+    }
+
+    // operator stops the motor while MCU is unreachable --> the reconnect must not bring the old setpoint back
+    private static void stopDuringOutageStaysStopped() throws Exception {
+        AtomicBoolean outage = new AtomicBoolean(false);
+        MultiMotorManager devices = new MultiMotorManager(false);
+        devices.enableAutoReconnect();
+        SimulatedMcuTransport mcu = newMcu("sim-stop", outage);
+        try {
+            SerialCommManager manager = connect(devices, mcu);
+            manager.setLastSentByte(MotorCommand.percent(60, true));
+            waitUntil("MCU runs at 60%", () -> mcu.getSpeedPercentage() == 60);
+
+            outage.set(true);
+            waitUntil("outage detected", () -> devices.isRecovering(mcu.getName()));
+            manager.setLastSentByte((byte) 0x00);
+            outage.set(false);
+
+            waitUntil("device recovered", () -> !devices.isRecovering(mcu.getName()));
+            Thread.sleep(1000);
+            check("MCU stays stopped after the reconnect", mcu.getSpeedPercentage() == 0);
+        } finally {
+            devices.closeAll();
+        }
+    }
+
+    // nothing requested during the outage --> MCU gets back the last command it confirmed
+    private static void confirmedCommandRestoredAfterOutage() throws Exception {
+        AtomicBoolean outage = new AtomicBoolean(false);
+        MultiMotorManager devices = new MultiMotorManager(false);
+        devices.enableAutoReconnect();
+        SimulatedMcuTransport mcu = newMcu("sim-restore", outage);
+        try {
+            SerialCommManager manager = connect(devices, mcu);
+            manager.setLastSentByte(MotorCommand.percent(60, true));
+            waitUntil("MCU runs at 60%", () -> mcu.getSpeedPercentage() == 60);
+
+            outage.set(true);
+            waitUntil("outage detected", () -> devices.isRecovering(mcu.getName()));
+            outage.set(false);
+
+            waitUntil("device recovered", () -> !devices.isRecovering(mcu.getName()));
+            Thread.sleep(1000);
+            check("MCU runs at 60% again after the reconnect", mcu.getSpeedPercentage() == 60);
+        } finally {
+            devices.closeAll();
+        }
+    }
+
+    // method to create a simulated MCU acking every frame after 1 ms, or losing every frame while the outage is on
+    private static SimulatedMcuTransport newMcu(String name, AtomicBoolean outage) {
+        return new SimulatedMcuTransport(name, frame -> outage.get() ? -1 : 1_000_000L, null, System::nanoTime);
+    }
+
+    // method to add the simulated MCU as a device and start talking to it
+    private static SerialCommManager connect(MultiMotorManager devices, SimulatedMcuTransport mcu) {
+        check("device added", devices.addDevice(mcu));
+        devices.startTransmission(mcu.getName());
+        return devices.getManager(mcu.getName());
+    }
+
+    private static void waitUntil(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("timed out waiting for: " + what);
+            } else {}
+            Thread.sleep(10);
+        }
+    }
+
+    private static void check(String what, boolean condition) {
+        if (!condition) {
+            throw new AssertionError("failed: " + what);
+        } else {}
+    }
+}
@@ -5,12 +5,15 @@
 #include "bit_math.h"
 #include <util/delay.h>
 #include <avr/interrupt.h>
+#include <util/crc16.h>
+#include <stdlib.h>
 #include "MPORT.h"
 #include "MDIO.h"
 #include "HLED.h"
 #include "MGIE.h"
 #include "MEXTI.h"
 #include "MTIMER.h"
+#include "MADC.h"
 #include "HSCHEDULER.h"
 #include "usart.h"
 #include "Motor.h"
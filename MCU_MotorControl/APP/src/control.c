@@ -6,12 +6,51 @@
 #define CLOCKWISE   Forward
 #define ANTICLOCKWISE   Backward
 
+/* framed protocol (JavaFX_App_Full/src/FrameCodec.java):
+ * START | TYPE << 4 | VERSION | SEQ lo | SEQ hi | LEN | PAYLOAD | CRC lo | CRC hi
+ * CRC-16/CCITT-FALSE (xmodem polynomial, init 0xFFFF) over TYPE/VERSION .. PAYLOAD
+ * link starts in the legacy single byte protocol @ 9600, a HELLO moves it to frames (and maybe a faster baud rate),
+ * START is never a legacy command (speed level 5 is unused) so frames are recognized in both protocols */
+#define FRAME_START             0xA5
+#define FRAME_VERSION           1
+#define FRAME_TYPE_CMD          1
+#define FRAME_TYPE_ACK          2
+#define FRAME_TYPE_HELLO_REPLY  4
+#define FRAME_TYPE_TELEMETRY    5
+/* even so the TYPE/VERSION byte of a HELLO is a clockwise stop for firmware that predates frames */
+#define FRAME_TYPE_HELLO        6
+#define FRAME_HEADER_SIZE       5
+#define FRAME_CRC_SIZE          2
+#define FRAME_MAX_PAYLOAD       32
+#define FRAME_MAX_SIZE          (FRAME_HEADER_SIZE + FRAME_MAX_PAYLOAD + FRAME_CRC_SIZE)
+#define FRAME_BAUD_UNIT         100UL
+
+#define LEGACY_BAUD_RATE        9600UL
+/* max error of a generated baud rate (tenths of a percent) */
+#define MAX_BAUD_ERROR          20
+/* control ticks (250 ms) without a valid frame before a framed link falls back to legacy @ 9600 */
+#define FRAMED_SILENCE_TICKS    12
+
+/* telemetry frame (sent every 100 ms once framed, see RUNNABLE_TELEMETRY):
+ * applied speed (0-100 %) | direction | flags | current (u16 in mA) */
+#define TELEMETRY_PAYLOAD_SIZE      5
+#define TELEMETRY_FLAG_CURRENT_VALID    0x01
+#define TELEMETRY_FLAG_REVERSING        0x02
+#define TELEMETRY_FLAG_TIMED_OUT        0x04
+
+/* current sensing: shunt amplifier output on an ADC channel, off by default (current is reported as not valid) */
+#define TELEMETRY_CURRENT_SENSE_ENABLED 0
+#define TELEMETRY_CURRENT_CHANNEL       0
+/* mA per ADC step (AVCC reference, 10 bit result) */
+#define TELEMETRY_MA_PER_STEP           5UL
+
 typedef enum 
 {   
     FULL_DATA_BYTE = 0,
     BYTE_ID,
     SPEED_LVL,
     SPEED_DIR,
+    SPEED_PCT,
     NUM_OF_DATA_FIELDS,
 } APP_enuDataFields_t;
 
@@ -23,20 +62,257 @@ volatile static uint8_t global_uint8CalledWithoutNewDataCounter = 0;
 volatile static uint8_t arr_uint8CurrDataFields[NUM_OF_DATA_FIELDS];
 volatile static uint8_t arr_uint8PrevDataFields[NUM_OF_DATA_FIELDS];
 
+/* framed link state */
+volatile static uint8_t global_uint8IsFramed = false;
+volatile static uint8_t global_uint8HasReceivedFrameWithinWindow = false;
+volatile static uint8_t global_uint8TicksWithoutFrame = 0;
+volatile static uint32_t global_uint32BaudRate = LEGACY_BAUD_RATE;
+volatile static uint32_t global_uint32PendingBaudRate = 0;
+
+/* frame being assembled by the RX ISR */
+volatile static uint8_t arr_uint8RxFrame[FRAME_MAX_SIZE];
+volatile static uint8_t global_uint8RxFramePos = 0;
+volatile static uint8_t global_uint8RxFrameLen = 0;
+volatile static uint16_t global_uint16RxFrameCrc = 0xFFFF;
+
+/* last CMD frame received (speed in %, direction, sequence number) */
+volatile static uint8_t global_uint8CmdSpeed = 0;
+volatile static uint8_t global_uint8CmdDir = 0;
+volatile static uint16_t global_uint16CmdSeq = 0;
+volatile static uint8_t global_uint8HasCmdSeq = false;
+
+/* telemetry state (sequence number of the next frame, motor braked for a reversal on the last control tick) */
+volatile static uint16_t global_uint16TelemetrySeq = 0;
+volatile static uint8_t global_uint8IsReversing = false;
+
+static const uint8_t global_uint8AckByte = ACK_BYTE;
+
+void APP_voidParseFrameByte(uint8_t data);
+uint8_t APP_uint8MapSpeedLvlToPercentage(void);
+
 void echoReceivedByte(u8 data)
 {
-    /* transfer received data into a variable */
-    arr_uint8CurrDataFields[FULL_DATA_BYTE] =  data;
-    UART_SendByte(ACK_BYTE);    
-    global_uint8HasReceivedDataWithinWindow = true;  
-    HLED_uint8SetLEDValue(HLED_RECEPTION_SUCCESSFUL, HLED_ON);
+    /* frame bytes go to the parser, START is never a legacy command */
+    if ((global_uint8RxFramePos != 0) || (data == FRAME_START))
+    {
+        APP_voidParseFrameByte(data);
+    }
+    else if (!global_uint8IsFramed)
+    {
+        /* transfer received data into a variable */
+        arr_uint8CurrDataFields[FULL_DATA_BYTE] =  data;
+        UART_QueueBytes(&global_uint8AckByte, 1);
+        global_uint8HasReceivedDataWithinWindow = true;  
+        HLED_uint8SetLEDValue(HLED_RECEPTION_SUCCESSFUL, HLED_ON);
+    }
+    else {} /* noise between frames of a framed link */
+}
+
+void APP_voidSendFrame(uint8_t type, uint16_t seq, const uint8_t *payload, uint8_t len)
+{
+    uint8_t local_arr_uint8Frame[FRAME_MAX_SIZE];
+    uint16_t local_uint16Crc = 0xFFFF;
+    uint8_t local_uint8Iter;
+
+    local_arr_uint8Frame[0] = FRAME_START;
+    local_arr_uint8Frame[1] = (type << 4) | FRAME_VERSION;
+    local_arr_uint8Frame[2] = (uint8_t)seq;
+    local_arr_uint8Frame[3] = (uint8_t)(seq >> 8);
+    local_arr_uint8Frame[4] = len;
+    for (local_uint8Iter = 0; local_uint8Iter < len; local_uint8Iter++)
+    {
+        local_arr_uint8Frame[FRAME_HEADER_SIZE + local_uint8Iter] = payload[local_uint8Iter];
+    }
+
+    for (local_uint8Iter = 1; local_uint8Iter < FRAME_HEADER_SIZE + len; local_uint8Iter++)
+    {
+        local_uint16Crc = _crc_xmodem_update(local_uint16Crc, local_arr_uint8Frame[local_uint8Iter]);
+    }
+    local_arr_uint8Frame[FRAME_HEADER_SIZE + len] = (uint8_t)local_uint16Crc;
+    local_arr_uint8Frame[FRAME_HEADER_SIZE + len + 1] = (uint8_t)(local_uint16Crc >> 8);
+
+    /* never blocks the ISR, a frame that does not fit is dropped (app retransmits the command) */
+    UART_QueueBytes(local_arr_uint8Frame, FRAME_HEADER_SIZE + len + FRAME_CRC_SIZE);
+}
+
+void APP_voidHandleHello(const volatile uint8_t *payload, uint8_t len)
+{
+    uint8_t local_arr_uint8Reply[3];
+    uint32_t local_uint32ChosenBaudRate = global_uint32BaudRate;
+    uint32_t local_uint32Candidate;
+    uint8_t local_uint8Iter;
+
+    /* take the first offered baud rate (best first) the 8MHz clock can generate closely enough */
+    for (local_uint8Iter = 1; local_uint8Iter + 1 < len; local_uint8Iter += 2)
+    {
+        local_uint32Candidate = (payload[local_uint8Iter] | ((uint16_t)payload[local_uint8Iter + 1] << 8)) * FRAME_BAUD_UNIT;
+        if ((local_uint32Candidate != 0) && (abs(UART_GetBaudRateError(local_uint32Candidate, UART_SPEED_DOUBLE)) <= MAX_BAUD_ERROR))
+        {
+            local_uint32ChosenBaudRate = local_uint32Candidate;
+            break;
+        }
+        else {}
+    }
+
+    /* new session: sequence numbers start over */
+    global_uint8IsFramed = true;
+    global_uint8IsFirstReceivedByte = true;
+    global_uint8HasCmdSeq = false;
+
+    local_arr_uint8Reply[0] = FRAME_VERSION;
+    local_arr_uint8Reply[1] = (uint8_t)(local_uint32ChosenBaudRate / FRAME_BAUD_UNIT);
+    local_arr_uint8Reply[2] = (uint8_t)((local_uint32ChosenBaudRate / FRAME_BAUD_UNIT) >> 8);
+    APP_voidSendFrame(FRAME_TYPE_HELLO_REPLY, 0, local_arr_uint8Reply, 3);
+
+    /* reply goes out at the current rate, the switch happens on the next control tick once it is sent */
+    if (local_uint32ChosenBaudRate != global_uint32BaudRate)
+    {
+        global_uint32PendingBaudRate = local_uint32ChosenBaudRate;
+    }
+    else {}
+}
+
+void APP_voidHandleFrame(void)
+{
+    uint8_t local_uint8Type = arr_uint8RxFrame[1] >> 4;
+    uint16_t local_uint16Seq = arr_uint8RxFrame[2] | ((uint16_t)arr_uint8RxFrame[3] << 8);
+    uint8_t local_uint8Len = arr_uint8RxFrame[4];
+
+    global_uint8HasReceivedFrameWithinWindow = true;
+
+    if ((local_uint8Type == FRAME_TYPE_CMD) && (local_uint8Len >= 2))
+    {
+        global_uint8IsFramed = true;
+
+        /* ACK names the frame it acks */
+        APP_voidSendFrame(FRAME_TYPE_ACK, local_uint16Seq, NULL, 0);
+
+        /* a retransmitted older frame overtaken by a newer one is acked but never applied */
+        if (global_uint8HasCmdSeq && ((int16_t)(local_uint16Seq - global_uint16CmdSeq) < 0))
+        {
+            return;
+        }
+        else {}
+
+        global_uint8CmdSpeed = (arr_uint8RxFrame[5] > 100) ? 100 : arr_uint8RxFrame[5];
+        global_uint8CmdDir = arr_uint8RxFrame[6] & 0x01;
+        global_uint16CmdSeq = local_uint16Seq;
+        global_uint8HasCmdSeq = true;
+        global_uint8HasReceivedDataWithinWindow = true;
+
+        /* continuous setpoints (app ramps them every 20 ms) must not wait for the 250 ms tick: a new speed in the
+           direction the motor already turns is only a duty cycle write, a reversal is left to the tick (it brakes first) */
+        if (!global_uint8IsFirstReceivedByte && (global_uint8CmdDir == arr_uint8PrevDataFields[SPEED_DIR]))
+        {
+            Motor_SetSpeed(global_uint8CmdSpeed);
+        }
+        else {}
+        HLED_uint8SetLEDValue(HLED_RECEPTION_SUCCESSFUL, HLED_ON);
+    }
+    else if ((local_uint8Type == FRAME_TYPE_HELLO) && (local_uint8Len >= 1))
+    {
+        APP_voidHandleHello(&arr_uint8RxFrame[FRAME_HEADER_SIZE], local_uint8Len);
+    }
+    else {} /* unknown frame type */
+}
+
+void APP_voidParseFrameByte(uint8_t data)
+{
+    arr_uint8RxFrame[global_uint8RxFramePos++] = data;
+
+    /* CRC is updated byte by byte so the ISR never loops over a whole frame */
+    if (global_uint8RxFramePos == 1)
+    {
+        global_uint16RxFrameCrc = 0xFFFF;
+        return;
+    }
+    else if ((global_uint8RxFramePos <= FRAME_HEADER_SIZE) || (global_uint8RxFramePos <= FRAME_HEADER_SIZE + global_uint8RxFrameLen))
+    {
+        global_uint16RxFrameCrc = _crc_xmodem_update(global_uint16RxFrameCrc, data);
+    }
+    else {}
+
+    if ((global_uint8RxFramePos == 2) && ((data & 0x0F) != FRAME_VERSION))
+    {
+        /* unknown version --> resync on next START */
+        global_uint8RxFramePos = 0;
+    }
+    else if (global_uint8RxFramePos == FRAME_HEADER_SIZE)
+    {
+        if (data > FRAME_MAX_PAYLOAD)
+        {
+            global_uint8RxFramePos = 0;
+        }
+        else
+        {
+            global_uint8RxFrameLen = data;
+        }
+    }
+    else if ((global_uint8RxFramePos > FRAME_HEADER_SIZE) && (global_uint8RxFramePos == FRAME_HEADER_SIZE + global_uint8RxFrameLen + FRAME_CRC_SIZE))
+    {
+        global_uint8RxFramePos = 0;
+        if (global_uint16RxFrameCrc == (arr_uint8RxFrame[FRAME_HEADER_SIZE + global_uint8RxFrameLen] | ((uint16_t)data << 8)))
+        {
+            APP_voidHandleFrame();
+        }
+        else {} /* corrupted frame --> app retransmits it */
+    }
+    else {}
+}
+
+void APP_voidServiceLink(void)
+{
+    /* baud rate switch waits for the HELLO reply to be fully sent */
+    if ((global_uint32PendingBaudRate != 0) && UART_IsTxIdle())
+    {
+        UART_ChangeBaudRate(global_uint32PendingBaudRate, UART_SPEED_DOUBLE);
+        global_uint32BaudRate = global_uint32PendingBaudRate;
+        global_uint32PendingBaudRate = 0;
+        global_uint8RxFramePos = 0;
+        global_uint8TicksWithoutFrame = 0;
+        return;
+    }
+    else {}
+
+    if (global_uint8HasReceivedFrameWithinWindow)
+    {
+        global_uint8HasReceivedFrameWithinWindow = false;
+        global_uint8TicksWithoutFrame = 0;
+    }
+    else if (global_uint8IsFramed && (++global_uint8TicksWithoutFrame >= FRAMED_SILENCE_TICKS))
+    {
+        /* app is gone or cannot hear us at this rate --> back to what every app version speaks */
+        if (global_uint32BaudRate != LEGACY_BAUD_RATE)
+        {
+            UART_ChangeBaudRate(LEGACY_BAUD_RATE, UART_SPEED_NORMAL);
+            global_uint32BaudRate = LEGACY_BAUD_RATE;
+        }
+        else {}
+        global_uint8IsFramed = false;
+        global_uint8IsFirstReceivedByte = true;
+        global_uint8HasCmdSeq = false;
+        global_uint8RxFramePos = 0;
+        global_uint8TicksWithoutFrame = 0;
+    }
+    else {}
 }
 
 void APP_voidExtractDataFromReceivedByte(void)
 {
-    arr_uint8CurrDataFields[BYTE_ID] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0xE0) >> ID_OFFSET;
-    arr_uint8CurrDataFields[SPEED_DIR] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0x10) >> DIR_OFFSET;
-    arr_uint8CurrDataFields[SPEED_LVL] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0x0F);
+    if (global_uint8IsFramed)
+    {
+        /* sequence number takes the role of the ID (only its low byte is needed to spot a retransmission) */
+        arr_uint8CurrDataFields[BYTE_ID] = (uint8_t)global_uint16CmdSeq;
+        arr_uint8CurrDataFields[SPEED_DIR] = global_uint8CmdDir;
+        arr_uint8CurrDataFields[SPEED_PCT] = global_uint8CmdSpeed;
+    }
+    else
+    {
+        arr_uint8CurrDataFields[BYTE_ID] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0xE0) >> ID_OFFSET;
+        arr_uint8CurrDataFields[SPEED_DIR] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0x10) >> DIR_OFFSET;
+        arr_uint8CurrDataFields[SPEED_LVL] = (arr_uint8CurrDataFields[FULL_DATA_BYTE] & 0x0F);
+        arr_uint8CurrDataFields[SPEED_PCT] = APP_uint8MapSpeedLvlToPercentage();
+    }
 }
 
 void APP_voidControlSystemInit(void)
@@ -63,6 +339,12 @@ void APP_voidControlSystemInit(void)
     /* Initialize UART with specified configuration */
     UART_Init(&uartConfig);
 
+#if TELEMETRY_CURRENT_SENSE_ENABLED
+    /* ADC clock 8MHz / 64 = 125 kHz, first conversion is read by the first telemetry tick */
+    MADC_Init(MADC_REF_AVCC, MADC_PRESCALER_64);
+    MADC_StartConversion(TELEMETRY_CURRENT_CHANNEL);
+#endif
+
 	HSCHEDULER_voidInit();
 }
 
@@ -108,6 +390,8 @@ uint8_t APP_uint8MapSpeedLvlToPercentage(void)
 
 void APP_voidScheduledControlFunc(void)
 {
+    APP_voidServiceLink();
+
     if (global_uint8HasReceivedDataWithinWindow)
     {
         global_uint8HasReceivedDataWithinWindow = false;
@@ -156,18 +440,20 @@ void APP_voidScheduledControlFunc(void)
 
             /* light up LED for this action */
             HLED_uint8SetLEDValue(HLED_SPEED_REVERSE, HLED_ON);
+            global_uint8IsReversing = true;
         }
         else 
         {
             /* no need to reset speed */
             HLED_uint8SetLEDValue(HLED_SPEED_REVERSE, HLED_OFF);
+            global_uint8IsReversing = false;
 
             /* set dir */
             Motor_SetDirection(arr_uint8CurrDataFields[SPEED_DIR]);
         } 
 
         /* set motor speed */
-        Motor_SetSpeed(APP_uint8MapSpeedLvlToPercentage());
+        Motor_SetSpeed(arr_uint8CurrDataFields[SPEED_PCT]);
 
         /* light up LED for this action to indicate success */
         HLED_uint8SetLEDValue(HLED_SUCCESSFUL_TRANSACTION, HLED_ON);
@@ -182,3 +468,50 @@ void APP_voidScheduledControlFunc(void)
         global_uint8CalledWithoutNewDataCounter++;
     }
 }
+
+void APP_voidSendTelemetry(void)
+{
+    uint8_t local_arr_uint8Payload[TELEMETRY_PAYLOAD_SIZE];
+    uint8_t local_uint8Flags = 0;
+    uint16_t local_uint16CurrentMa = 0;
+
+    /* a legacy link only carries commands && acks */
+    if (!global_uint8IsFramed)
+    {
+        return;
+    }
+    else {}
+
+#if TELEMETRY_CURRENT_SENSE_ENABLED
+    /* conversion was started on the previous tick, never wait for it inside the scheduler */
+    if (MADC_IsConversionDone())
+    {
+        local_uint16CurrentMa = (uint16_t)(MADC_GetResult() * TELEMETRY_MA_PER_STEP);
+        local_uint8Flags |= TELEMETRY_FLAG_CURRENT_VALID;
+    }
+    else {}
+    MADC_StartConversion(TELEMETRY_CURRENT_CHANNEL);
+#endif
+
+    if (global_uint8IsReversing)
+    {
+        local_uint8Flags |= TELEMETRY_FLAG_REVERSING;
+    }
+    else {}
+
+    if (global_uint8HasTimedOut)
+    {
+        local_uint8Flags |= TELEMETRY_FLAG_TIMED_OUT;
+    }
+    else {}
+
+    /* speed && direction applied to the motor (there is no speed sensor), direction is encoded like a CMD frame */
+    local_arr_uint8Payload[0] = Motor_GetSpeed();
+    local_arr_uint8Payload[1] = Motor_GetDirection();
+    local_arr_uint8Payload[2] = local_uint8Flags;
+    local_arr_uint8Payload[3] = (uint8_t)local_uint16CurrentMa;
+    local_arr_uint8Payload[4] = (uint8_t)(local_uint16CurrentMa >> 8);
+
+    /* a frame that does not fit the TX queue is dropped, app counts it from the sequence gap */
+    APP_voidSendFrame(FRAME_TYPE_TELEMETRY, global_uint16TelemetrySeq++, local_arr_uint8Payload, TELEMETRY_PAYLOAD_SIZE);
+}
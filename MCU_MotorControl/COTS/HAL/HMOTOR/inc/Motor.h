@@ -9,5 +9,9 @@ void Motor_SetSpeed(u8 speed);
 void Motor_SetDirection(int dir);
 void Motor_Brake(void);
 
+// Getters of the speed (0-100%) && direction last applied (there is no speed sensor, so this is what the motor is driven at)
+u8 Motor_GetSpeed(void);
+u8 Motor_GetDirection(void);
+
 
 #endif
\ No newline at end of file
@@ -6,6 +6,10 @@
 #include "TIMER0_Config.h"
 #include "Motor.h"
 
+// Speed (0-100%) && direction last applied
+static volatile u8 appliedSpeed = 0;
+static volatile u8 appliedDirection = Backward;
+
 // Motor Control Functions
 void Motor_Init(void) {
 	// Initialize PWM on OC0 (PB3) for motor speed control
@@ -27,9 +31,11 @@ void Motor_SetSpeed(u8 speed) {
 	// Constrain speed to 0-100%
 	if(speed > 100) speed = 100;
 	Timer0_SetDutyCycle(speed); // Atomic update
+	appliedSpeed = speed;
 }
 
 void Motor_SetDirection(int dir) {
+	appliedDirection = dir ? Forward : Backward;
 	if(dir) {
 		MDIO_enuSetPinValue(MDIO_PORTB, MDIO_PIN0, MDIO_PIN_HIGH);
 		MDIO_enuSetPinValue(MDIO_PORTB, MDIO_PIN1, MDIO_PIN_LOW);
@@ -43,4 +49,12 @@ void Motor_Brake(void) {
 	MDIO_enuSetPinValue(MDIO_PORTB, MDIO_PIN0, MDIO_PIN_HIGH);
 	MDIO_enuSetPinValue(MDIO_PORTB, MDIO_PIN1, MDIO_PIN_HIGH);
 	Motor_SetSpeed(0);
+}
+
+u8 Motor_GetSpeed(void) {
+	return appliedSpeed;
+}
+
+u8 Motor_GetDirection(void) {
+	return appliedDirection;
 }
\ No newline at end of file
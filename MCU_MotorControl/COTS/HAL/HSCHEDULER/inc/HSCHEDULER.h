@@ -8,6 +8,7 @@ typedef enum
     RUNNABLE_LCD,
     RUNNABLE_PWM,
     RUNNABLE_SWITCH,
+    RUNNABLE_TELEMETRY,
     NUM_OF_RUNNABLES
 } HSCHEDULER_enuRunnableName_t;
 
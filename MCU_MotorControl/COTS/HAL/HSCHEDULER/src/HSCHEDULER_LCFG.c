@@ -3,6 +3,7 @@
 #include "HSCHEDULER_LCFG.h"
 
 extern void APP_voidScheduledControlFunc(void);
+extern void APP_voidSendTelemetry(void);
 
 HSCHEDULER_structRunnable_t HSCHEDULER_structRunnableArr[NUM_OF_RUNNABLES] = 
 {
@@ -11,5 +12,11 @@ HSCHEDULER_structRunnable_t HSCHEDULER_structRunnableArr[NUM_OF_RUNNABLES] =
         .period = 250U,
         .firstDelay = 0,
         .cbf = APP_voidScheduledControlFunc
+    },
+    [RUNNABLE_TELEMETRY] = 
+    {
+        .period = 100U,
+        .firstDelay = 0,
+        .cbf = APP_voidSendTelemetry
     }
 };
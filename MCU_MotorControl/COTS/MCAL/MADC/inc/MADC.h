@@ -0,0 +1,42 @@
+#ifndef MADC_H
+#define MADC_H
+
+// ADC Error Status Enumeration
+typedef enum {
+	MADC_OK,
+	MADC_NOK,
+	MADC_BUSY,
+	MADC_INVALID_CHANNEL,
+	MADC_UNINITIALIZED
+} MADC_ERROR_STATUS;
+
+// ADC voltage reference
+typedef enum {
+	MADC_REF_AREF = 0,      // external AREF pin
+	MADC_REF_AVCC = 1,      // AVCC with external capacitor at AREF
+	MADC_REF_INTERNAL = 3   // internal 2.56V
+} MADC_Reference;
+
+// ADC clock prescaler (ADC clock must be 50-200 kHz for full resolution)
+typedef enum {
+	MADC_PRESCALER_2 = 1,
+	MADC_PRESCALER_4,
+	MADC_PRESCALER_8,
+	MADC_PRESCALER_16,
+	MADC_PRESCALER_32,
+	MADC_PRESCALER_64,
+	MADC_PRESCALER_128
+} MADC_Prescaler;
+
+// number of single ended channels (ADC0-ADC7 on PA0-PA7)
+#define MADC_NUM_OF_CHANNELS    8
+
+// Initialization Functions
+MADC_ERROR_STATUS MADC_Init(MADC_Reference reference, MADC_Prescaler prescaler);
+
+// Conversion Functions (non blocking: start a conversion, check it later, a conversion takes 13 ADC clocks)
+MADC_ERROR_STATUS MADC_StartConversion(u8 channel);
+u8 MADC_IsConversionDone(void);
+u16 MADC_GetResult(void);
+
+#endif
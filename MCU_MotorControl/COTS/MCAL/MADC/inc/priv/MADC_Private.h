@@ -0,0 +1,28 @@
+#ifndef MADC_PRIVATE_H
+#define MADC_PRIVATE_H
+
+// ADC register structure (ATmega32)
+#define ADMUX               (*((volatile u8*)0x27))
+#define ADCSRA              (*((volatile u8*)0x26))
+#define ADCL                (*((volatile u8*)0x24))
+#define ADCH                (*((volatile u8*)0x25))
+
+// ADC Multiplexer Selection Register (ADMUX) bits
+#define REFS1  7 // Reference Selection bit 1
+#define REFS0  6 // Reference Selection bit 0
+#define ADLAR  5 // Left Adjust Result
+
+// mask of the channel selection bits (MUX4-MUX0)
+#define MADC_CHANNEL_MASK   0x1F
+
+// ADC Control and Status Register A (ADCSRA) bits
+#define ADEN   7 // ADC Enable
+#define ADSC   6 // ADC Start Conversion
+#define ADATE  5 // ADC Auto Trigger Enable
+#define ADIF   4 // ADC Interrupt Flag
+#define ADIE   3 // ADC Interrupt Enable
+
+// mask of the prescaler bits (ADPS2-ADPS0)
+#define MADC_PRESCALER_MASK 0x07
+
+#endif
@@ -0,0 +1,43 @@
+#include "std_types.h"
+#include "bit_math.h"
+#include "MADC.h"
+#include "MADC_Private.h"
+
+// Flag telling if the ADC has been initialized
+static u8 isInitialized = 0;
+
+// Initialize the ADC: right adjusted results, single conversions, no interrupt
+MADC_ERROR_STATUS MADC_Init(MADC_Reference reference, MADC_Prescaler prescaler) {
+	ADMUX = (u8)(reference << REFS0);
+	ADCSRA = (u8)((1 << ADEN) | (prescaler & MADC_PRESCALER_MASK));
+	isInitialized = 1;
+	return MADC_OK;
+}
+
+// Start a single conversion of a channel (result is read with MADC_GetResult once MADC_IsConversionDone)
+MADC_ERROR_STATUS MADC_StartConversion(u8 channel) {
+	if (!isInitialized) {
+		return MADC_UNINITIALIZED;
+	}
+	if (channel >= MADC_NUM_OF_CHANNELS) {
+		return MADC_INVALID_CHANNEL;
+	}
+	if (GET_BIT(ADCSRA, ADSC)) {
+		return MADC_BUSY;
+	}
+	ADMUX = (u8)((ADMUX & ~MADC_CHANNEL_MASK) | channel);
+	SET_BIT(ADCSRA, ADSC);
+	return MADC_OK;
+}
+
+// Check if the last started conversion has finished (ADSC is cleared by hardware)
+u8 MADC_IsConversionDone(void) {
+	return isInitialized && !GET_BIT(ADCSRA, ADSC);
+}
+
+// Get the result of the last conversion (0-1023), ADCL must be read first
+u16 MADC_GetResult(void) {
+	u16 result = ADCL;
+	result |= (u16)ADCH << 8;
+	return result;
+}
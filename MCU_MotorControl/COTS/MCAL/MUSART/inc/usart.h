@@ -76,6 +76,11 @@ typedef enum
     UART_SPEED_DOUBLE  ///< Double speed
 } UART_Speed_t;
 
+/**
+ * @brief Size of the transmit queue used by UART_QueueBytes (bytes)
+ */
+#define UART_TX_QUEUE_SIZE 64
+
 /**
  * @brief Callback function type for UART receive
  * @param receivedData The byte received by UART
@@ -185,4 +190,35 @@ void UART_EnableRxInterrupt(void);
  */
 void UART_DisableRxInterrupt(void);
 
+/**
+ * @brief Queues bytes for interrupt driven transmission (never blocks, safe to call from an ISR)
+ * @param data Pointer to the bytes to be sent
+ * @param length Number of bytes to be sent
+ * @return 1 if all bytes were queued, 0 if the queue has no room for them (nothing is queued)
+ */
+uint8_t UART_QueueBytes(const uint8_t *data, uint8_t length);
+
+/**
+ * @brief Checks if the transmitter is idle (queue empty and last byte fully shifted out)
+ * @return 1 if idle, 0 otherwise
+ */
+uint8_t UART_IsTxIdle(void);
+
+/**
+ * @brief Changes the baud rate of an initialized UART
+ * @param baudRate Desired baud rate (bps)
+ * @param speed Normal or double speed mode
+ *
+ * Bytes being received or sent while the rate changes are garbled, call it once UART_IsTxIdle() is true
+ */
+void UART_ChangeBaudRate(uint32_t baudRate, UART_Speed_t speed);
+
+/**
+ * @brief Computes the error of the rate the UART clock can actually generate for a baud rate
+ * @param baudRate Desired baud rate (bps)
+ * @param speed Normal or double speed mode
+ * @return Error in tenths of a percent (ex. 21 --> 2.1 % too fast), links are reliable up to about +-20
+ */
+int16_t UART_GetBaudRateError(uint32_t baudRate, UART_Speed_t speed);
+
 #endif /* USART_H */
\ No newline at end of file
@@ -15,8 +15,12 @@
 #include "usart.h"
 #include <avr/interrupt.h>
 
+/* UART clock (8MHz) */
+#define UART_CLOCK_FREQ 8000000UL
+
 /* Static function prototypes */
-static void UART_SetBaudRate(UART_BaudRate_t baudRate, UART_Speed_t speed);
+static void UART_SetBaudRate(uint32_t baudRate, UART_Speed_t speed);
+static uint16_t UART_GetUbrr(uint32_t baudRate, UART_Speed_t speed);
 static void UART_SetFrameFormat(UART_DataBits_t dataBits, UART_Parity_t parity, UART_StopBits_t stopBits);
 static void UART_SetMode(UART_Mode_t mode);
 
@@ -27,6 +31,21 @@ static void UART_SetMode(UART_Mode_t mode);
  */
 static volatile UART_RxCallback_t userRxCallback = NULL;
 
+/**
+ * @var txQueue
+ * @brief Ring buffer of bytes waiting to be sent by the Data Register Empty ISR
+ * @note txQueueHead is only written by the ISR, txQueueTail only by UART_QueueBytes
+ */
+static volatile uint8_t txQueue[UART_TX_QUEUE_SIZE];
+static volatile uint8_t txQueueHead = 0;
+static volatile uint8_t txQueueTail = 0;
+
+/**
+ * @var txStarted
+ * @brief Set once a byte was queued (TXC flag is meaningless before the first transmission)
+ */
+static volatile uint8_t txStarted = 0;
+
 /**
  * @brief Sets the receive callback function
  * @param callback Function pointer to be called when data is received
@@ -107,6 +126,104 @@ ISR(USART_RXC_vect)
 	}
 }
 
+/**
+ * @brief UART Data Register Empty Interrupt Service Routine
+ *
+ * Moves the next queued byte into UDR, disables itself once the queue is empty
+ */
+ISR(USART_UDRE_vect)
+{
+	if (txQueueHead != txQueueTail)
+	{
+		UDR = txQueue[txQueueHead];
+		txQueueHead = (txQueueHead + 1) % UART_TX_QUEUE_SIZE;
+	}
+	else
+	{
+		UCSRB &= ~(1 << UDRIE);
+	}
+}
+
+/**
+ * @brief Queues bytes for interrupt driven transmission
+ * @param data Pointer to the bytes to be sent
+ * @param length Number of bytes to be sent
+ * @return 1 if all bytes were queued, 0 if the queue has no room for them
+ *
+ * All or nothing, so a frame is never cut in half. Interrupts are disabled while the queue
+ * is updated, so it can be called from an ISR or from the main context.
+ */
+uint8_t UART_QueueBytes(const uint8_t *data, uint8_t length)
+{
+	uint8_t sreg = SREG;
+	uint8_t used;
+	uint8_t i;
+
+	cli();
+
+	/* One slot is kept free to tell a full queue from an empty one */
+	used = (txQueueTail + UART_TX_QUEUE_SIZE - txQueueHead) % UART_TX_QUEUE_SIZE;
+	if (length > (UART_TX_QUEUE_SIZE - 1 - used))
+	{
+		SREG = sreg;
+		return 0;
+	}
+
+	for (i = 0; i < length; i++)
+	{
+		txQueue[txQueueTail] = data[i];
+		txQueueTail = (txQueueTail + 1) % UART_TX_QUEUE_SIZE;
+	}
+
+	/* Clear TXC (written 1) so UART_IsTxIdle waits for these bytes, then let the ISR send them */
+	UCSRA |= (1 << TXC);
+	txStarted = 1;
+	UCSRB |= (1 << UDRIE);
+
+	SREG = sreg;
+	return 1;
+}
+
+/**
+ * @brief Checks if the transmitter is idle
+ * @return 1 if the queue is empty and the last byte left the shift register, 0 otherwise
+ */
+uint8_t UART_IsTxIdle(void)
+{
+	if (txQueueHead != txQueueTail)
+	{
+		return 0;
+	}
+
+	return (!txStarted || (UCSRA & (1 << TXC))) ? 1 : 0;
+}
+
+/**
+ * @brief Changes the baud rate of an initialized UART
+ * @param baudRate Desired baud rate (bps)
+ * @param speed Normal or double speed mode
+ */
+void UART_ChangeBaudRate(uint32_t baudRate, UART_Speed_t speed)
+{
+	UART_SetBaudRate(baudRate, speed);
+}
+
+/**
+ * @brief Computes the error of the generated rate for a baud rate
+ * @param baudRate Desired baud rate (bps)
+ * @param speed Normal or double speed mode
+ * @return Error in tenths of a percent
+ *
+ * Ex. at 8MHz in double speed mode: 38400 --> +1 (0.1 %), 57600 --> +21, 115200 --> -35
+ */
+int16_t UART_GetBaudRateError(uint32_t baudRate, UART_Speed_t speed)
+{
+	uint32_t divisor = (speed == UART_SPEED_NORMAL) ? 16 : 8;
+	uint32_t actual = UART_CLOCK_FREQ / divisor / ((uint32_t)UART_GetUbrr(baudRate, speed) + 1);
+
+	return (int16_t)(((int32_t)actual - (int32_t)baudRate) * 1000 / (int32_t)baudRate);
+}
+
 /**
  * @brief Sends a single byte via UART
  * @param data The byte to be transmitted
@@ -178,6 +295,19 @@ void UART_ReceiveString(char *buf, uint16_t maxLen)
 	buf[i] = '\0';
 }
 
+/**
+ * @brief Computes the UBRR value of a baud rate
+ * @param baudRate Desired baud rate
+ * @param speed Normal or double speed mode
+ * @return UBRR value (rounded to the nearest rate instead of truncated, same result for the usual 9600)
+ */
+static uint16_t UART_GetUbrr(uint32_t baudRate, UART_Speed_t speed)
+{
+	uint32_t divisor = (speed == UART_SPEED_NORMAL) ? 16 : 8;
+
+	return (uint16_t)(((UART_CLOCK_FREQ / divisor) + (baudRate / 2)) / baudRate - 1);
+}
+
 /**
  * @brief Sets the UART baud rate
  * @param baudRate Desired baud rate
@@ -187,20 +317,16 @@ void UART_ReceiveString(char *buf, uint16_t maxLen)
  * - 8MHz clock (adjust if using different clock)
  * - Selected speed mode
  */
-static void UART_SetBaudRate(UART_BaudRate_t baudRate, UART_Speed_t speed)
+static void UART_SetBaudRate(uint32_t baudRate, UART_Speed_t speed)
 {
-	uint16_t ubrr;
+	uint16_t ubrr = UART_GetUbrr(baudRate, speed);
 
 	if (speed == UART_SPEED_NORMAL)
 	{
-		// Changed from 16MHz to 8MHz calculation
-		ubrr = (8000000UL / 16 / baudRate) - 1;
 		UCSRA &= ~(1 << U2X);
 	}
 	else
 	{
-		// Double speed mode for 8MHz
-		ubrr = (8000000UL / 8 / baudRate) - 1;
 		UCSRA |= (1 << U2X);
 	}
 